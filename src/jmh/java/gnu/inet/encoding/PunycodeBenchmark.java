@@ -0,0 +1,77 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package gnu.inet.encoding;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares throughput of the <code>String</code> based Punycode implementation with the allocation free one writing to
+ * a reused <code>char[]</code> buffer, for labels of various length.
+ * <br>
+ * Run with: <code>mvn -Pjmh test-compile exec:exec -Djmh.benchmarks=PunycodeBenchmark</code>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PunycodeBenchmark {
+
+	private static final String ALPHABET = "bücher-東京ユーザー-мир-";
+
+	// encoded labels have to fit into Punycode.MAX_DECODE_LENGTH
+	@Param({"8", "16", "32"})
+	public int length;
+
+	private final char[] buffer = new char[8192];
+	private String decoded;
+	private String encoded;
+
+	@Setup
+	public void setup() throws PunycodeException {
+		StringBuilder sb = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			sb.append(ALPHABET.charAt((i * 7) % ALPHABET.length()));
+		}
+		decoded = sb.toString();
+		encoded = Punycode.encode(decoded);
+	}
+
+	@Benchmark
+	public int decodeBuffer() {
+		return Punycode.decode(encoded, buffer, 0, buffer.length);
+	}
+
+	@Benchmark
+	public String decodeString() throws PunycodeException {
+		return Punycode.decode(encoded);
+	}
+
+	@Benchmark
+	public int encodeBuffer() {
+		return Punycode.encode(decoded, buffer, 0, buffer.length);
+	}
+
+	@Benchmark
+	public String encodeString() throws PunycodeException {
+		return Punycode.encode(decoded);
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package gnu.inet.encoding;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares current stringprep and NFKC implementation with the <code>StringBuffer</code> based one it replaced.
+ * <br>
+ * Run with: <code>mvn -Pjmh test-compile exec:exec -Djmh.benchmarks=StringprepBenchmark</code>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StringprepBenchmark {
+
+	@Param({"ascii", "ascii-upper", "latin1", "cjk", "rtl"})
+	public String input;
+
+	private String value;
+
+	@Setup
+	public void setup() {
+		switch (input) {
+			case "ascii":
+				value = "user.name-1234";
+				break;
+			case "ascii-upper":
+				value = "User.Name-1234";
+				break;
+			case "latin1":
+				value = "Zürich-Müller";
+				break;
+			case "cjk":
+				value = "東京ユーザー";
+				break;
+			case "rtl":
+				value = "مستخدم";
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown input: " + input);
+		}
+	}
+
+	@Benchmark
+	public String nameprep() throws StringprepException {
+		return Stringprep.nameprep(value);
+	}
+
+	@Benchmark
+	public String nameprepLegacy() throws StringprepException {
+		return LegacyStringprep.nameprep(value);
+	}
+
+	@Benchmark
+	public String nodeprep() throws StringprepException {
+		return Stringprep.nodeprep(value);
+	}
+
+	@Benchmark
+	public String nodeprepLegacy() throws StringprepException {
+		return LegacyStringprep.nodeprep(value);
+	}
+
+	@Benchmark
+	public String resourceprep() throws StringprepException {
+		return Stringprep.resourceprep(value);
+	}
+
+	@Benchmark
+	public String resourceprepLegacy() throws StringprepException {
+		return LegacyStringprep.resourceprep(value);
+	}
+
+	@Benchmark
+	public String normalizeNFKC() {
+		return NFKC.normalizeNFKC(value);
+	}
+
+	@Benchmark
+	public String normalizeNFKCLegacy() {
+		return LegacyStringprep.normalizeNFKC(value);
+	}
+}
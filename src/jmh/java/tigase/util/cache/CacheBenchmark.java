@@ -0,0 +1,119 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.cache;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput of concurrent cache implementations under a read mostly, skewed access pattern with all
+ * available threads.
+ * <br>
+ * Run with: <code>mvn -Pjmh test-compile exec:exec -Djmh.benchmarks=CacheBenchmark</code>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class CacheBenchmark {
+
+	private static final int KEYS = 1 << 16;
+	private static final int SIZE = 1 << 12;
+
+	@Param({"lru", "concurrent-lru", "clock"})
+	public String cache;
+
+	private Cache<Integer, Integer> instance;
+	private Integer[] keys;
+
+	@Setup
+	public void setup() {
+		switch (cache) {
+			case "lru":
+				LRUConcurrentCache<Integer, Integer> lru = new LRUConcurrentCache<>(SIZE);
+				instance = new Cache<Integer, Integer>() {
+					public Integer get(Integer key) {
+						return lru.get(key);
+					}
+
+					public void put(Integer key, Integer value) {
+						lru.put(key, value);
+					}
+				};
+				break;
+			case "concurrent-lru":
+				ConcurrentLRUCache<Integer, Integer> concurrentLRU = new ConcurrentLRUCache<>(SIZE);
+				instance = new Cache<Integer, Integer>() {
+					public Integer get(Integer key) {
+						return concurrentLRU.get(key);
+					}
+
+					public void put(Integer key, Integer value) {
+						concurrentLRU.put(key, value);
+					}
+				};
+				break;
+			case "clock":
+				ConcurrentClockCache<Integer, Integer> clock = new ConcurrentClockCache<>(SIZE);
+				instance = new Cache<Integer, Integer>() {
+					public Integer get(Integer key) {
+						return clock.get(key);
+					}
+
+					public void put(Integer key, Integer value) {
+						clock.put(key, value);
+					}
+				};
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown cache: " + cache);
+		}
+		keys = new Integer[KEYS];
+		for (int i = 0; i < KEYS; i++) {
+			keys[i] = i;
+		}
+		for (int i = 0; i < SIZE; i++) {
+			instance.put(keys[i], keys[i]);
+		}
+	}
+
+	@Benchmark
+	public Integer getOrPut() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		// skewed distribution, low keys are much more popular
+		Integer key = keys[(int) (KEYS * Math.pow(random.nextDouble(), 4))];
+		Integer value = instance.get(key);
+		if (value == null) {
+			instance.put(key, key);
+			return key;
+		}
+		return value;
+	}
+
+	private interface Cache<K, V> {
+
+		V get(K key);
+
+		void put(K key, V value);
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.stringprep;
+
+/**
+ * JID parts used as input data by benchmarks. Each input type defines localpart, domain and resource part:
+ * <ul>
+ * <li><code>ascii</code> - plain lower case ASCII, handled by fast paths,</li>
+ * <li><code>ascii-upper</code> - mixed case ASCII which requires case folding,</li>
+ * <li><code>latin1</code> - ISO-8859-1 characters with case folding,</li>
+ * <li><code>cjk</code> - CJK characters,</li>
+ * <li><code>rtl</code> - right-to-left Arabic characters,</li>
+ * <li><code>hostile</code> - long valid parts with compatibility characters and combining marks which require full
+ * normalization,</li>
+ * <li><code>invalid</code> - long parts which fail stringprep on the last character.</li>
+ * </ul>
+ */
+public final class BenchmarkInputs {
+
+	public static String[] parts(String type) {
+		switch (type) {
+			case "ascii":
+				return new String[]{"user.name-1234", "example.com", "resource-1"};
+			case "ascii-upper":
+				return new String[]{"User.Name-1234", "Example.COM", "Resource-1"};
+			case "latin1":
+				return new String[]{"zürich-müller", "bücher.example", "Büro"};
+			case "cjk":
+				return new String[]{"東京ユーザー", "例子.测试", "資源"};
+			case "rtl":
+				return new String[]{"مستخدم", "مثال.اختبار", "مورد"};
+			case "hostile":
+				return new String[]{repeat("ＵＳＥＲﬁȩ́", 40), repeat("Ｅｘａｍｐｌｅ", 20) + ".com",
+									repeat("ﬃẠ̊̂", 60)};
+			case "invalid":
+				return new String[]{repeat("user", 250) + "@", repeat("example", 30) + "\u0000",
+									repeat("resource", 120) + "￿"};
+			default:
+				throw new IllegalArgumentException("Unknown input type: " + type);
+		}
+	}
+
+	public static String jid(String type) {
+		String[] parts = parts(type);
+		return parts[0] + "@" + parts[1] + "/" + parts[2];
+	}
+
+	private static String repeat(String str, int count) {
+		StringBuilder sb = new StringBuilder(str.length() * count);
+		for (int i = 0; i < count; i++) {
+			sb.append(str);
+		}
+		return sb.toString();
+	}
+
+	private BenchmarkInputs() {
+	}
+}
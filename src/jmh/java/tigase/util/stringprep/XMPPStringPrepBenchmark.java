@@ -0,0 +1,84 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.stringprep;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures stringprep processing of JID parts by all <code>XMPPStringPrepIfc</code> implementations. Inputs failing
+ * stringprep processing return the thrown exception, so the cost of error reporting is included.
+ * <br>
+ * Run with: <code>mvn -Pjmh test-compile exec:exec -Djmh.benchmarks=XMPPStringPrepBenchmark</code>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class XMPPStringPrepBenchmark {
+
+	@Param({"ascii", "ascii-upper", "latin1", "cjk", "rtl", "hostile", "invalid"})
+	public String input;
+
+	@Param({"libidn", "cached-libidn", "precis", "simple", "empty"})
+	public String processor;
+
+	private String domain;
+	private String localpart;
+	private String resource;
+	private XMPPStringPrepIfc stringPrep;
+
+	@Setup
+	public void setup() {
+		stringPrep = XMPPStringPrepFactory.getXMPPStringPrep(processor);
+		String[] parts = BenchmarkInputs.parts(input);
+		localpart = parts[0];
+		domain = parts[1];
+		resource = parts[2];
+	}
+
+	@Benchmark
+	public Object nameprep() {
+		try {
+			return stringPrep.nameprep(domain);
+		} catch (TigaseStringprepException e) {
+			return e;
+		}
+	}
+
+	@Benchmark
+	public Object nodeprep() {
+		try {
+			return stringPrep.nodeprep(localpart);
+		} catch (TigaseStringprepException e) {
+			return e;
+		}
+	}
+
+	@Benchmark
+	public Object resourceprep() {
+		try {
+			return stringPrep.resourceprep(resource);
+		} catch (TigaseStringprepException e) {
+			return e;
+		}
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.xmpp.jid;
+
+import org.openjdk.jmh.annotations.*;
+import tigase.util.stringprep.BenchmarkInputs;
+import tigase.util.stringprep.TigaseStringprepException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing and construction of <code>BareJID</code> and <code>JID</code> instances with the default stringprep
+ * processor, and their <code>equals</code>, <code>hashCode</code> and <code>compareTo</code> methods. Compared
+ * instances are equal, but not identical, and differ in case where the input allows it.
+ * <br>
+ * Run with: <code>mvn -Pjmh test-compile exec:exec -Djmh.benchmarks=JIDBenchmark</code>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JIDBenchmark {
+
+	@Param({"ascii", "ascii-upper", "latin1", "cjk", "rtl", "hostile"})
+	public String input;
+
+	private BareJID bareJid;
+	private BareJID bareJidOther;
+	private String domain;
+	private JID jid;
+	private JID jidOther;
+	private String jidString;
+	private String localpart;
+	private ParsedJID parsedJid;
+	private String resource;
+
+	@Setup
+	public void setup() throws TigaseStringprepException {
+		String[] parts = BenchmarkInputs.parts(input);
+		localpart = parts[0];
+		domain = parts[1];
+		resource = parts[2];
+		jidString = BenchmarkInputs.jid(input);
+		parsedJid = new ParsedJID();
+
+		jid = JID.jidInstance(jidString);
+		jidOther = JID.jidInstance(localpart.toUpperCase(), domain.toUpperCase(), resource);
+		if (!jid.equals(jidOther)) {
+			// upper casing may change compatibility characters, so fall back to a separately created instance
+			jidOther = JID.jidInstance(jidString);
+		}
+		bareJid = jid.getBareJID();
+		bareJidOther = jidOther.getBareJID();
+	}
+
+	@Benchmark
+	public BareJID bareJIDInstance() throws TigaseStringprepException {
+		return BareJID.bareJIDInstance(jidString);
+	}
+
+	@Benchmark
+	public BareJID bareJIDInstanceNS() {
+		return BareJID.bareJIDInstanceNS(jidString);
+	}
+
+	@Benchmark
+	public BareJID bareJIDInstanceParts() throws TigaseStringprepException {
+		return BareJID.bareJIDInstance(localpart, domain);
+	}
+
+	@Benchmark
+	public int bareJIDCompareTo() {
+		return bareJid.compareTo(bareJidOther);
+	}
+
+	@Benchmark
+	public boolean bareJIDEquals() {
+		return bareJid.equals(bareJidOther);
+	}
+
+	@Benchmark
+	public int bareJIDHashCode() {
+		return bareJid.hashCode();
+	}
+
+	@Benchmark
+	public JID jidInstance() throws TigaseStringprepException {
+		return JID.jidInstance(jidString);
+	}
+
+	@Benchmark
+	public JID jidInstanceNS() {
+		return JID.jidInstanceNS(jidString);
+	}
+
+	@Benchmark
+	public JID jidInstanceParts() throws TigaseStringprepException {
+		return JID.jidInstance(localpart, domain, resource);
+	}
+
+	@Benchmark
+	public int jidCompareTo() {
+		return jid.compareTo(jidOther);
+	}
+
+	@Benchmark
+	public boolean jidEquals() {
+		return jid.equals(jidOther);
+	}
+
+	@Benchmark
+	public int jidHashCode() {
+		return jid.hashCode();
+	}
+
+	@Benchmark
+	public String[] parseJID() {
+		return BareJID.parseJID(jidString);
+	}
+
+	@Benchmark
+	public ParsedJID parsedJID() {
+		return parsedJid.parse(jidString);
+	}
+}
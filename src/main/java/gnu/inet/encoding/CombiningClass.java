@@ -22,7 +22,14 @@ package gnu.inet.encoding;
 
 /**
  * Auto-generated class containing Unicode NFKC tables.
+ * <br>
+ * No longer used by this library, the tables are loaded from the <code>nfkc.dat</code> resource by
+ * <code>UnicodeTables</code>. The class is kept for compatibility of the exported package and as the source data of
+ * the resource generator.
+ *
+ * @deprecated will be removed in a future version.
  */
+@Deprecated
 public class CombiningClass
 {
   public final static int[][] c = new int[][] {
@@ -17,8 +17,15 @@
  */
 package gnu.inet.encoding;
 
+import java.nio.ByteBuffer;
+
+import static gnu.inet.encoding.UnicodeTables.PAGE_MASK;
+import static gnu.inet.encoding.UnicodeTables.PAGE_SHIFT;
+
 /**
- * This class offers static methods for Unicode NFKC string normalization.
+ * This class offers static methods for Unicode NFKC string normalization. Combining classes, decompositions and
+ * compositions are looked up in two-level page tables loaded from the <code>nfkc.dat</code> resource when the class is
+ * initialized.
  */
 public class NFKC {
 
@@ -38,34 +45,83 @@ public class NFKC {
 	static final int SCount = LCount * NCount;
 
 	/**
-	 * Rearranges characters in a stringbuffer in order to respect the canonical ordering properties.
+	 * Maximum number of characters a single character may be decomposed to.
+	 */
+	private static final int MAX_DECOMPOSITION_LENGTH;
+
+	/**
+	 * Scratch buffers above this size are not kept for reuse.
+	 */
+	private static final int MAX_SCRATCH_SIZE = 4096;
+
+	/**
+	 * Bit set of characters with NFKC_QC=Yes property which are also starters, can't be decomposed and can't be combined
+	 * with a preceding character. A string containing only such characters is already NFKC normalized.
+	 */
+	private static final long[] QUICK_CHECK_YES;
+
+	private static final ThreadLocal<char[]> scratch = new ThreadLocal<>();
+
+	private static final char[] combiningClassData;
+	private static final int[] combiningClassIndex;
+	// position in the composition tables increased by one, 0 means the character is not composed
+	private static final char[] compositionData;
+	private static final int[] compositionIndex;
+	// position of the mapping increased by one, 0 means no decomposition
+	private static final char[] decompositionData;
+	private static final int[] decompositionIndex;
+	private static final String[] decompositionMappings;
+	private static final char[][] multiFirst;
+	private static final int multiSecondStart;
+	private static final char[][] singleFirst;
+	private static final int singleFirstStart;
+	private static final char[][] singleSecond;
+	private static final int singleSecondStart;
+
+	static {
+		ByteBuffer buffer = UnicodeTables.load(UnicodeTables.NFKC_RESOURCE);
+		combiningClassIndex = UnicodeTables.readInts(buffer);
+		combiningClassData = UnicodeTables.readChars(buffer);
+		decompositionIndex = UnicodeTables.readInts(buffer);
+		decompositionData = UnicodeTables.readChars(buffer);
+		decompositionMappings = UnicodeTables.readStrings(buffer);
+		compositionIndex = UnicodeTables.readInts(buffer);
+		compositionData = UnicodeTables.readChars(buffer);
+		multiFirst = UnicodeTables.readCharArrays(buffer);
+		singleFirst = UnicodeTables.readCharArrays(buffer);
+		singleSecond = UnicodeTables.readCharArrays(buffer);
+		multiSecondStart = buffer.getInt();
+		singleFirstStart = buffer.getInt();
+		singleSecondStart = buffer.getInt();
+		QUICK_CHECK_YES = UnicodeTables.readLongs(buffer);
+
+		int maxLength = 3;    // hangul syllable
+		for (String mapping : decompositionMappings) {
+			maxLength = Math.max(maxLength, mapping.length());
+		}
+		MAX_DECOMPOSITION_LENGTH = maxLength;
+	}
+
+	/**
+	 * Rearranges characters in a buffer in order to respect the canonical ordering properties. Sequences of non-starters
+	 * are sorted (stable) by their combining class.
 	 *
-	 * @param The StringBuffer to rearrange.
+	 * @param buf The buffer to rearrange.
+	 * @param length Number of characters in the buffer.
 	 */
-	static void canonicalOrdering(StringBuffer in) {
-		boolean isOrdered = false;
-
-		while (!isOrdered) {
-			isOrdered = true;
-
-			int lastCC = combiningClass(in.charAt(0));
-
-			for (int i = 0; i < in.length() - 1; i++) {
-				int nextCC = combiningClass(in.charAt(i + 1));
-				if (nextCC != 0 && lastCC > nextCC) {
-					for (int j = i + 1; j > 0; j--) {
-						if (combiningClass(in.charAt(j - 1)) <= nextCC) {
-							break;
-						}
-						char t = in.charAt(j);
-						in.setCharAt(j, in.charAt(j - 1));
-						in.setCharAt(j - 1, t);
-						isOrdered = false;
-					}
-					nextCC = lastCC;
-				}
-				lastCC = nextCC;
+	static void canonicalOrdering(char[] buf, int length) {
+		for (int i = 1; i < length; i++) {
+			char c = buf[i];
+			int cc = combiningClass(c);
+			if (cc == 0) {
+				continue;
 			}
+			int j = i;
+			while (j > 0 && combiningClass(buf[j - 1]) > cc) {
+				buf[j] = buf[j - 1];
+				j--;
+			}
+			buf[j] = c;
 		}
 	}
 
@@ -77,15 +133,7 @@ public class NFKC {
 	 * @return The combining class.
 	 */
 	static int combiningClass(char c) {
-		int h = c >> 8;
-		int l = c & 0xff;
-
-		int i = CombiningClass.i[h];
-		if (i > -1) {
-			return CombiningClass.c[i][l];
-		} else {
-			return 0;
-		}
+		return combiningClassData[combiningClassIndex[c >> PAGE_SHIFT] + (c & PAGE_MASK)];
 	}
 
 	/**
@@ -104,9 +152,9 @@ public class NFKC {
 
 		int ai = composeIndex(a);
 
-		if (ai >= Composition.singleFirstStart && ai < Composition.singleSecondStart) {
-			if (b == Composition.singleFirst[ai - Composition.singleFirstStart][0]) {
-				return Composition.singleFirst[ai - Composition.singleFirstStart][1];
+		if (ai >= singleFirstStart && ai < singleSecondStart) {
+			if (b == singleFirst[ai - singleFirstStart][0]) {
+				return singleFirst[ai - singleFirstStart][1];
 			} else {
 				return -1;
 			}
@@ -114,20 +162,20 @@ public class NFKC {
 
 		int bi = composeIndex(b);
 
-		if (bi >= Composition.singleSecondStart) {
-			if (a == Composition.singleSecond[bi - Composition.singleSecondStart][0]) {
-				return Composition.singleSecond[bi - Composition.singleSecondStart][1];
+		if (bi >= singleSecondStart) {
+			if (a == singleSecond[bi - singleSecondStart][0]) {
+				return singleSecond[bi - singleSecondStart][1];
 			} else {
 				return -1;
 			}
 		}
 
-		if (ai >= 0 && ai < Composition.multiSecondStart && bi >= Composition.multiSecondStart &&
-				bi < Composition.singleFirstStart) {
-			char[] f = Composition.multiFirst[ai];
+		if (ai >= 0 && ai < multiSecondStart && bi >= multiSecondStart &&
+				bi < singleFirstStart) {
+			char[] f = multiFirst[ai];
 
-			if (bi - Composition.multiSecondStart < f.length) {
-				char r = f[bi - Composition.multiSecondStart];
+			if (bi - multiSecondStart < f.length) {
+				char r = f[bi - multiSecondStart];
 				if (r == 0) {
 					return -1;
 				} else {
@@ -178,68 +226,43 @@ public class NFKC {
 	 * @return Index if found, -1 otherwise.
 	 */
 	static int composeIndex(char a) {
-		if (a >> 8 >= Composition.composePage.length) {
-			return -1;
-		}
-		int ap = Composition.composePage[a >> 8];
-		if (ap == -1) {
-			return -1;
-		}
-		return Composition.composeData[ap][a & 0xff];
+		return compositionData[compositionIndex[a >> PAGE_SHIFT] + (a & PAGE_MASK)] - 1;
 	}
 
 	/**
-	 * Decomposes a hangul character.
+	 * Decomposes a hangul character into the buffer.
 	 *
 	 * @param s A character to decompose.
+	 * @param buf The buffer for the decomposition.
+	 * @param pos Position in the buffer to write the decomposition at.
 	 *
-	 * @return A string containing the hangul decomposition of the input character. If no hangul decomposition can be
-	 * found, a string containing the character itself is returned.
+	 * @return Position in the buffer after the decomposition. If no hangul decomposition can be found, the character
+	 * itself is written to the buffer.
 	 */
-	static String decomposeHangul(char s) {
+	static int decomposeHangul(char s, char[] buf, int pos) {
 		int SIndex = s - SBase;
 		if (SIndex < 0 || SIndex >= SCount) {
-			return String.valueOf(s);
+			buf[pos++] = s;
+			return pos;
 		}
-		StringBuffer result = new StringBuffer();
-		int L = LBase + SIndex / NCount;
-		int V = VBase + (SIndex % NCount) / TCount;
 		int T = TBase + SIndex % TCount;
-		result.append((char) L);
-		result.append((char) V);
+		buf[pos++] = (char) (LBase + SIndex / NCount);
+		buf[pos++] = (char) (VBase + (SIndex % NCount) / TCount);
 		if (T != TBase) {
-			result.append((char) T);
+			buf[pos++] = (char) T;
 		}
-		return result.toString();
+		return pos;
 	}
 
 	/**
-	 * Returns the index inside the decomposition table, implemented using a binary search.
+	 * Returns the index inside the decomposition table.
 	 *
 	 * @param c Character to look up.
 	 *
 	 * @return Index if found, -1 otherwise.
 	 */
 	static int decomposeIndex(char c) {
-		int start = 0;
-		int end = DecompositionKeys.k.length / 2;
-
-		while (true) {
-			int half = (start + end) / 2;
-			int code = DecompositionKeys.k[half * 2];
-
-			if (c == code) {
-				return DecompositionKeys.k[half * 2 + 1];
-			}
-			if (half == start) {
-				// Character not found
-				return -1;
-			} else if (c > code) {
-				start = half;
-			} else {
-				end = half;
-			}
-		}
+		return decompositionData[decompositionIndex[c >> PAGE_SHIFT] + (c & PAGE_MASK)] - 1;
 	}
 
 	/**
@@ -247,69 +270,142 @@ public class NFKC {
 	 *
 	 * @param in The string to normalize.
 	 *
-	 * @return An NFKC normalized string.
+	 * @return An NFKC normalized string. If the string is already normalized, the same instance is returned.
 	 */
 	public static String normalizeNFKC(String in) {
-		StringBuffer out = new StringBuffer();
+		int length = in.length();
+		int i = 0;
+		while (i < length && isQuickCheckYes(in.charAt(i))) {
+			i++;
+		}
+		if (i == length) {
+			return in;
+		}
+
+		// The last quick check "yes" character may still be combined with the following one, all characters
+		// before it are left intact.
+		return normalize(in, (i > 0) ? i - 1 : 0);
+	}
 
+	/**
+	 * Checks if the string is NFKC normalized using the quick check properties only. Please note, the method may return
+	 * <code>false</code> for some normalized strings.
+	 *
+	 * @param in The string to check.
+	 *
+	 * @return <code>true</code> if the string is known to be NFKC normalized.
+	 */
+	public static boolean isNormalizedNFKC(String in) {
 		for (int i = 0; i < in.length(); i++) {
+			if (!isQuickCheckYes(in.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	static boolean isQuickCheckYes(char c) {
+		return (QUICK_CHECK_YES[c >> 6] & (1L << c)) != 0;
+	}
+
+	private static String normalize(String in, int start) {
+		int length = in.length();
+		char[] buf = scratchBuffer((length - start) * MAX_DECOMPOSITION_LENGTH);
+
+		int n = decompose(in, start, length, buf);
+
+		// Bring the buffer into canonical order.
+		canonicalOrdering(buf, n);
+
+		// Do the canonical composition.
+		n = compose(buf, n);
+
+		if (start == 0) {
+			return new String(buf, 0, n);
+		}
+		return new StringBuilder(start + n).append(in, 0, start).append(buf, 0, n).toString();
+	}
+
+	private static boolean isHangul(char code) {
+		// In Unicode 3.0, Hangul was defined as the block from U+AC00
+		// to U+D7A3, however, since Unicode 3.2 the block extends until
+		// U+D7AF. The decomposeHangul function only decomposes until
+		// U+D7A3. Should this be changed?
+		return code >= 0xAC00 && code <= 0xD7AF;
+	}
+
+	private static int decompose(String in, int from, int to, char[] buf) {
+		int n = 0;
+		for (int i = from; i < to; i++) {
 			char code = in.charAt(i);
 
-			// In Unicode 3.0, Hangul was defined as the block from U+AC00
-			// to U+D7A3, however, since Unicode 3.2 the block extends until
-			// U+D7AF. The decomposeHangul function only decomposes until
-			// U+D7A3. Should this be changed?
-			if (code >= 0xAC00 && code <= 0xD7AF) {
-				out.append(decomposeHangul(code));
+			if (isHangul(code)) {
+				n = decomposeHangul(code, buf, n);
 			} else {
 				int index = decomposeIndex(code);
 				if (index == -1) {
-					out.append(code);
+					buf[n++] = code;
 				} else {
-					out.append(DecompositionMappings.m[index]);
+					String mapping = decompositionMappings[index];
+					mapping.getChars(0, mapping.length(), buf, n);
+					n += mapping.length();
 				}
 			}
 		}
+		return n;
+	}
 
-		// Bring the stringbuffer into canonical order.
-		canonicalOrdering(out);
-
-		// Do the canonical composition.
+	/**
+	 * Canonical composition done in place in a single pass. Characters are compacted towards the beginning of the
+	 * buffer when combined.
+	 *
+	 * @return Number of characters in the buffer after the composition.
+	 */
+	private static int compose(char[] buf, int length) {
 		int last_cc = 0;
 		int last_start = 0;
+		int n = 0;
 
-		for (int i = 0; i < out.length(); i++) {
-			int cc = combiningClass(out.charAt(i));
+		for (int i = 0; i < length; i++) {
+			char b = buf[i];
+			int cc = combiningClass(b);
 
-			if (i > 0 && (last_cc == 0 || last_cc != cc)) {
+			if (n > 0 && (last_cc == 0 || last_cc != cc)) {
 				// Try to combine characters
-				char a = out.charAt(last_start);
-				char b = out.charAt(i);
-
-				int c = compose(a, b);
+				int c = compose(buf[last_start], b);
 
 				if (c != -1) {
-					out.setCharAt(last_start, (char) c);
-					out.deleteCharAt(i);
-					i--;
-
-					if (i == last_start) {
+					buf[last_start] = (char) c;
+					if (n - 1 == last_start) {
 						last_cc = 0;
 					} else {
-						last_cc = combiningClass(out.charAt(i - 1));
+						last_cc = combiningClass(buf[n - 2]);
 					}
 					continue;
 				}
 			}
 
 			if (cc == 0) {
-				last_start = i;
+				last_start = n;
 			}
 
 			last_cc = cc;
+			buf[n++] = b;
 		}
 
-		return out.toString();
+		return n;
+	}
+
+	private static char[] scratchBuffer(int size) {
+		if (size > MAX_SCRATCH_SIZE) {
+			return new char[size];
+		}
+		char[] buf = scratch.get();
+		if (buf == null || buf.length < size) {
+			buf = new char[Math.max(size, 64)];
+			scratch.set(buf);
+		}
+		return buf;
 	}
 
-}
\ No newline at end of file
+}
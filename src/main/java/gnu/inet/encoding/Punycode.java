@@ -17,12 +17,27 @@
  */
 package gnu.inet.encoding;
 
+import java.nio.CharBuffer;
+
 /**
  * This class offers static methods for encoding/decoding strings using the Punycode algorithm. <ul> <li>RFC3492
  * Punycode </ul> Note that this implementation only supports 16-bit Unicode code points.
+ * <br>
+ * Variants accepting <code>char[]</code> or <code>CharBuffer</code> output do not allocate any objects, write result
+ * to the caller supplied buffer and report failures by returning one of negative <code>ERROR_</code> codes instead of
+ * throwing an exception.
  */
 public class Punycode {
 
+	/** Input is not a valid Punycode or contains characters which cannot be encoded. */
+	public final static int ERROR_BAD_INPUT = -1;
+	/** Output buffer is too small to hold the result. */
+	public final static int ERROR_BUFFER_TOO_SMALL = -3;
+	/** Integer overflow occurred during processing. */
+	public final static int ERROR_OVERFLOW = -2;
+	/** Maximum length of input accepted by the allocation free <code>decode</code> variants, i.e. DNS label length. */
+	public final static int MAX_DECODE_LENGTH = 63;
+
 	/* Punycode parameters */
 	final static int TMIN = 1;
 	final static int TMAX = 26;
@@ -74,7 +89,7 @@ public class Punycode {
 		int n = INITIAL_N;
 		int i = 0;
 		int bias = INITIAL_BIAS;
-		StringBuffer output = new StringBuffer();
+		StringBuilder output = new StringBuilder();
 
 		int d = input.lastIndexOf(DELIMITER);
 		if (d > 0) {
@@ -135,6 +150,120 @@ public class Punycode {
 		return output.toString();
 	}
 
+	/**
+	 * Decode a punycoded string into the output buffer. Decoded characters are inserted in place, within the part of
+	 * the buffer already filled with the result, so decoding takes time quadratic in the length of the input. For that
+	 * reason input is limited to {@link #MAX_DECODE_LENGTH} characters, the length of a DNS label, and longer input is
+	 * rejected with {@link #ERROR_BAD_INPUT}.
+	 *
+	 * @param input Punycode string, letters may be in any case
+	 * @param output buffer for the result
+	 * @param offset position in the buffer from which the result is written
+	 * @param limit position in the buffer up to which (exclusive) the result may be written
+	 *
+	 * @return number of characters written to the buffer or one of negative <code>ERROR_</code> codes
+	 */
+	public static int decode(CharSequence input, char[] output, int offset, int limit) {
+		int n = INITIAL_N;
+		int i = 0;
+		int bias = INITIAL_BIAS;
+		int length = 0;
+		int capacity = limit - offset;
+		int inputLength = input.length();
+		if (inputLength > MAX_DECODE_LENGTH) {
+			return ERROR_BAD_INPUT;
+		}
+
+		int d = inputLength - 1;
+		while (d >= 0 && input.charAt(d) != DELIMITER) {
+			d--;
+		}
+		if (d > 0) {
+			if (d > capacity) {
+				return ERROR_BUFFER_TOO_SMALL;
+			}
+			for (int j = 0; j < d; j++) {
+				char c = input.charAt(j);
+				if (!isBasic(c)) {
+					return ERROR_BAD_INPUT;
+				}
+				output[offset + length++] = c;
+			}
+			d++;
+		} else {
+			d = 0;
+		}
+
+		while (d < inputLength) {
+			int oldi = i;
+			int w = 1;
+
+			for (int k = BASE; ; k += BASE) {
+				if (d == inputLength) {
+					return ERROR_BAD_INPUT;
+				}
+				int digit = digit(input.charAt(d++));
+				if (digit < 0) {
+					return ERROR_BAD_INPUT;
+				}
+				if (digit > (Integer.MAX_VALUE - i) / w) {
+					return ERROR_OVERFLOW;
+				}
+
+				i = i + digit * w;
+
+				int t = threshold(k, bias);
+				if (digit < t) {
+					break;
+				}
+				if (w > Integer.MAX_VALUE / (BASE - t)) {
+					return ERROR_OVERFLOW;
+				}
+				w = w * (BASE - t);
+			}
+
+			bias = adapt(i - oldi, length + 1, oldi == 0);
+
+			if (i / (length + 1) > Integer.MAX_VALUE - n) {
+				return ERROR_OVERFLOW;
+			}
+
+			n = n + i / (length + 1);
+			i = i % (length + 1);
+			if (n > Character.MAX_VALUE) {
+				return ERROR_BAD_INPUT;
+			}
+			if (length == capacity) {
+				return ERROR_BUFFER_TOO_SMALL;
+			}
+			System.arraycopy(output, offset + i, output, offset + i + 1, length - i);
+			output[offset + i] = (char) n;
+			length++;
+			i++;
+		}
+
+		return length;
+	}
+
+	/**
+	 * Decode a punycoded string into the output buffer, starting at its current position. On success position of the
+	 * buffer is moved after the result, on failure it is left unchanged. Input is limited to
+	 * {@link #MAX_DECODE_LENGTH} characters, see {@link #decode(CharSequence, char[], int, int)}.
+	 *
+	 * @param input Punycode string, letters may be in any case
+	 * @param output buffer for the result, must be backed by an accessible array
+	 *
+	 * @return number of characters written to the buffer or one of negative <code>ERROR_</code> codes
+	 */
+	public static int decode(CharSequence input, CharBuffer output) {
+		int result = decode(input, output.array(), output.arrayOffset() + output.position(),
+							output.arrayOffset() + output.limit());
+		if (result >= 0) {
+			output.position(output.position() + result);
+		}
+		return result;
+	}
+
 	public final static int digit2codepoint(int d) throws PunycodeException {
 		if (d < 26) {
 			// 0..25 : 'a'..'z'
@@ -158,7 +287,7 @@ public class Punycode {
 		int n = INITIAL_N;
 		int delta = 0;
 		int bias = INITIAL_BIAS;
-		StringBuffer output = new StringBuffer();
+		StringBuilder output = new StringBuilder();
 
 		// Copy all basic code points to the output
 		int b = 0;
@@ -234,7 +363,147 @@ public class Punycode {
 		return output.toString();
 	}
 
+	/**
+	 * Punycodes a unicode string into the output buffer.
+	 *
+	 * @param input Unicode string
+	 * @param output buffer for the result
+	 * @param offset position in the buffer from which the result is written
+	 * @param limit position in the buffer up to which (exclusive) the result may be written
+	 *
+	 * @return number of characters written to the buffer or one of negative <code>ERROR_</code> codes
+	 */
+	public static int encode(CharSequence input, char[] output, int offset, int limit) {
+		int n = INITIAL_N;
+		int delta = 0;
+		int bias = INITIAL_BIAS;
+		int out = offset;
+		int inputLength = input.length();
+
+		// Copy all basic code points to the output
+		int b = 0;
+		for (int i = 0; i < inputLength; i++) {
+			char c = input.charAt(i);
+			if (isBasic(c)) {
+				if (out == limit) {
+					return ERROR_BUFFER_TOO_SMALL;
+				}
+				output[out++] = c;
+				b++;
+			}
+		}
+
+		// Append delimiter
+		if (b > 0) {
+			if (out == limit) {
+				return ERROR_BUFFER_TOO_SMALL;
+			}
+			output[out++] = DELIMITER;
+		}
+
+		int h = b;
+		while (h < inputLength) {
+			int m = Integer.MAX_VALUE;
+
+			// Find the minimum code point >= n
+			for (int i = 0; i < inputLength; i++) {
+				int c = input.charAt(i);
+				if (c >= n && c < m) {
+					m = c;
+				}
+			}
+
+			if (m - n > (Integer.MAX_VALUE - delta) / (h + 1)) {
+				return ERROR_OVERFLOW;
+			}
+			delta = delta + (m - n) * (h + 1);
+			n = m;
+
+			for (int j = 0; j < inputLength; j++) {
+				int c = input.charAt(j);
+				if (c < n) {
+					delta++;
+					if (0 == delta) {
+						return ERROR_OVERFLOW;
+					}
+				}
+				if (c == n) {
+					int q = delta;
+
+					for (int k = BASE; ; k += BASE) {
+						int t = threshold(k, bias);
+						if (q < t) {
+							break;
+						}
+						if (out == limit) {
+							return ERROR_BUFFER_TOO_SMALL;
+						}
+						output[out++] = digitChar(t + (q - t) % (BASE - t));
+						q = (q - t) / (BASE - t);
+					}
+
+					if (out == limit) {
+						return ERROR_BUFFER_TOO_SMALL;
+					}
+					output[out++] = digitChar(q);
+					bias = adapt(delta, h + 1, h == b);
+					delta = 0;
+					h++;
+				}
+			}
+
+			delta++;
+			n++;
+		}
+
+		return out - offset;
+	}
+
+	/**
+	 * Punycodes a unicode string into the output buffer, starting at its current position. On success position of the
+	 * buffer is moved after the result, on failure it is left unchanged.
+	 *
+	 * @param input Unicode string
+	 * @param output buffer for the result, must be backed by an accessible array
+	 *
+	 * @return number of characters written to the buffer or one of negative <code>ERROR_</code> codes
+	 */
+	public static int encode(CharSequence input, CharBuffer output) {
+		int result = encode(input, output.array(), output.arrayOffset() + output.position(),
+							output.arrayOffset() + output.limit());
+		if (result >= 0) {
+			output.position(output.position() + result);
+		}
+		return result;
+	}
+
 	public final static boolean isBasic(char c) {
 		return c < 0x80;
 	}
-}
\ No newline at end of file
+
+	private static int digit(char c) {
+		if (c >= '0' && c <= '9') {
+			return c - '0' + 26;
+		} else if (c >= 'a' && c <= 'z') {
+			return c - 'a';
+		} else if (c >= 'A' && c <= 'Z') {
+			return c - 'A';
+		} else {
+			return -1;
+		}
+	}
+
+	private static char digitChar(int d) {
+		return (char) (d < 26 ? d + 'a' : d - 26 + '0');
+	}
+
+	private static int threshold(int k, int bias) {
+		if (k <= bias) {
+			return TMIN;
+		} else if (k >= bias + TMAX) {
+			return TMAX;
+		} else {
+			return k - bias;
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package gnu.inet.encoding;
+
+import java.nio.ByteBuffer;
+
+import static gnu.inet.encoding.UnicodeTables.PAGE_MASK;
+import static gnu.inet.encoding.UnicodeTables.PAGE_SHIFT;
+
+/**
+ * Per code point properties derived from the RFC3454 tables. The table is stored as a two-level page table (256 pages
+ * of 256 code points, identical pages are shared), so checking a character against all the tables is a single
+ * constant-time lookup instead of scanning table ranges one by one. Table B.2 case folding mappings are indexed the
+ * same way. Both tables are loaded from the <code>rfc3454.dat</code> resource when the class is initialized.
+ */
+final class RFC3454Properties {
+
+	static final int UNASSIGNED = 1;                // A.1
+	static final int MAP_TO_NOTHING = 1 << 1;       // B.1
+	static final int C11 = 1 << 2;
+	static final int C12 = 1 << 3;
+	static final int C21 = 1 << 4;
+	static final int C22 = 1 << 5;
+	static final int C3 = 1 << 6;
+	static final int C4 = 1 << 7;
+	static final int C5 = 1 << 8;
+	static final int C6 = 1 << 9;
+	static final int C7 = 1 << 10;
+	static final int C8 = 1 << 11;
+	static final int RAL = 1 << 12;                 // D.1
+	static final int L = 1 << 13;                   // D.2
+	static final int RFC3920_NODEPREP_PROHIBITED = 1 << 14;
+	static final int CASE_FOLDING = 1 << 15;         // B.2
+
+	/**
+	 * Code points prohibited by RFC3491 nameprep profile.
+	 */
+	static final int NAMEPREP_PROHIBITED = C12 | C22 | C3 | C4 | C5 | C6 | C7 | C8;
+
+	/**
+	 * Code points prohibited by RFC3920 nodeprep profile.
+	 */
+	static final int NODEPREP_PROHIBITED =
+			C11 | C12 | C21 | C22 | C3 | C4 | C5 | C6 | C7 | C8 | RFC3920_NODEPREP_PROHIBITED;
+
+	/**
+	 * Code points prohibited by RFC3920 resourceprep profile.
+	 */
+	static final int RESOURCEPREP_PROHIBITED = C12 | C21 | C22 | C3 | C4 | C5 | C6 | C7 | C8;
+
+	// position of the mapping in B.2 table increased by one, 0 means no mapping
+	private static final char[] caseFoldingData;
+	private static final int[] caseFoldingIndex;
+	private static final String[] caseFoldingMappings;
+	private static final char[] data;
+	private static final int[] index;
+
+	static {
+		ByteBuffer buffer = UnicodeTables.load(UnicodeTables.RFC3454_RESOURCE);
+		index = UnicodeTables.readInts(buffer);
+		data = UnicodeTables.readChars(buffer);
+		caseFoldingIndex = UnicodeTables.readInts(buffer);
+		caseFoldingData = UnicodeTables.readChars(buffer);
+		caseFoldingMappings = UnicodeTables.readStrings(buffer);
+	}
+
+	/**
+	 * Returns the table B.2 mapping of the character.
+	 *
+	 * @param c the character.
+	 *
+	 * @return the mapping or <code>null</code> if there is no mapping for the character.
+	 */
+	static String caseFold(char c) {
+		int i = caseFoldingData[caseFoldingIndex[c >> PAGE_SHIFT] + (c & PAGE_MASK)];
+		return (i == 0) ? null : caseFoldingMappings[i - 1];
+	}
+
+	/**
+	 * Returns all RFC3454 properties of the character.
+	 *
+	 * @param c the character.
+	 *
+	 * @return bit mask of the properties.
+	 */
+	static int get(char c) {
+		return data[index[c >> PAGE_SHIFT] + (c & PAGE_MASK)];
+	}
+
+	/**
+	 * Checks if the character has any of the given properties.
+	 *
+	 * @param c the character.
+	 * @param properties bit mask of the properties.
+	 *
+	 * @return <code>true</code> if the character has at least one of the properties.
+	 */
+	static boolean is(char c, int properties) {
+		return (get(c) & properties) != 0;
+	}
+
+	private RFC3454Properties() {
+	}
+}
@@ -27,125 +27,180 @@ public class Stringprep {
 	/**
 	 * Characters prohibited by RFC3920 nodeprep that aren't defined as part of the RFC3454 tables.
 	 */
-	private static final char[] RFC3920_NODEPREP_PROHIBIT = new char[]{'\u0022', '\u0026', '\'', '\u002F', '\u003A',
+	static final char[] RFC3920_NODEPREP_PROHIBIT = new char[]{'\u0022', '\u0026', '\'', '\u002F', '\u003A',
 																	   '\u003C', '\u003E', '\u0040'};
 
-	static boolean contains(StringBuffer s, char[] p) {
-		for (int i = 0; i < p.length; i++) {
-			char c = p[i];
-			for (int j = 0; j < s.length(); j++) {
-				if (c == s.charAt(j)) {
-					return true;
-				}
+	/**
+	 * Checks whether the string consists of printable 7-bit ASCII characters only (U+0020 - U+007E). Such strings
+	 * contain no unassigned code points, nothing to be mapped to nothing, no RandALCat characters and are not changed
+	 * by NFKC normalization, so they may be prepped without the full table based processing.
+	 *
+	 * @param s the string to check.
+	 *
+	 * @return <code>true</code> if the fast path may be used for the string.
+	 */
+	static boolean isPrintableAscii(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < '\u0020' || c > '\u007E') {
+				return false;
 			}
 		}
-		return false;
+		return true;
 	}
 
-	static boolean contains(StringBuffer s, char[][] p) {
-		for (int i = 0; i < p.length; i++) {
-			char[] r = p[i];
-			if (1 == r.length) {
-				char c = r[0];
-				for (int j = 0; j < s.length(); j++) {
-					if (c == s.charAt(j)) {
-						return true;
-					}
-				}
-			} else if (2 == r.length) {
-				char f = r[0];
-				char t = r[1];
-				for (int j = 0; j < s.length(); j++) {
-					if (f <= s.charAt(j) && t >= s.charAt(j)) {
-						return true;
+	/**
+	 * Table B.2 case folding limited to ASCII characters.
+	 *
+	 * @param s printable ASCII string.
+	 *
+	 * @return the string with upper case letters mapped to lower case or the same instance if there was nothing to map.
+	 */
+	static String asciiCaseFold(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				char[] chars = s.toCharArray();
+				for (int j = i; j < chars.length; j++) {
+					c = chars[j];
+					if (c >= 'A' && c <= 'Z') {
+						chars[j] = (char) (c + ('a' - 'A'));
 					}
 				}
+				return new String(chars);
 			}
 		}
-		return false;
+		return s;
 	}
 
-	static boolean contains(char c, char[][] p) {
-		for (int i = 0; i < p.length; i++) {
-			char[] r = p[i];
-			if (1 == r.length) {
-				if (c == r[0]) {
-					return true;
-				}
-			} else if (2 == r.length) {
-				char f = r[0];
-				char t = r[1];
-				if (f <= c && t >= c) {
-					return true;
-				}
+	static String asciiNameprep(String input) {
+		// none of the printable ASCII characters is prohibited by nameprep (table C.1.1 is not used)
+		return asciiCaseFold(input);
+	}
+
+	static String asciiNodeprep(String input) throws StringprepException {
+		for (int i = 0; i < input.length(); i++) {
+			char c = input.charAt(i);
+			// table C.1.1 contains space only, the rest is RFC3920 nodeprep specific
+			if (c == '\u0020' || c == '\u0022' || c == '\u0026' || c == '\'' || c == '\u002F' || c == '\u003A' ||
+					c == '\u003C' || c == '\u003E' || c == '\u0040') {
+				throw new StringprepException(StringprepException.CONTAINS_PROHIBITED);
 			}
 		}
-		return false;
+		return asciiCaseFold(input);
 	}
 
-	static void filter(StringBuffer s, char[] f) {
-		for (int i = 0; i < f.length; i++) {
-			char c = f[i];
+	static String asciiResourceprep(String input) {
+		// resourceprep maps nothing and prohibits none of the printable ASCII characters
+		return input;
+	}
 
-			int j = 0;
-			while (j < s.length()) {
-				if (c == s.charAt(j)) {
-					s.deleteCharAt(j);
-				} else {
-					j++;
+	/**
+	 * Checks the input for unassigned code points (table A.1), removes characters mapped to nothing (table B.1) and
+	 * optionally maps characters using case folding table (table B.2). All steps are done in a single pass over the
+	 * input.
+	 *
+	 * @param input the string to process.
+	 * @param allowUnassigned true if the string may contain unassigned code points.
+	 * @param caseFold true if the table B.2 mapping should be applied.
+	 *
+	 * @return mapped string or the same instance if there was nothing to map.
+	 *
+	 * @throws StringprepException if unassigned code points are not allowed and the input contains them.
+	 */
+	static String filterAndMap(String input, boolean allowUnassigned, boolean caseFold) throws StringprepException {
+		int check = (allowUnassigned ? 0 : RFC3454Properties.UNASSIGNED) | RFC3454Properties.MAP_TO_NOTHING |
+				(caseFold ? RFC3454Properties.CASE_FOLDING : 0);
+		StringBuilder s = null;
+
+		for (int i = 0; i < input.length(); i++) {
+			char c = input.charAt(i);
+			int properties = RFC3454Properties.get(c) & check;
+			if (properties == 0) {
+				if (s != null) {
+					s.append(c);
+				}
+				continue;
+			}
+			if ((properties & RFC3454Properties.UNASSIGNED) != 0) {
+				throw new StringprepException(StringprepException.CONTAINS_UNASSIGNED);
+			}
+			if (s == null) {
+				s = new StringBuilder(input.length() + 16).append(input, 0, i);
+			}
+			if ((properties & RFC3454Properties.MAP_TO_NOTHING) == 0) {
+				String mapping = RFC3454Properties.caseFold(c);
+				if (mapping != null) {
+					s.append(mapping);
 				}
 			}
 		}
+
+		return (s == null) ? input : s.toString();
 	}
 
-	static void filter(StringBuffer s, char[][] f) {
-		for (int i = 0; i < f.length; i++) {
-			char[] r = f[i];
+	/**
+	 * Checks the string for prohibited code points and verifies bidi requirements from RFC3454 section 6. Both checks
+	 * are done in a single pass over the string.
+	 *
+	 * @param s normalized string to check.
+	 * @param prohibited bit mask of properties of prohibited code points.
+	 *
+	 * @throws StringprepException if a prohibited code point is found or the bidi requirements are not met.
+	 */
+	static void checkProhibitedAndBidi(CharSequence s, int prohibited) throws StringprepException {
+		boolean r = false;
+		boolean l = false;
+
+		for (int i = 0; i < s.length(); i++) {
+			int properties = RFC3454Properties.get(s.charAt(i));
+			if ((properties & prohibited) != 0) {
+				// Table C.9 only contains code points > 0xFFFF which Java
+				// doesn't handle
+				throw new StringprepException(StringprepException.CONTAINS_PROHIBITED);
+			}
+			r |= (properties & RFC3454Properties.RAL) != 0;
+			l |= (properties & RFC3454Properties.L) != 0;
+		}
+
+		// RFC 3454, section 6, requirement 1: already handled above (table C.8)
 
-			if (1 == r.length) {
-				char c = r[0];
+		// RFC 3454, section 6, requirement 2
+		if (r && l) {
+			throw new StringprepException(StringprepException.BIDI_BOTHRAL);
+		}
 
-				int j = 0;
-				while (j < s.length()) {
-					if (c == s.charAt(j)) {
-						s.deleteCharAt(j);
-					} else {
-						j++;
-					}
-				}
-			} else if (2 == r.length) {
-				char from = r[0];
-				char to = r[1];
-
-				int j = 0;
-				while (j < s.length()) {
-					if (from <= s.charAt(j) && to >= s.charAt(j)) {
-						s.deleteCharAt(j);
-					} else {
-						j++;
-					}
-				}
+		// RFC 3454, section 6, requirement 3
+		if (r) {
+			if (!RFC3454Properties.is(s.charAt(0), RFC3454Properties.RAL) ||
+					!RFC3454Properties.is(s.charAt(s.length() - 1), RFC3454Properties.RAL)) {
+				throw new StringprepException(StringprepException.BIDI_LTRAL);
 			}
 		}
 	}
 
-	static void map(StringBuffer s, char[] search, String[] replace) {
-		for (int i = 0; i < search.length; i++) {
-			char c = search[i];
-
-			int j = 0;
-			while (j < s.length()) {
-				if (c == s.charAt(j)) {
-					s.deleteCharAt(j);
-					if (null != replace[i]) {
-						s.insert(j, replace[i]);
-						j += replace[i].length() - 1;
-					}
-				} else {
-					j++;
-				}
-			}
-		}
+	/**
+	 * Stringprep processing pipeline: filtering and mapping, normalization, prohibited code points and bidi checks.
+	 *
+	 * @param input the string to prep.
+	 * @param allowUnassigned true if the string may contain unassigned code points.
+	 * @param caseFold true if the table B.2 mapping should be applied.
+	 * @param prohibited bit mask of properties of prohibited code points.
+	 *
+	 * @return the prepped string.
+	 *
+	 * @throws StringprepException If the string cannot be prepped with this profile.
+	 */
+	static String prep(String input, boolean allowUnassigned, boolean caseFold, int prohibited)
+			throws StringprepException {
+		String s = filterAndMap(input, allowUnassigned, caseFold);
+
+		// B.3 is only needed if NFKC is not used, right?
+		s = NFKC.normalizeNFKC(s);
+
+		checkProhibitedAndBidi(s, prohibited);
+
+		return s;
 	}
 
 	/**
@@ -179,46 +234,15 @@ public class Stringprep {
 			throw new NullPointerException();
 		}
 
-		StringBuffer s = new StringBuffer(input);
-
-		if (!allowUnassigned && contains(s, RFC3454.A1)) {
-			throw new StringprepException(StringprepException.CONTAINS_UNASSIGNED);
-		}
-
-		filter(s, RFC3454.B1);
-		map(s, RFC3454.B2search, RFC3454.B2replace);
-
-		s = new StringBuffer(NFKC.normalizeNFKC(s.toString()));
-		// B.3 is only needed if NFKC is not used, right?
-		// map(s, RFC3454.B3search, RFC3454.B3replace);
-
-		if (contains(s, RFC3454.C12) || contains(s, RFC3454.C22) || contains(s, RFC3454.C3) ||
-				contains(s, RFC3454.C4) || contains(s, RFC3454.C5) || contains(s, RFC3454.C6) ||
-				contains(s, RFC3454.C7) || contains(s, RFC3454.C8)) {
-			// Table C.9 only contains code points > 0xFFFF which Java
-			// doesn't handle
-			throw new StringprepException(StringprepException.CONTAINS_PROHIBITED);
+		if (isPrintableAscii(input)) {
+			return asciiNameprep(input);
 		}
 
-		// Bidi handling
-		boolean r = contains(s, RFC3454.D1);
-		boolean l = contains(s, RFC3454.D2);
-
-		// RFC 3454, section 6, requirement 1: already handled above (table C.8)
-
-		// RFC 3454, section 6, requirement 2
-		if (r && l) {
-			throw new StringprepException(StringprepException.BIDI_BOTHRAL);
-		}
-
-		// RFC 3454, section 6, requirement 3
-		if (r) {
-			if (!contains(s.charAt(0), RFC3454.D1) || !contains(s.charAt(s.length() - 1), RFC3454.D1)) {
-				throw new StringprepException(StringprepException.BIDI_LTRAL);
-			}
-		}
+		return nameprepFull(input, allowUnassigned);
+	}
 
-		return s.toString();
+	static String nameprepFull(String input, boolean allowUnassigned) throws StringprepException {
+		return prep(input, allowUnassigned, true, RFC3454Properties.NAMEPREP_PROHIBITED);
 	}
 
 	/**
@@ -253,45 +277,15 @@ public class Stringprep {
 			throw new NullPointerException();
 		}
 
-		StringBuffer s = new StringBuffer(input);
-
-		if (!allowUnassigned && contains(s, RFC3454.A1)) {
-			throw new StringprepException(StringprepException.CONTAINS_UNASSIGNED);
-		}
-
-		filter(s, RFC3454.B1);
-		map(s, RFC3454.B2search, RFC3454.B2replace);
-
-		s = new StringBuffer(NFKC.normalizeNFKC(s.toString()));
-
-		if (contains(s, RFC3454.C11) || contains(s, RFC3454.C12) || contains(s, RFC3454.C21) ||
-				contains(s, RFC3454.C22) || contains(s, RFC3454.C3) || contains(s, RFC3454.C4) ||
-				contains(s, RFC3454.C5) || contains(s, RFC3454.C6) || contains(s, RFC3454.C7) ||
-				contains(s, RFC3454.C8) || contains(s, RFC3920_NODEPREP_PROHIBIT)) {
-			// Table C.9 only contains code points > 0xFFFF which Java
-			// doesn't handle
-			throw new StringprepException(StringprepException.CONTAINS_PROHIBITED);
+		if (isPrintableAscii(input)) {
+			return asciiNodeprep(input);
 		}
 
-		// Bidi handling
-		boolean r = contains(s, RFC3454.D1);
-		boolean l = contains(s, RFC3454.D2);
-
-		// RFC 3454, section 6, requirement 1: already handled above (table C.8)
-
-		// RFC 3454, section 6, requirement 2
-		if (r && l) {
-			throw new StringprepException(StringprepException.BIDI_BOTHRAL);
-		}
-
-		// RFC 3454, section 6, requirement 3
-		if (r) {
-			if (!contains(s.charAt(0), RFC3454.D1) || !contains(s.charAt(s.length() - 1), RFC3454.D1)) {
-				throw new StringprepException(StringprepException.BIDI_LTRAL);
-			}
-		}
+		return nodeprepFull(input, allowUnassigned);
+	}
 
-		return s.toString();
+	static String nodeprepFull(String input, boolean allowUnassigned) throws StringprepException {
+		return prep(input, allowUnassigned, true, RFC3454Properties.NODEPREP_PROHIBITED);
 	}
 
 	/**
@@ -326,42 +320,14 @@ public class Stringprep {
 			throw new NullPointerException();
 		}
 
-		StringBuffer s = new StringBuffer(input);
-
-		if (!allowUnassigned && contains(s, RFC3454.A1)) {
-			throw new StringprepException(StringprepException.CONTAINS_UNASSIGNED);
-		}
-
-		filter(s, RFC3454.B1);
-
-		s = new StringBuffer(NFKC.normalizeNFKC(s.toString()));
-
-		if (contains(s, RFC3454.C12) || contains(s, RFC3454.C21) || contains(s, RFC3454.C22) ||
-				contains(s, RFC3454.C3) || contains(s, RFC3454.C4) || contains(s, RFC3454.C5) ||
-				contains(s, RFC3454.C6) || contains(s, RFC3454.C7) || contains(s, RFC3454.C8)) {
-			// Table C.9 only contains code points > 0xFFFF which Java
-			// doesn't handle
-			throw new StringprepException(StringprepException.CONTAINS_PROHIBITED);
-		}
-
-		// Bidi handling
-		boolean r = contains(s, RFC3454.D1);
-		boolean l = contains(s, RFC3454.D2);
-
-		// RFC 3454, section 6, requirement 1: already handled above (table C.8)
-
-		// RFC 3454, section 6, requirement 2
-		if (r && l) {
-			throw new StringprepException(StringprepException.BIDI_BOTHRAL);
+		if (isPrintableAscii(input)) {
+			return asciiResourceprep(input);
 		}
 
-		// RFC 3454, section 6, requirement 3
-		if (r) {
-			if (!contains(s.charAt(0), RFC3454.D1) || !contains(s.charAt(s.length() - 1), RFC3454.D1)) {
-				throw new StringprepException(StringprepException.BIDI_LTRAL);
-			}
-		}
+		return resourceprepFull(input, allowUnassigned);
+	}
 
-		return s.toString();
+	static String resourceprepFull(String input, boolean allowUnassigned) throws StringprepException {
+		return prep(input, allowUnassigned, false, RFC3454Properties.RESOURCEPREP_PROHIBITED);
 	}
 }
@@ -0,0 +1,104 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package gnu.inet.encoding;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Loader of the binary Unicode data resources used by {@link RFC3454Properties} and {@link NFKC}. Each resource is
+ * read with a single bulk read into primitive arrays, so no large static initializers need to be executed and no
+ * table classes need to be loaded.
+ * <br>
+ * A resource starts with the <code>MAGIC</code> and <code>VERSION</code> integers followed by arrays, each stored as
+ * its length (integer) followed by big-endian elements. Per code point data is stored as two-level page tables: an
+ * index of 256 page offsets followed by the page data, in which identical pages are shared. Resources are generated
+ * by <code>UnicodeTablesGenerator</code> in the test sources from the original generated Java tables.
+ */
+final class UnicodeTables {
+
+	static final int MAGIC = 0x554E4943;
+	static final String NFKC_RESOURCE = "nfkc.dat";
+	static final int PAGE_SHIFT = 8;
+	static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+	static final String RFC3454_RESOURCE = "rfc3454.dat";
+	static final int VERSION = 1;
+
+	/**
+	 * Reads the whole resource and verifies its header.
+	 *
+	 * @param resource name of the resource relative to this package.
+	 *
+	 * @return buffer positioned after the header.
+	 */
+	static ByteBuffer load(String resource) {
+		try (InputStream in = UnicodeTables.class.getResourceAsStream(resource)) {
+			if (in == null) {
+				throw new IllegalStateException("Unicode data resource " + resource + " not found");
+			}
+			ByteBuffer buffer = ByteBuffer.wrap(in.readAllBytes());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				throw new IllegalStateException("Unicode data resource " + resource + " has invalid format");
+			}
+			return buffer;
+		} catch (IOException e) {
+			throw new IllegalStateException("Unicode data resource " + resource + " cannot be read", e);
+		}
+	}
+
+	static char[][] readCharArrays(ByteBuffer buffer) {
+		char[][] result = new char[buffer.getInt()][];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = readChars(buffer);
+		}
+		return result;
+	}
+
+	static char[] readChars(ByteBuffer buffer) {
+		char[] result = new char[buffer.getInt()];
+		buffer.asCharBuffer().get(result);
+		buffer.position(buffer.position() + result.length * Character.BYTES);
+		return result;
+	}
+
+	static int[] readInts(ByteBuffer buffer) {
+		int[] result = new int[buffer.getInt()];
+		buffer.asIntBuffer().get(result);
+		buffer.position(buffer.position() + result.length * Integer.BYTES);
+		return result;
+	}
+
+	static long[] readLongs(ByteBuffer buffer) {
+		long[] result = new long[buffer.getInt()];
+		buffer.asLongBuffer().get(result);
+		buffer.position(buffer.position() + result.length * Long.BYTES);
+		return result;
+	}
+
+	static String[] readStrings(ByteBuffer buffer) {
+		String[] result = new String[buffer.getInt()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = new String(readChars(buffer));
+		}
+		return result;
+	}
+
+	private UnicodeTables() {
+	}
+}
@@ -17,9 +17,11 @@
  */
 package tigase.cert;
 
+import gnu.inet.encoding.IDNAException;
 import tigase.annotations.TigaseDeprecated;
 import tigase.util.Algorithms;
 import tigase.util.Base64;
+import tigase.util.stringprep.IDNAConverter;
 
 import javax.crypto.Cipher;
 import javax.security.auth.x500.X500Principal;
@@ -778,6 +780,8 @@ public abstract class CertificateUtil {
 			throws CertificateParsingException {
 		log.log(Level.FINEST, "verifyCertificateForHostname, hostname: {0}, x509Certificate: {1}",
 				new Object[]{hostname, x509Certificate});
+		// dNSName entries contain internationalized domain names in the ASCII form only
+		hostname = toASCIIHostname(hostname);
 		boolean altNamePresents = false;
 		Collection<List<?>> altNames = x509Certificate.getSubjectAlternativeNames();
 		if (altNames != null) {
@@ -804,6 +808,21 @@ public abstract class CertificateUtil {
 		return false;
 	}
 
+	private static String toASCIIHostname(String hostname) {
+		for (int i = 0; i < hostname.length(); i++) {
+			if (hostname.charAt(i) > 0x7f) {
+				try {
+					return IDNAConverter.getInstance().toASCII(hostname);
+				} catch (IDNAException ex) {
+					log.log(Level.FINEST, "hostname {0} cannot be converted to ASCII: {1}",
+							new Object[]{hostname, ex.getMessage()});
+					return hostname;
+				}
+			}
+		}
+		return hostname;
+	}
+
 	protected static boolean verifyCertificateForIp(String ipAddr, X509Certificate x509Certificate)
 			throws CertificateParsingException {
 		log.log(Level.FINEST, "verifyCertificateForIp, ipAddr: {0}, x509Certificate: {1}",
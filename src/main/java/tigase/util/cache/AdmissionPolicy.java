@@ -0,0 +1,47 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.cache;
+
+/**
+ * Policy deciding if a new entry should be admitted to a full cache at the expense of the entry selected for eviction
+ * by the cache replacement policy. Caches in this package which accept an admission policy record cache hits and
+ * insertions of keys (so a miss followed by a put is recorded once) and consult the policy when the cache limit is
+ * exceeded after inserting a new entry.
+ *
+ * @param <K> type of keys
+ */
+public interface AdmissionPolicy<K> {
+
+	/**
+	 * Decides which of the entries should be kept in the cache.
+	 *
+	 * @param candidate key of the new entry
+	 * @param victim key of the entry selected for eviction
+	 *
+	 * @return <code>true</code> if the victim should be evicted, <code>false</code> if the candidate should be rejected
+	 * instead.
+	 */
+	boolean admit(K candidate, K victim);
+
+	/**
+	 * Records access to the key.
+	 *
+	 * @param key of the accessed entry
+	 */
+	void record(K key);
+}
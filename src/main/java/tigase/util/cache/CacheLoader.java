@@ -0,0 +1,53 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.cache;
+
+/**
+ * Computes values for {@link LoadingCache}.
+ *
+ * @param <K> type of keys
+ * @param <V> type of values
+ */
+@FunctionalInterface
+public interface CacheLoader<K, V> {
+
+	/**
+	 * Computes value for the key. It is called by a single thread for a key at the time, while other threads requesting
+	 * the same key wait for the result.
+	 *
+	 * @param key key of the entry
+	 *
+	 * @return value or <code>null</code> if there is no value to cache
+	 *
+	 * @throws Exception passed to all threads waiting for the value, wrapped in
+	 * {@link java.util.concurrent.ExecutionException}
+	 */
+	V load(K key) throws Exception;
+
+	/**
+	 * Returns time in milliseconds for which the loaded value is valid, i.e. the TTL of a DNS record.
+	 *
+	 * @param key key of the entry
+	 * @param value loaded value
+	 *
+	 * @return time to live or negative value to use the default time of the cache
+	 */
+	default long getTtl(K key, V value) {
+		return -1;
+	}
+}
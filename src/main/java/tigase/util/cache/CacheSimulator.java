@@ -0,0 +1,220 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.cache;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Replays a key access trace against the cache implementations and reports hit ratios, so that a replacement and
+ * admission policy may be chosen (and a cache sized) for a real workload before changing the configuration.
+ * <br>
+ * Trace is either a file with one key per line or a synthetic stream described as
+ * <code>zipf:keys:exponent:length:noise</code>, i.e. <code>zipf:100000:0.9:1000000:0.3</code>, in which
+ * <code>noise</code> is the fraction of requests for keys which are never requested again (one-hit wonders).
+ * <br>
+ * Usage: <code>java tigase.util.cache.CacheSimulator trace [size...]</code>
+ */
+public class CacheSimulator {
+
+	public static final String[] POLICIES = {"lru", "lru-tinylfu", "concurrent-lru", "concurrent-lru-tinylfu", "clock",
+											 "clock-tinylfu"};
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: CacheSimulator <file|zipf:keys:exponent:length:noise> [size...]");
+			System.exit(1);
+		}
+		Object[] trace = loadTrace(args[0]);
+		int[] sizes = args.length > 1 ? new int[args.length - 1] : new int[]{1000, 10000};
+		for (int i = 1; i < args.length; i++) {
+			sizes[i - 1] = Integer.parseInt(args[i]);
+		}
+
+		System.out.println("Trace: " + args[0] + ", requests: " + trace.length);
+		StringBuilder sb = new StringBuilder(String.format("%-24s", "policy"));
+		for (int size : sizes) {
+			sb.append(String.format("%12s", size));
+		}
+		System.out.println(sb);
+		for (String policy : POLICIES) {
+			sb.setLength(0);
+			sb.append(String.format("%-24s", policy));
+			for (int size : sizes) {
+				sb.append(String.format("%11.2f%%", simulate(policy, size, trace) * 100));
+			}
+			System.out.println(sb);
+		}
+	}
+
+	/**
+	 * Replays trace against a new cache, every miss is followed by inserting the key.
+	 *
+	 * @param policy one of {@link #POLICIES}
+	 * @param size maximum number of cache entries
+	 * @param trace keys in the order of requests
+	 *
+	 * @return ratio of hits to all requests
+	 */
+	public static double simulate(String policy, int size, Object[] trace) {
+		if (trace.length == 0) {
+			return 0;
+		}
+		SimulatedCache cache = createCache(policy, size);
+		long hits = 0;
+		for (Object key : trace) {
+			if (cache.get(key) != null) {
+				hits++;
+			} else {
+				cache.put(key, Boolean.TRUE);
+			}
+		}
+		return (double) hits / trace.length;
+	}
+
+	/**
+	 * Reads trace from file (one key per line, empty lines are skipped) or generates it when <code>spec</code> starts
+	 * with <code>zipf:</code>.
+	 */
+	public static Object[] loadTrace(String spec) throws IOException {
+		if (spec.startsWith("zipf:")) {
+			String[] parts = spec.split(":");
+			if (parts.length != 5) {
+				throw new IllegalArgumentException("Expected zipf:keys:exponent:length:noise, got: " + spec);
+			}
+			return zipfTrace(Integer.parseInt(parts[1]), Double.parseDouble(parts[2]), Integer.parseInt(parts[3]),
+							 Double.parseDouble(parts[4]), 42);
+		}
+		List<Object> keys = new ArrayList<>();
+		try (BufferedReader reader = Files.newBufferedReader(Paths.get(spec), StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (!line.isEmpty()) {
+					keys.add(line);
+				}
+			}
+		}
+		return keys.toArray();
+	}
+
+	/**
+	 * Generates trace of Zipf distributed keys mixed with keys requested only once.
+	 *
+	 * @param keys number of distinct popular keys
+	 * @param exponent skew of the distribution, the higher the more skewed
+	 * @param length number of requests
+	 * @param noise fraction of requests for unique keys
+	 * @param seed random seed, so that traces are reproducible
+	 */
+	public static Object[] zipfTrace(int keys, double exponent, int length, double noise, long seed) {
+		double[] cdf = new double[keys];
+		double sum = 0;
+		for (int i = 0; i < keys; i++) {
+			sum += 1 / Math.pow(i + 1, exponent);
+			cdf[i] = sum;
+		}
+		Random random = new Random(seed);
+		Object[] trace = new Object[length];
+		long unique = keys;
+		for (int i = 0; i < length; i++) {
+			if (random.nextDouble() < noise) {
+				trace[i] = unique++;
+			} else {
+				int idx = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+				trace[i] = (long) Math.min(idx < 0 ? -idx - 1 : idx, keys - 1);
+			}
+		}
+		return trace;
+	}
+
+	private static SimulatedCache createCache(String policy, int size) {
+		switch (policy) {
+			case "lru":
+				return of(new LRUConcurrentCache<>(size));
+			case "lru-tinylfu":
+				return of(new LRUConcurrentCache<>(size, new TinyLFUAdmission<>(size)));
+			case "concurrent-lru":
+				return of(new ConcurrentLRUCache<>(size));
+			case "concurrent-lru-tinylfu":
+				return of(new ConcurrentLRUCache<>(size, new TinyLFUAdmission<>(size)));
+			case "clock":
+				return of(new ConcurrentClockCache<>(size));
+			case "clock-tinylfu":
+				return of(new ConcurrentClockCache<>(size, new TinyLFUAdmission<>(size)));
+			default:
+				throw new IllegalArgumentException("Unknown policy: " + policy);
+		}
+	}
+
+	private static SimulatedCache of(LRUConcurrentCache<Object, Object> cache) {
+		return new SimulatedCache() {
+			@Override
+			public Object get(Object key) {
+				return cache.get(key);
+			}
+
+			@Override
+			public void put(Object key, Object value) {
+				cache.put(key, value);
+			}
+		};
+	}
+
+	private static SimulatedCache of(ConcurrentLRUCache<Object, Object> cache) {
+		return new SimulatedCache() {
+			@Override
+			public Object get(Object key) {
+				return cache.get(key);
+			}
+
+			@Override
+			public void put(Object key, Object value) {
+				cache.put(key, value);
+			}
+		};
+	}
+
+	private static SimulatedCache of(ConcurrentClockCache<Object, Object> cache) {
+		return new SimulatedCache() {
+			@Override
+			public Object get(Object key) {
+				return cache.get(key);
+			}
+
+			@Override
+			public void put(Object key, Object value) {
+				cache.put(key, value);
+			}
+		};
+	}
+
+	private interface SimulatedCache {
+
+		Object get(Object key);
+
+		void put(Object key, Object value);
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of cache statistics returned by {@link StatsCounter#snapshot()}.
+ * <br>
+ * {@link #toMap(String)} exports values under names built as <code>prefix/name</code>, in which <code>name</code> is
+ * one of the constants of this class, so that statistics of every cache instance are exported in the same way, i.e.
+ * <code>dns/ip-cache/hits</code>.
+ */
+public final class CacheStats {
+
+	public static final String AVERAGE_LOAD_TIME = "average-load-time-ns";
+	public static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0, 0, 0);
+	public static final String EVICTIONS = "evictions";
+	public static final String EXPIRATIONS = "expirations";
+	public static final String HITS = "hits";
+	public static final String HIT_RATE = "hit-rate";
+	public static final String LOAD_FAILURES = "load-failures";
+	public static final String LOAD_SUCCESSES = "load-successes";
+	public static final String MISSES = "misses";
+	public static final String TOTAL_LOAD_TIME = "total-load-time-ns";
+
+	private final long evictionCount;
+	private final long expirationCount;
+	private final long hitCount;
+	private final long loadFailureCount;
+	private final long loadSuccessCount;
+	private final long missCount;
+	private final long totalLoadTime;
+
+	public CacheStats(long hitCount, long missCount, long evictionCount, long expirationCount, long loadSuccessCount,
+					  long loadFailureCount, long totalLoadTime) {
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.expirationCount = expirationCount;
+		this.loadSuccessCount = loadSuccessCount;
+		this.loadFailureCount = loadFailureCount;
+		this.totalLoadTime = totalLoadTime;
+	}
+
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	public long getMissCount() {
+		return missCount;
+	}
+
+	public long getRequestCount() {
+		return hitCount + missCount;
+	}
+
+	/**
+	 * Returns ratio of hits to all requests or <code>1.0</code> if there were no requests.
+	 */
+	public double getHitRate() {
+		long requests = getRequestCount();
+		return requests == 0 ? 1.0 : (double) hitCount / requests;
+	}
+
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	public long getExpirationCount() {
+		return expirationCount;
+	}
+
+	public long getLoadSuccessCount() {
+		return loadSuccessCount;
+	}
+
+	public long getLoadFailureCount() {
+		return loadFailureCount;
+	}
+
+	/**
+	 * Returns time spent on loading values (successfully or not) in nanoseconds.
+	 */
+	public long getTotalLoadTime() {
+		return totalLoadTime;
+	}
+
+	/**
+	 * Returns average time of loading a value in nanoseconds.
+	 */
+	public double getAverageLoadTime() {
+		long loads = loadSuccessCount + loadFailureCount;
+		return loads == 0 ? 0.0 : (double) totalLoadTime / loads;
+	}
+
+	/**
+	 * Returns statistics of the period between <code>other</code> snapshot and this one.
+	 *
+	 * @param other earlier snapshot
+	 */
+	public CacheStats minus(CacheStats other) {
+		return new CacheStats(Math.max(0, hitCount - other.hitCount), Math.max(0, missCount - other.missCount),
+							  Math.max(0, evictionCount - other.evictionCount),
+							  Math.max(0, expirationCount - other.expirationCount),
+							  Math.max(0, loadSuccessCount - other.loadSuccessCount),
+							  Math.max(0, loadFailureCount - other.loadFailureCount),
+							  Math.max(0, totalLoadTime - other.totalLoadTime));
+	}
+
+	/**
+	 * Exports statistics as a map of names to values.
+	 *
+	 * @param prefix name of the cache instance, i.e. <code>dns/ip-cache</code>
+	 *
+	 * @return map with values in a stable order
+	 */
+	public Map<String, Number> toMap(String prefix) {
+		Map<String, Number> result = new LinkedHashMap<>();
+		result.put(prefix + '/' + HITS, hitCount);
+		result.put(prefix + '/' + MISSES, missCount);
+		result.put(prefix + '/' + HIT_RATE, getHitRate());
+		result.put(prefix + '/' + EVICTIONS, evictionCount);
+		result.put(prefix + '/' + EXPIRATIONS, expirationCount);
+		result.put(prefix + '/' + LOAD_SUCCESSES, loadSuccessCount);
+		result.put(prefix + '/' + LOAD_FAILURES, loadFailureCount);
+		result.put(prefix + '/' + TOTAL_LOAD_TIME, totalLoadTime);
+		result.put(prefix + '/' + AVERAGE_LOAD_TIME, getAverageLoadTime());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof CacheStats)) {
+			return false;
+		}
+		CacheStats that = (CacheStats) o;
+		return hitCount == that.hitCount && missCount == that.missCount && evictionCount == that.evictionCount &&
+				expirationCount == that.expirationCount && loadSuccessCount == that.loadSuccessCount &&
+				loadFailureCount == that.loadFailureCount && totalLoadTime == that.totalLoadTime;
+	}
+
+	@Override
+	public int hashCode() {
+		long result = hitCount;
+		result = 31 * result + missCount;
+		result = 31 * result + evictionCount;
+		result = 31 * result + expirationCount;
+		result = 31 * result + loadSuccessCount;
+		result = 31 * result + loadFailureCount;
+		result = 31 * result + totalLoadTime;
+		return Long.hashCode(result);
+	}
+
+	@Override
+	public String toString() {
+		return "CacheStats{" + "hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount +
+				", expirations=" + expirationCount + ", loadSuccesses=" + loadSuccessCount + ", loadFailures=" +
+				loadFailureCount + ", totalLoadTime=" + totalLoadTime + '}';
+	}
+}
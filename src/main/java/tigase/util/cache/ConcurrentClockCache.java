@@ -0,0 +1,259 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Size-bounded concurrent cache which approximates LRU eviction with the CLOCK (second chance) algorithm. Reads do not
+ * take any lock and only set a "referenced" flag on the entry, so unlike {@link LRUConcurrentCache} concurrent lookups
+ * do not serialize on a single monitor.
+ * <br>
+ * The cache keeps hit, miss and eviction counters (see {@link StatsCounter}) which may be used to size it properly.
+ * <br>
+ * Optional {@link AdmissionPolicy} is not updated by readers. Instead, the sweeping thread records entries found
+ * referenced (so frequency is sampled once per sweep) and writers record inserted keys. The policy is consulted when
+ * the sweep selects a victim while a new entry is being inserted.
+ *
+ * @param <K> type of keys
+ * @param <V> type of values
+ */
+public class ConcurrentClockCache<K, V> {
+
+	private final AdmissionPolicy<? super K> admission;
+	private final ConcurrentHashMap<K, Entry<V>> cache;
+	private final ConcurrentLinkedQueue<K> clock = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger clockSize = new AtomicInteger();
+	private final AtomicBoolean evicting = new AtomicBoolean(false);
+	private final int limit;
+	private volatile StatsCounter stats = StatsCounter.create();
+
+	public ConcurrentClockCache(int maxEntries) {
+		this(maxEntries, null);
+	}
+
+	/**
+	 * Creates cache which consults the admission policy before evicting an entry in favour of a new one.
+	 *
+	 * @param maxEntries maximum number of entries
+	 * @param admission admission policy, i.e. {@link TinyLFUAdmission}, or <code>null</code> for plain CLOCK eviction
+	 */
+	public ConcurrentClockCache(int maxEntries, AdmissionPolicy<? super K> admission) {
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("Cache limit must be greater than 0, got: " + maxEntries);
+		}
+		this.limit = maxEntries;
+		this.admission = admission;
+		this.cache = new ConcurrentHashMap<>(Math.min(maxEntries, 1 << 16));
+	}
+
+	public void clear() {
+		cache.clear();
+		clock.clear();
+		clockSize.set(0);
+	}
+
+	public boolean containsKey(K key) {
+		return cache.containsKey(key);
+	}
+
+	/**
+	 * Returns value cached for the key and marks the entry as recently used.
+	 *
+	 * @param key of the entry
+	 *
+	 * @return cached value or <code>null</code> if there is no entry for the key.
+	 */
+	public V get(K key) {
+		Entry<V> entry = cache.get(key);
+		if (entry == null) {
+			stats.recordMisses(1);
+			return null;
+		}
+		entry.touch();
+		stats.recordHits(1);
+		return entry.value;
+	}
+
+	/**
+	 * Stores value in the cache, replacing the previous one if present.
+	 *
+	 * @param key of the entry
+	 * @param value to store, must not be <code>null</code>
+	 */
+	public void put(K key, V value) {
+		if (cache.put(key, new Entry<>(value)) == null) {
+			enqueue(key);
+		}
+	}
+
+	/**
+	 * Stores value in the cache only if there is no value for the key already.
+	 *
+	 * @param key of the entry
+	 * @param value to store, must not be <code>null</code>
+	 *
+	 * @return value associated with the key after the call - either the one already cached (the canonical instance) or
+	 * the one passed as the parameter.
+	 */
+	public V putIfAbsent(K key, V value) {
+		Entry<V> existing = cache.putIfAbsent(key, new Entry<>(value));
+		if (existing != null) {
+			existing.touch();
+			return existing.value;
+		}
+		enqueue(key);
+		return value;
+	}
+
+	public V remove(K key) {
+		Entry<V> entry = cache.remove(key);
+		return entry == null ? null : entry.value;
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	public int limit() {
+		return limit;
+	}
+
+	public long getEvictions() {
+		return stats.snapshot().getEvictionCount();
+	}
+
+	public long getHits() {
+		return stats.snapshot().getHitCount();
+	}
+
+	public long getMisses() {
+		return stats.snapshot().getMissCount();
+	}
+
+	public CacheStats getStats() {
+		return stats.snapshot();
+	}
+
+	/**
+	 * Replaces counter of cache statistics, i.e. with {@link StatsCounter#disabled()} to stop recording them.
+	 */
+	public void setStatsCounter(StatsCounter stats) {
+		this.stats = stats;
+	}
+
+	/**
+	 * Resets hit, miss and eviction counters.
+	 */
+	public void resetStatistics() {
+		stats.reset();
+	}
+
+	@Override
+	public String toString() {
+		CacheStats snapshot = stats.snapshot();
+		return "ConcurrentClockCache{" + "size=" + cache.size() + ", limit=" + limit + ", hits=" +
+				snapshot.getHitCount() + ", misses=" + snapshot.getMissCount() + ", evictions=" +
+				snapshot.getEvictionCount() + '}';
+	}
+
+	private void enqueue(K key) {
+		if (admission != null) {
+			admission.record(key);
+		}
+		clock.offer(key);
+		int queued = clockSize.incrementAndGet();
+		if (cache.size() > limit || queued > limit * 2) {
+			evict(key);
+		}
+	}
+
+	private void evict(K candidate) {
+		// only one thread sweeps at the time, others just go on as the limit is a soft one
+		if (!evicting.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			// two rounds at most, so that every entry gets its second chance but the sweep always terminates
+			int budget = clockSize.get() * 2;
+			while (budget-- > 0 && (cache.size() > limit || clockSize.get() > limit * 2)) {
+				K key = clock.poll();
+				if (key == null) {
+					return;
+				}
+				clockSize.decrementAndGet();
+				Entry<V> entry = cache.get(key);
+				if (entry == null) {
+					// entry was removed explicitly, key is just a leftover in the clock queue
+					continue;
+				}
+				if (cache.size() > limit) {
+					if (!entry.referenced) {
+						if (admission != null && candidate != null && !candidate.equals(key) &&
+								!admission.admit(candidate, key)) {
+							// new entry is rejected, so the victim is kept
+							Entry<V> rejected = cache.get(candidate);
+							if (rejected != null && cache.remove(candidate, rejected)) {
+								stats.recordEviction();
+							}
+							candidate = null;
+							clock.offer(key);
+							clockSize.incrementAndGet();
+							continue;
+						}
+						if (cache.remove(key, entry)) {
+							stats.recordEviction();
+						}
+						continue;
+					}
+					// second chance
+					entry.referenced = false;
+					if (admission != null) {
+						admission.record(key);
+					}
+				}
+				clock.offer(key);
+				clockSize.incrementAndGet();
+			}
+		} finally {
+			evicting.set(false);
+		}
+	}
+
+	private static final class Entry<V> {
+
+		private final V value;
+		private volatile boolean referenced = false;
+
+		private Entry(V value) {
+			if (value == null) {
+				throw new NullPointerException("Null values are not supported");
+			}
+			this.value = value;
+		}
+
+		private void touch() {
+			if (!referenced) {
+				referenced = true;
+			}
+		}
+	}
+}
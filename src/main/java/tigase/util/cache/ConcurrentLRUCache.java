@@ -0,0 +1,320 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Size-bounded concurrent LRU cache with the same API as {@link LRUConcurrentCache}, which does not serialize reads on
+ * a single monitor.
+ * <br>
+ * Entries are kept in a <code>ConcurrentHashMap</code>, so lookups themselves are lock free. Instead of reordering the
+ * LRU list on every read, accessed entries are recorded in one of several small ring buffers (selected by the calling
+ * thread) and the buffered accesses are replayed on the LRU list in batches by the thread which manages to acquire the
+ * eviction lock. If a buffer is full the access is not recorded, so under heavy contention recency is only sampled and
+ * eviction order is approximately LRU. Writes update the map without locking and then link the entry and evict the
+ * least recently used entries under the eviction lock, draining buffered reads first. In a single threaded use eviction
+ * order is exactly the same as of {@link LRUConcurrentCache}.
+ * <br>
+ * Optional {@link AdmissionPolicy} is updated with buffered reads and writes under the eviction lock, so it is not
+ * accessed concurrently by readers.
+ *
+ * @param <K> type of keys
+ * @param <V> type of values
+ */
+public class ConcurrentLRUCache<K, V> {
+
+	private static final int READ_BUFFER_MASK;
+	private static final int READ_BUFFER_SIZE = 16;
+	private static final int READ_BUFFER_STRIPES;
+
+	static {
+		int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+		READ_BUFFER_STRIPES = Math.min(stripes, 64);
+		READ_BUFFER_MASK = READ_BUFFER_STRIPES - 1;
+	}
+
+	private final AdmissionPolicy<? super K> admission;
+	private final ConcurrentHashMap<K, Node<K, V>> cache;
+	private final ReentrantLock evictionLock = new ReentrantLock();
+	private final int limit;
+	private final ReadBuffer<K, V>[] readBuffers;
+	private volatile StatsCounter stats = StatsCounter.create();
+	// LRU list, guarded by the eviction lock
+	private Node<K, V> head;
+	private Node<K, V> tail;
+
+	private static int probe() {
+		long id = Thread.currentThread().getId();
+		int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	public ConcurrentLRUCache(final int maxEntries) {
+		this(maxEntries, null);
+	}
+
+	/**
+	 * Creates cache which consults the admission policy before evicting the least recently used entry in favour of a
+	 * new one.
+	 *
+	 * @param maxEntries maximum number of entries
+	 * @param admission admission policy, i.e. {@link TinyLFUAdmission}, or <code>null</code> for plain LRU eviction
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public ConcurrentLRUCache(final int maxEntries, AdmissionPolicy<? super K> admission) {
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("Cache limit must be greater than 0, got: " + maxEntries);
+		}
+		this.limit = maxEntries;
+		this.admission = admission;
+		this.cache = new ConcurrentHashMap<>(Math.min(maxEntries, 1 << 16));
+		this.readBuffers = new ReadBuffer[READ_BUFFER_STRIPES];
+		for (int i = 0; i < readBuffers.length; i++) {
+			readBuffers[i] = new ReadBuffer<>();
+		}
+	}
+
+	public void clear() {
+		evictionLock.lock();
+		try {
+			drainReadBuffers();
+			cache.clear();
+			for (Node<K, V> node = head; node != null; ) {
+				Node<K, V> next = node.next;
+				node.prev = null;
+				node.next = null;
+				node.linked = false;
+				node = next;
+			}
+			head = null;
+			tail = null;
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	public boolean containsKey(K key) {
+		return cache.containsKey(key);
+	}
+
+	/**
+	 * Returns value cached for the key and records access to the entry.
+	 *
+	 * @param key of the entry
+	 *
+	 * @return cached value or <code>null</code> if there is no entry for the key.
+	 */
+	public V get(K key) {
+		Node<K, V> node = cache.get(key);
+		if (node == null) {
+			stats.recordMisses(1);
+			return null;
+		}
+		stats.recordHits(1);
+		recordRead(node);
+		return node.value;
+	}
+
+	public CacheStats getStats() {
+		return stats.snapshot();
+	}
+
+	/**
+	 * Replaces counter of cache statistics, i.e. with {@link StatsCounter#disabled()} to stop recording them.
+	 */
+	public void setStatsCounter(StatsCounter stats) {
+		this.stats = stats;
+	}
+
+	/**
+	 * Stores value in the cache, replacing the previous one if present, and evicts least recently used entries if the
+	 * cache limit is exceeded.
+	 *
+	 * @param key of the entry
+	 * @param value to store, must not be <code>null</code>
+	 */
+	public void put(K key, V value) {
+		Node<K, V> node = new Node<>(key, value);
+		Node<K, V> prior = cache.put(key, node);
+		evictionLock.lock();
+		try {
+			drainReadBuffers();
+			if (admission != null) {
+				admission.record(key);
+			}
+			if (prior != null) {
+				unlink(prior);
+			}
+			// entry could have been replaced or removed by other thread in the meantime
+			if (cache.get(key) == node) {
+				linkLast(node);
+			}
+			evict(prior == null ? node : null);
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	public V remove(K key) {
+		Node<K, V> node = cache.remove(key);
+		if (node == null) {
+			return null;
+		}
+		evictionLock.lock();
+		try {
+			unlink(node);
+		} finally {
+			evictionLock.unlock();
+		}
+		return node.value;
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	public int limit() {
+		return limit;
+	}
+
+	@Override
+	public String toString() {
+		return "ConcurrentLRUCache{" + "size=" + cache.size() + ", limit=" + limit + '}';
+	}
+
+	private void drainReadBuffers() {
+		for (ReadBuffer<K, V> buffer : readBuffers) {
+			long reads = buffer.reads;
+			long writes = buffer.writes.get();
+			while (reads < writes) {
+				int index = (int) (reads & (READ_BUFFER_SIZE - 1));
+				Node<K, V> node = buffer.ring.get(index);
+				if (node == null) {
+					// slot is claimed, but the node is not published yet
+					break;
+				}
+				buffer.ring.lazySet(index, null);
+				reads++;
+				if (admission != null) {
+					admission.record(node.key);
+				}
+				if (node.linked && node != tail) {
+					unlink(node);
+					linkLast(node);
+				}
+			}
+			buffer.reads = reads;
+		}
+	}
+
+	private void evict(Node<K, V> candidate) {
+		while (cache.size() > limit && head != null) {
+			Node<K, V> node = head;
+			if (admission != null && candidate != null && candidate.linked && candidate != node &&
+					!admission.admit(candidate.key, node.key)) {
+				// new entry is rejected, so the least recently used one is kept
+				node = candidate;
+			}
+			candidate = null;
+			unlink(node);
+			if (cache.remove(node.key, node)) {
+				stats.recordEviction();
+			}
+		}
+	}
+
+	private void linkLast(Node<K, V> node) {
+		node.prev = tail;
+		node.next = null;
+		if (tail == null) {
+			head = node;
+		} else {
+			tail.next = node;
+		}
+		tail = node;
+		node.linked = true;
+	}
+
+	private void recordRead(Node<K, V> node) {
+		ReadBuffer<K, V> buffer = readBuffers[probe() & READ_BUFFER_MASK];
+		long writes = buffer.writes.get();
+		long pending = writes - buffer.reads;
+		if (pending < READ_BUFFER_SIZE && buffer.writes.compareAndSet(writes, writes + 1)) {
+			buffer.ring.lazySet((int) (writes & (READ_BUFFER_SIZE - 1)), node);
+			pending++;
+		}
+		if (pending >= READ_BUFFER_SIZE / 2 && evictionLock.tryLock()) {
+			try {
+				drainReadBuffers();
+			} finally {
+				evictionLock.unlock();
+			}
+		}
+	}
+
+	private void unlink(Node<K, V> node) {
+		if (!node.linked) {
+			return;
+		}
+		Node<K, V> prev = node.prev;
+		Node<K, V> next = node.next;
+		if (prev == null) {
+			head = next;
+		} else {
+			prev.next = next;
+		}
+		if (next == null) {
+			tail = prev;
+		} else {
+			next.prev = prev;
+		}
+		node.prev = null;
+		node.next = null;
+		node.linked = false;
+	}
+
+	private static final class Node<K, V> {
+
+		private final K key;
+		private final V value;
+		// fields below are guarded by the eviction lock
+		private boolean linked = false;
+		private Node<K, V> next;
+		private Node<K, V> prev;
+
+		private Node(K key, V value) {
+			if (value == null) {
+				throw new NullPointerException("Null values are not supported");
+			}
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	private static final class ReadBuffer<K, V> {
+
+		private final AtomicReferenceArray<Node<K, V>> ring = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+		private final AtomicLong writes = new AtomicLong();
+		// written only under the eviction lock
+		private volatile long reads = 0;
+	}
+}
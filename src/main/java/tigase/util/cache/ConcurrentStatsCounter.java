@@ -0,0 +1,90 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe {@link StatsCounter} built on {@link LongAdder}s. Adders are striped, so threads recording hits of the
+ * same cache do not contend on a single counter, while reading a snapshot sums the stripes.
+ */
+public class ConcurrentStatsCounter
+		implements StatsCounter {
+
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder expirations = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder loadFailures = new LongAdder();
+	private final LongAdder loadSuccesses = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder totalLoadTime = new LongAdder();
+
+	@Override
+	public void recordHits(int count) {
+		hits.add(count);
+	}
+
+	@Override
+	public void recordMisses(int count) {
+		misses.add(count);
+	}
+
+	@Override
+	public void recordEviction() {
+		evictions.increment();
+	}
+
+	@Override
+	public void recordExpiration() {
+		expirations.increment();
+	}
+
+	@Override
+	public void recordLoadSuccess(long loadTime) {
+		loadSuccesses.increment();
+		totalLoadTime.add(loadTime);
+	}
+
+	@Override
+	public void recordLoadFailure(long loadTime) {
+		loadFailures.increment();
+		totalLoadTime.add(loadTime);
+	}
+
+	@Override
+	public CacheStats snapshot() {
+		return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), loadSuccesses.sum(),
+							  loadFailures.sum(), totalLoadTime.sum());
+	}
+
+	@Override
+	public void reset() {
+		hits.reset();
+		misses.reset();
+		evictions.reset();
+		expirations.reset();
+		loadSuccesses.reset();
+		loadFailures.reset();
+		totalLoadTime.reset();
+	}
+
+	@Override
+	public String toString() {
+		return snapshot().toString();
+	}
+}
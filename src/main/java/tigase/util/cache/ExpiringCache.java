@@ -0,0 +1,360 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.cache;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Size-bounded cache in which every entry has its own time to live, i.e. taken from the DNS record TTL. Unlike
+ * {@link SimpleCache}, which checks entries only when they are accessed (or on a full scan in
+ * {@link SimpleCache#removeOld()}), expired entries are found with a hierarchical timing wheel: each entry is placed in
+ * a bucket covering its expiration time, at a level of resolution matching how far in the future it is. When the
+ * clock reaches a bucket, only the entries of that bucket are visited and moved to a finer level, until they are
+ * removed from a bucket of the finest level. The cleanup cost is amortized O(1) per entry and it is done as a part of
+ * regular operations.
+ * <br>
+ * Wheel resolution is 1024ms, so an expired entry may stay in the cache (and be counted by {@link #size()}) for up to
+ * about a second, but it is never returned. When the cache is full, the least recently used entry is evicted.
+ * <br>
+ * All methods are synchronized. Null keys and values are not supported.
+ *
+ * @param <K> type of keys
+ * @param <V> type of values
+ */
+public class ExpiringCache<K, V>
+		extends AbstractMap<K, V> {
+
+	// bucket count and time span (as a shift of milliseconds) of each wheel level: ~1s, ~65s, ~70m, ~19h, ~6d
+	private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+	private static final int[] SHIFTS = {10, 16, 22, 26, 29};
+
+	private final LinkedHashMap<K, Node<K, V>> cache;
+	private final boolean cache_off;
+	private final LongSupplier clock;
+	private final long defaultTtl;
+	private final Node<K, V>[][] wheel;
+	private volatile StatsCounter stats = StatsCounter.create();
+	private long time;
+
+	/**
+	 * Creates cache.
+	 *
+	 * @param maxSize maximum number of entries
+	 * @param defaultTtl time in milliseconds for which entries added with {@link #put(Object, Object)} are valid
+	 */
+	public ExpiringCache(int maxSize, long defaultTtl) {
+		this(maxSize, defaultTtl, System::currentTimeMillis);
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	ExpiringCache(int maxSize, long defaultTtl, LongSupplier clock) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Cache limit must be greater than 0, got: " + maxSize);
+		}
+		this.defaultTtl = defaultTtl;
+		this.clock = clock;
+		this.time = clock.getAsLong();
+		// A quick way to switch all the cache off in Tigase.
+		// Set the property: tigase.cache=false
+		String cache_on = System.getProperty("tigase.cache");
+		this.cache_off = !(cache_on == null || cache_on.equals("true") || cache_on.equals("1") ||
+				cache_on.equals("yes") || cache_on.equals("on"));
+		this.cache = new LinkedHashMap<K, Node<K, V>>(Math.min(maxSize, 1 << 16), 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Node<K, V>> eldest) {
+				if (size() <= maxSize) {
+					return false;
+				}
+				unlink(eldest.getValue());
+				stats.recordEviction();
+				return true;
+			}
+		};
+		this.wheel = new Node[BUCKETS.length][];
+		for (int i = 0; i < BUCKETS.length; i++) {
+			wheel[i] = new Node[BUCKETS[i]];
+			for (int j = 0; j < BUCKETS[i]; j++) {
+				Node<K, V> sentinel = new Node<>(null, null, 0);
+				sentinel.prev = sentinel;
+				sentinel.next = sentinel;
+				wheel[i][j] = sentinel;
+			}
+		}
+	}
+
+	@Override
+	public synchronized void clear() {
+		cache.clear();
+		for (Node<K, V>[] buckets : wheel) {
+			for (Node<K, V> sentinel : buckets) {
+				sentinel.prev = sentinel;
+				sentinel.next = sentinel;
+			}
+		}
+	}
+
+	@Override
+	public synchronized boolean containsKey(Object key) {
+		if (cache_off || key == null) {
+			return false;
+		}
+		long now = advance();
+		Node<K, V> node = cache.get(key);
+		return node != null && node.expiresAt > now;
+	}
+
+	@Override
+	public synchronized Set<Map.Entry<K, V>> entrySet() {
+		long now = advance();
+		Map<K, V> snapshot = new LinkedHashMap<>();
+		for (Node<K, V> node : cache.values()) {
+			if (node.expiresAt > now) {
+				snapshot.put(node.key, node.value);
+			}
+		}
+		return Collections.unmodifiableMap(snapshot).entrySet();
+	}
+
+	@Override
+	public synchronized V get(Object key) {
+		if (cache_off || key == null) {
+			return null;
+		}
+		long now = advance();
+		Node<K, V> node = cache.get(key);
+		if (node == null) {
+			stats.recordMisses(1);
+			return null;
+		}
+		if (node.expiresAt <= now) {
+			cache.remove(key);
+			unlink(node);
+			stats.recordExpiration();
+			stats.recordMisses(1);
+			return null;
+		}
+		stats.recordHits(1);
+		return node.value;
+	}
+
+	public CacheStats getStats() {
+		return stats.snapshot();
+	}
+
+	StatsCounter getStatsCounter() {
+		return stats;
+	}
+
+	/**
+	 * Returns value of a valid entry without recording statistics.
+	 */
+	synchronized V peek(Object key) {
+		if (cache_off || key == null) {
+			return null;
+		}
+		long now = advance();
+		Node<K, V> node = cache.get(key);
+		return node == null || node.expiresAt <= now ? null : node.value;
+	}
+
+	/**
+	 * Replaces counter of cache statistics, i.e. with {@link StatsCounter#disabled()} to stop recording them.
+	 */
+	public void setStatsCounter(StatsCounter stats) {
+		this.stats = stats;
+	}
+
+	@Override
+	public V put(K key, V value) {
+		return put(key, value, defaultTtl);
+	}
+
+	/**
+	 * Adds entry valid for the given time.
+	 *
+	 * @param key key of the entry
+	 * @param value value of the entry
+	 * @param ttl time in milliseconds for which the entry is valid, entry is not cached if it is not positive
+	 *
+	 * @return previous value, if it was not expired
+	 */
+	public synchronized V put(K key, V value, long ttl) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+		if (cache_off) {
+			return null;
+		}
+		long now = advance();
+		Node<K, V> old;
+		if (ttl <= 0) {
+			old = cache.remove(key);
+		} else {
+			Node<K, V> node = new Node<>(key, value, ttl > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + ttl);
+			old = cache.put(key, node);
+			schedule(node);
+		}
+		if (old == null) {
+			return null;
+		}
+		unlink(old);
+		return old.expiresAt > now ? old.value : null;
+	}
+
+	@Override
+	public synchronized V remove(Object key) {
+		if (cache_off || key == null) {
+			return null;
+		}
+		long now = advance();
+		Node<K, V> node = cache.remove(key);
+		if (node == null) {
+			return null;
+		}
+		unlink(node);
+		return node.expiresAt > now ? node.value : null;
+	}
+
+	/**
+	 * Removes expired entries. It is not required to call this method, as it is done by other methods as well, but it
+	 * allows to release memory of a cache which is not used for some time.
+	 */
+	public synchronized void removeOld() {
+		advance();
+	}
+
+	/**
+	 * Returns time in milliseconds for which the entry will remain valid or <code>0</code> if there is no valid entry
+	 * for the key.
+	 *
+	 * @param key key of the entry
+	 */
+	public synchronized long getRemainingTtl(Object key) {
+		if (cache_off || key == null) {
+			return 0;
+		}
+		long now = advance();
+		Node<K, V> node = cache.get(key);
+		return node == null ? 0 : Math.max(0, node.expiresAt - now);
+	}
+
+	@Override
+	public synchronized int size() {
+		advance();
+		return cache.size();
+	}
+
+	private long advance() {
+		long previous = time;
+		long now = clock.getAsLong();
+		if (now <= previous) {
+			return now;
+		}
+		time = now;
+		// coarse levels first, so that entries moved down are handled by finer levels in the same pass
+		for (int i = SHIFTS.length - 1; i >= 0; i--) {
+			long previousTicks = previous >>> SHIFTS[i];
+			long currentTicks = now >>> SHIFTS[i];
+			if (currentTicks > previousTicks) {
+				expire(i, previousTicks, currentTicks - previousTicks);
+			}
+		}
+		return now;
+	}
+
+	/**
+	 * Visits buckets of the level passed by the clock. At the finest level buckets of finished ticks hold only expired
+	 * entries, at coarser levels buckets of started ticks are visited, so that their entries are moved to finer levels
+	 * before they expire.
+	 */
+	private void expire(int level, long previousTicks, long delta) {
+		Node<K, V>[] buckets = wheel[level];
+		int mask = buckets.length - 1;
+		int steps = (int) Math.min(delta, buckets.length);
+		long start = level == 0 ? previousTicks : previousTicks + 1;
+		for (long tick = start; tick < start + steps; tick++) {
+			Node<K, V> sentinel = buckets[(int) (tick & mask)];
+			Node<K, V> node = sentinel.next;
+			sentinel.prev = sentinel;
+			sentinel.next = sentinel;
+			while (node != sentinel) {
+				Node<K, V> next = node.next;
+				node.prev = null;
+				node.next = null;
+				if (node.expiresAt <= time) {
+					cache.remove(node.key, node);
+					stats.recordExpiration();
+				} else {
+					schedule(node);
+				}
+				node = next;
+			}
+		}
+	}
+
+	private void schedule(Node<K, V> node) {
+		Node<K, V> sentinel = findBucket(node.expiresAt);
+		node.prev = sentinel.prev;
+		node.next = sentinel;
+		sentinel.prev.next = node;
+		sentinel.prev = node;
+	}
+
+	private Node<K, V> findBucket(long expiresAt) {
+		long duration = expiresAt - time;
+		int last = wheel.length - 1;
+		for (int i = 0; i < last; i++) {
+			if (duration < (1L << SHIFTS[i + 1])) {
+				long ticks = expiresAt >>> SHIFTS[i];
+				return wheel[i][(int) (ticks & (wheel[i].length - 1))];
+			}
+		}
+		return wheel[last][0];
+	}
+
+	private void unlink(Node<K, V> node) {
+		if (node.next != null) {
+			node.prev.next = node.next;
+			node.next.prev = node.prev;
+			node.prev = null;
+			node.next = null;
+		}
+	}
+
+	private static final class Node<K, V> {
+
+		private final long expiresAt;
+		private final K key;
+		private final V value;
+		private Node<K, V> next;
+		private Node<K, V> prev;
+
+		private Node(K key, V value, long expiresAt) {
+			this.key = key;
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
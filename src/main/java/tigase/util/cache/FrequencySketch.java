@@ -0,0 +1,125 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.cache;
+
+/**
+ * Probabilistic frequency counter (count-min sketch) with 4-bit counters and aging, used to estimate how often a key
+ * was accessed recently. Each key is mapped to four counters placed within a single 64-bit word, the estimate is the
+ * minimum of them, so it may only overestimate the real frequency (up to 15). After the number of increments reaches
+ * ten times the configured maximum size all counters are halved, so the sketch reflects recent popularity of keys.
+ * <br>
+ * Methods do not synchronize. Concurrent increments may be lost, which only makes estimates slightly less accurate.
+ */
+public class FrequencySketch {
+
+	private static final long ONE_MASK = 0x1111111111111111L;
+	private static final long RESET_MASK = 0x7777777777777777L;
+	private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+										 0xcbf29ce484222325L};
+
+	private final int sampleSize;
+	private final long[] table;
+	private final int tableMask;
+	private int size = 0;
+
+	private static int spread(int x) {
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		return (x >>> 16) ^ x;
+	}
+
+	/**
+	 * Creates sketch sized for a cache holding up to <code>maximumSize</code> entries.
+	 *
+	 * @param maximumSize maximum number of entries of the cache
+	 */
+	public FrequencySketch(int maximumSize) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("Maximum size must be greater than 0, got: " + maximumSize);
+		}
+		int length = Integer.highestOneBit(Math.min(maximumSize, 1 << 30) * 2 - 1);
+		this.table = new long[Math.max(length, 8)];
+		this.tableMask = table.length - 1;
+		this.sampleSize = (maximumSize > Integer.MAX_VALUE / 10) ? Integer.MAX_VALUE : maximumSize * 10;
+	}
+
+	/**
+	 * Returns estimated number of recent occurrences of the key.
+	 *
+	 * @param key to check
+	 *
+	 * @return frequency from 0 to 15
+	 */
+	public int frequency(Object key) {
+		int hash = spread(key.hashCode());
+		int start = (hash & 3) << 2;
+		int frequency = Integer.MAX_VALUE;
+		for (int i = 0; i < 4; i++) {
+			int count = (int) ((table[indexOf(hash, i)] >>> ((start + i) << 2)) & 0xfL);
+			frequency = Math.min(frequency, count);
+		}
+		return frequency;
+	}
+
+	/**
+	 * Records occurrence of the key, halving all counters if the sample size is reached.
+	 *
+	 * @param key to record
+	 */
+	public void increment(Object key) {
+		int hash = spread(key.hashCode());
+		int start = (hash & 3) << 2;
+		boolean added = false;
+		for (int i = 0; i < 4; i++) {
+			added |= incrementAt(indexOf(hash, i), start + i);
+		}
+		if (added && ++size >= sampleSize) {
+			reset();
+		}
+	}
+
+	/**
+	 * Halves all counters (aging).
+	 */
+	public void reset() {
+		int odd = 0;
+		for (int i = 0; i < table.length; i++) {
+			odd += Long.bitCount(table[i] & ONE_MASK);
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+		size = Math.max(0, (size - (odd >>> 2)) >>> 1);
+	}
+
+	private boolean incrementAt(int i, int j) {
+		int offset = j << 2;
+		long mask = 0xfL << offset;
+		// table entry is read once, so a racing update cannot make the counter wrap and carry into its neighbour
+		long value = table[i];
+		if ((value & mask) != mask) {
+			table[i] = value + (1L << offset);
+			return true;
+		}
+		return false;
+	}
+
+	private int indexOf(int hash, int i) {
+		long h = (hash + SEEDS[i]) * SEEDS[i];
+		h += (h >>> 32);
+		return ((int) h) & tableMask;
+	}
+}
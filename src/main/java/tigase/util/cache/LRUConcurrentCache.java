@@ -22,17 +22,44 @@ import java.util.Map;
 
 public class LRUConcurrentCache<K, V> {
 
+	private final AdmissionPolicy<? super K> admission;
 	private final Map<K, V> cache;
 	private final int limit;
+	private volatile StatsCounter stats = StatsCounter.create();
+	// key of the entry being inserted, guarded by the cache monitor
+	private K candidate = null;
 
 	public LRUConcurrentCache(final int maxEntries) {
+		this(maxEntries, null);
+	}
+
+	/**
+	 * Creates cache which consults the admission policy before evicting the least recently used entry in favour of a
+	 * new one.
+	 *
+	 * @param maxEntries maximum number of entries
+	 * @param admission admission policy, i.e. {@link TinyLFUAdmission}, or <code>null</code> for plain LRU eviction
+	 */
+	public LRUConcurrentCache(final int maxEntries, AdmissionPolicy<? super K> admission) {
 		this.limit = maxEntries;
+		this.admission = admission;
 		this.cache = new LinkedHashMap<K, V>(maxEntries, 0.75F, true) {
 			private static final long serialVersionUID = -1236481390177598762L;
 
 			@Override
 			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-				return size() > maxEntries;
+				if (size() <= maxEntries) {
+					return false;
+				}
+				stats.recordEviction();
+				K victim = eldest.getKey();
+				if (candidate == null || victim == null || candidate.equals(victim) ||
+						admission.admit(candidate, victim)) {
+					return true;
+				}
+				// new entry is rejected, so the least recently used one is kept
+				remove(candidate);
+				return false;
 			}
 		};
 	}
@@ -50,14 +77,48 @@ public class LRUConcurrentCache<K, V> {
 	}
 
 	public V get(K key) {
+		V value;
 		synchronized (cache) {
-			return cache.get(key);
+			value = cache.get(key);
+			// only hits are recorded here, misses are recorded when the entry is put
+			if (value != null && admission != null) {
+				admission.record(key);
+			}
 		}
+		if (value == null) {
+			stats.recordMisses(1);
+		} else {
+			stats.recordHits(1);
+		}
+		return value;
+	}
+
+	public CacheStats getStats() {
+		return stats.snapshot();
+	}
+
+	/**
+	 * Replaces counter of cache statistics, i.e. with {@link StatsCounter#disabled()} to stop recording them.
+	 */
+	public void setStatsCounter(StatsCounter stats) {
+		this.stats = stats;
 	}
 
 	public void put(K key, V value) {
+		if (admission == null || key == null) {
+			synchronized (cache) {
+				cache.put(key, value);
+			}
+			return;
+		}
 		synchronized (cache) {
-			cache.put(key, value);
+			admission.record(key);
+			candidate = key;
+			try {
+				cache.put(key, value);
+			} finally {
+				candidate = null;
+			}
 		}
 	}
 
@@ -0,0 +1,255 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.cache;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache which computes missing values with {@link CacheLoader}, i.e. resolves a hostname on the first request.
+ * <br>
+ * Loads are coalesced: when many threads request the same missing key at once (i.e. just after a popular entry
+ * expired), the loader is called only by the first of them and the others wait for its result, so an expensive lookup
+ * is not repeated by every thread.
+ * <br>
+ * Optionally, an entry requested within <code>refreshAhead</code> milliseconds before its expiration is reloaded in
+ * the background by the given executor, while the current value is still returned. Entries which are requested
+ * frequently are then replaced before they expire and their callers never wait for the loader. Entries are stored in
+ * {@link ExpiringCache}, which keeps statistics of hits, misses and loads.
+ *
+ * @param <K> type of keys
+ * @param <V> type of values
+ */
+public class LoadingCache<K, V> {
+
+	private static final Logger log = Logger.getLogger(LoadingCache.class.getName());
+
+	private final ExpiringCache<K, V> cache;
+	private final Executor executor;
+	private final CacheLoader<? super K, V> loader;
+	private final ConcurrentHashMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+	private final long refreshAhead;
+
+	/**
+	 * Creates cache without background refreshing of entries.
+	 *
+	 * @param maxSize maximum number of entries
+	 * @param ttl time in milliseconds for which loaded values are valid, unless the loader returns other time
+	 * @param loader loader of missing values
+	 */
+	public LoadingCache(int maxSize, long ttl, CacheLoader<? super K, V> loader) {
+		this(new ExpiringCache<>(maxSize, ttl), loader, 0, null);
+	}
+
+	/**
+	 * Creates cache which stores values in an existing cache, so that it may be still accessed directly.
+	 *
+	 * @param cache storage of values
+	 * @param loader loader of missing values
+	 * @param refreshAhead time in milliseconds before expiration of an entry in which a request for it triggers
+	 * reloading of the value, <code>0</code> disables refreshing
+	 * @param executor executor of refreshing, required if <code>refreshAhead</code> is positive
+	 */
+	public LoadingCache(ExpiringCache<K, V> cache, CacheLoader<? super K, V> loader, long refreshAhead,
+						Executor executor) {
+		if (refreshAhead > 0 && executor == null) {
+			throw new IllegalArgumentException("Executor is required to refresh entries");
+		}
+		this.cache = cache;
+		this.loader = loader;
+		this.refreshAhead = refreshAhead;
+		this.executor = executor;
+	}
+
+	/**
+	 * Returns value for the key, loading it if it is not cached. If the value is being loaded by another thread,
+	 * waits for it.
+	 *
+	 * @param key key of the entry
+	 *
+	 * @return value or <code>null</code> if the loader returned <code>null</code>
+	 *
+	 * @throws ExecutionException if the loader failed, exception thrown by the loader is its cause
+	 */
+	public V get(K key) throws ExecutionException {
+		V value = cache.get(key);
+		if (value != null) {
+			if (refreshAhead > 0 && cache.getRemainingTtl(key) < refreshAhead) {
+				refresh(key);
+			}
+			return value;
+		}
+
+		CompletableFuture<V> future = new CompletableFuture<>();
+		CompletableFuture<V> pending = loading.putIfAbsent(key, future);
+		if (pending != null) {
+			return await(pending);
+		}
+		// value could have been stored by other thread which finished loading just before
+		value = cache.peek(key);
+		if (value != null) {
+			loading.remove(key, future);
+			future.complete(value);
+			return value;
+		}
+		return load(key, future);
+	}
+
+	/**
+	 * Returns cached value without loading it.
+	 *
+	 * @param key key of the entry
+	 */
+	public V getIfPresent(K key) {
+		return cache.get(key);
+	}
+
+	/**
+	 * Stores value in the cache. Value being loaded for the key at the same time is discarded.
+	 *
+	 * @param key key of the entry
+	 * @param value value of the entry
+	 */
+	public void put(K key, V value) {
+		loading.compute(key, (k, pending) -> {
+			cache.put(k, value);
+			return null;
+		});
+	}
+
+	/**
+	 * Removes value from the cache. Value being loaded for the key at the same time is discarded, so that it does not
+	 * replace the removed one, while threads already waiting for it still receive it.
+	 *
+	 * @param key key of the entry
+	 */
+	public void invalidate(K key) {
+		loading.compute(key, (k, pending) -> {
+			cache.remove(k);
+			return null;
+		});
+	}
+
+	/**
+	 * Removes all values from the cache and discards values being loaded.
+	 */
+	public void invalidateAll() {
+		loading.clear();
+		cache.clear();
+	}
+
+	/**
+	 * Reloads value of the key in the background, unless it is already being loaded. Current value is returned by
+	 * {@link #get(Object)} until the new one is loaded.
+	 *
+	 * @param key key of the entry
+	 */
+	public void refresh(K key) {
+		if (executor == null) {
+			throw new IllegalStateException("Executor is required to refresh entries");
+		}
+		CompletableFuture<V> future = new CompletableFuture<>();
+		if (loading.putIfAbsent(key, future) != null) {
+			return;
+		}
+		try {
+			executor.execute(() -> {
+				try {
+					load(key, future);
+				} catch (ExecutionException ex) {
+					log.log(Level.FINE, "Failed to refresh value of " + key, ex.getCause());
+				}
+			});
+		} catch (RejectedExecutionException ex) {
+			log.log(Level.FINE, "Refreshing of " + key + " rejected", ex);
+			loading.remove(key, future);
+			future.completeExceptionally(ex);
+		}
+	}
+
+	public ExpiringCache<K, V> getCache() {
+		return cache;
+	}
+
+	public CacheStats getStats() {
+		return cache.getStats();
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	@Override
+	public String toString() {
+		return "LoadingCache{" + "size=" + cache.size() + ", loading=" + loading.size() + ", stats=" + getStats() +
+				'}';
+	}
+
+	private V load(K key, CompletableFuture<V> future) throws ExecutionException {
+		StatsCounter stats = cache.getStatsCounter();
+		long start = System.nanoTime();
+		final V value;
+		try {
+			value = loader.load(key);
+		} catch (Throwable ex) {
+			stats.recordLoadFailure(System.nanoTime() - start);
+			loading.remove(key, future);
+			future.completeExceptionally(ex);
+			if (ex instanceof Error) {
+				throw (Error) ex;
+			}
+			throw new ExecutionException(ex);
+		}
+		stats.recordLoadSuccess(System.nanoTime() - start);
+		// value is stored only if the load was not discarded by invalidate() or put() in the meantime, and before the
+		// future is removed, so that no thread starts loading it again
+		loading.computeIfPresent(key, (k, pending) -> {
+			if (pending != future) {
+				return pending;
+			}
+			if (value != null) {
+				long ttl = loader.getTtl(k, value);
+				if (ttl < 0) {
+					cache.put(k, value);
+				} else {
+					cache.put(k, value, ttl);
+				}
+			}
+			return null;
+		});
+		future.complete(value);
+		return value;
+	}
+
+	private V await(CompletableFuture<V> future) throws ExecutionException {
+		try {
+			return future.join();
+		} catch (CompletionException ex) {
+			throw new ExecutionException(ex.getCause());
+		} catch (CancellationException ex) {
+			throw new ExecutionException(ex);
+		}
+	}
+}
@@ -41,8 +41,21 @@ public class SimpleCache<K, V>
 	protected boolean cache_off = false;
 	private SizedCache<K, CacheObject<V>> cache = null;
 	private long cache_time = 1000;
+	private volatile StatsCounter stats = StatsCounter.create();
 
 	public SimpleCache(int maxSize, long time) {
+		this(maxSize, time, null);
+	}
+
+	/**
+	 * Creates cache which uses the admission policy to decide if a new entry should replace the least recently used
+	 * one when the cache is full.
+	 *
+	 * @param maxSize maximum number of entries
+	 * @param time time in milliseconds for which entries are valid
+	 * @param admission admission policy, i.e. {@link TinyLFUAdmission}, or <code>null</code> for plain LRU eviction
+	 */
+	public SimpleCache(int maxSize, long time, AdmissionPolicy<? super K> admission) {
 		cache_time = time;
 		// A quick way to switch all the cache off in Tigase.
 		// Set the property: tigase.cache=false
@@ -50,7 +63,14 @@ public class SimpleCache<K, V>
 		if (cache_on == null || cache_on.equals("true") || cache_on.equals("1") || cache_on.equals("yes") ||
 				cache_on.equals("on")) {
 			cache_off = false;
-			cache = new SizedCache<K, CacheObject<V>>(maxSize);
+			cache = new SizedCache<K, CacheObject<V>>(maxSize, admission);
+			// hits and misses are recorded here, as only this class knows whether an entry is expired
+			cache.setStatsCounter(new StatsCounter() {
+				@Override
+				public void recordEviction() {
+					stats.recordEviction();
+				}
+			});
 		} else {
 			cache_off = true;
 		}
@@ -65,6 +85,7 @@ public class SimpleCache<K, V>
 			CacheObject<V> cob = iterator.next().getValue();
 			if (cob.time + cache_time < System.currentTimeMillis()) {
 				iterator.remove();
+				stats.recordExpiration();
 			}
 		}
 	}
@@ -76,18 +97,32 @@ public class SimpleCache<K, V>
 
 		CacheObject<V> cob = cache.get(key);
 		if ((cob != null) && (cob.time + cache_time >= System.currentTimeMillis())) {
+			stats.recordHits(1);
 			return cob.data;
 		} else {
+			stats.recordMisses(1);
 			return null;
 		}
 	}
 
+	public CacheStats getStats() {
+		return stats.snapshot();
+	}
+
+	/**
+	 * Replaces counter of cache statistics, i.e. with {@link StatsCounter#disabled()} to stop recording them.
+	 */
+	public void setStatsCounter(StatsCounter stats) {
+		this.stats = stats;
+	}
+
 	public V put(K key, V value) {
 		if (cache_off) {
 			return null;
 		}
 
-		V result = get(key);
+		CacheObject<V> old = cache.get(key);
+		V result = (old != null && old.time + cache_time >= System.currentTimeMillis()) ? old.data : null;
 		CacheObject<V> cob = new CacheObject<V>();
 		cob.time = System.currentTimeMillis();
 		cob.data = value;
@@ -22,7 +22,11 @@ public class SimpleCacheSynchronized<K, V> {
 	private final SimpleCache<K,V> cache;
 
 	public SimpleCacheSynchronized(int maxSize, long time) {
-		this.cache = new SimpleCache<>(maxSize, time);
+		this(maxSize, time, null);
+	}
+
+	public SimpleCacheSynchronized(int maxSize, long time, AdmissionPolicy<? super K> admission) {
+		this.cache = new SimpleCache<>(maxSize, time, admission);
 	}
 
 	public V get(K key) {
@@ -43,6 +47,14 @@ public class SimpleCacheSynchronized<K, V> {
 		}
 	}
 
+	public CacheStats getStats() {
+		return cache.getStats();
+	}
+
+	public void setStatsCounter(StatsCounter stats) {
+		cache.setStatsCounter(stats);
+	}
+
 	public V remove(K key) {
 		if (cache.cache_off) {
 			return null;
@@ -17,6 +17,8 @@
  */
 package tigase.util.cache;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -33,16 +35,88 @@ public class SizedCache<K, V>
 
 	private static final long serialVersionUID = 1L;
 
+	private final transient AdmissionPolicy<? super K> admission;
+	private transient K candidate = null;
 	private int maxCacheSize = 1000;
+	private transient volatile StatsCounter stats = StatsCounter.create();
 
 	public SizedCache(int maxSize) {
+		this(maxSize, null);
+	}
+
+	/**
+	 * Creates cache which consults the admission policy before evicting the least recently used entry in favour of a
+	 * new one.
+	 *
+	 * @param maxSize maximum number of entries
+	 * @param admission admission policy, i.e. {@link TinyLFUAdmission}, or <code>null</code> for plain LRU eviction
+	 */
+	public SizedCache(int maxSize, AdmissionPolicy<? super K> admission) {
 		super(maxSize, 0.9f, true);
 		maxCacheSize = maxSize;
+		this.admission = admission;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		V value = super.get(key);
+		// only hits are recorded here, misses are recorded when the entry is put
+		if (value != null && admission != null) {
+			admission.record((K) key);
+		}
+		if (value == null) {
+			stats.recordMisses(1);
+		} else {
+			stats.recordHits(1);
+		}
+		return value;
+	}
+
+	public CacheStats getStats() {
+		return stats.snapshot();
+	}
+
+	/**
+	 * Replaces counter of cache statistics, i.e. with {@link StatsCounter#disabled()} to stop recording them.
+	 */
+	public void setStatsCounter(StatsCounter stats) {
+		this.stats = stats;
+	}
+
+	@Override
+	public V put(K key, V value) {
+		if (admission == null || key == null) {
+			return super.put(key, value);
+		}
+		admission.record(key);
+		candidate = key;
+		try {
+			return super.put(key, value);
+		} finally {
+			candidate = null;
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		// statistics counter is not serialized, field initializers are not run for deserialized instances
+		stats = StatsCounter.create();
 	}
 
 	@Override
 	protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-		return size() > maxCacheSize;
+		if (size() <= maxCacheSize) {
+			return false;
+		}
+		stats.recordEviction();
+		K victim = eldest.getKey();
+		if (candidate == null || victim == null || candidate.equals(victim) || admission.admit(candidate, victim)) {
+			return true;
+		}
+		// new entry is rejected, so the least recently used one is kept
+		remove(candidate);
+		return false;
 	}
 
 }
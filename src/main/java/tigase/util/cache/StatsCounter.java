@@ -0,0 +1,110 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.cache;
+
+/**
+ * Receives events of a cache, so that they may be counted. All methods are no-ops by default, so that recording may
+ * be disabled with {@link #disabled()} and an implementation may be interested in selected events only.
+ * <br>
+ * Implementations must be thread-safe, as they are called by caches without any locking.
+ */
+public interface StatsCounter {
+
+	/**
+	 * Name of the system property which allows to disable recording of statistics of all caches. Set
+	 * <code>tigase.cache.stats=false</code> to switch it off.
+	 */
+	String STATS_PROP_KEY = "tigase.cache.stats";
+
+	/**
+	 * Creates new counter, unless statistics are disabled by {@link #STATS_PROP_KEY} property.
+	 *
+	 * @return new {@link ConcurrentStatsCounter} or {@link #disabled()} counter
+	 */
+	static StatsCounter create() {
+		String enabled = System.getProperty(STATS_PROP_KEY);
+		if (enabled == null || enabled.equals("true") || enabled.equals("1") || enabled.equals("yes") ||
+				enabled.equals("on")) {
+			return new ConcurrentStatsCounter();
+		}
+		return disabled();
+	}
+
+	/**
+	 * Returns counter which does not record anything.
+	 */
+	static StatsCounter disabled() {
+		return DisabledStatsCounter.INSTANCE;
+	}
+
+	default void recordHits(int count) {
+	}
+
+	default void recordMisses(int count) {
+	}
+
+	/**
+	 * Records removal of an entry because of the size limit, including rejection of a new entry by an admission
+	 * policy.
+	 */
+	default void recordEviction() {
+	}
+
+	/**
+	 * Records removal of an entry because its time to live passed.
+	 */
+	default void recordExpiration() {
+	}
+
+	/**
+	 * Records successful load of a value.
+	 *
+	 * @param loadTime time spent on loading in nanoseconds
+	 */
+	default void recordLoadSuccess(long loadTime) {
+	}
+
+	/**
+	 * Records failed load of a value.
+	 *
+	 * @param loadTime time spent on loading in nanoseconds
+	 */
+	default void recordLoadFailure(long loadTime) {
+	}
+
+	/**
+	 * Returns snapshot of recorded values. Counters are not synchronized with each other, so values may be slightly
+	 * inconsistent if they are changed concurrently.
+	 */
+	default CacheStats snapshot() {
+		return CacheStats.EMPTY;
+	}
+
+	default void reset() {
+	}
+
+	enum DisabledStatsCounter
+			implements StatsCounter {
+		INSTANCE;
+
+		@Override
+		public String toString() {
+			return "DisabledStatsCounter";
+		}
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.cache;
+
+/**
+ * TinyLFU admission policy: a new entry is admitted to the full cache only if it was accessed recently more often than
+ * the entry selected for eviction. Frequencies are estimated with {@link FrequencySketch}, so the policy keeps no
+ * per-key state and keys of evicted or rejected entries are still counted. This protects the hot working set from
+ * being flushed by a burst of keys requested only once (i.e. DNS lookups of spam domains or one-off S2S traffic).
+ * <br>
+ * Policy may be shared by threads without locking, concurrent updates only make the estimates less accurate.
+ *
+ * @param <K> type of keys
+ */
+public class TinyLFUAdmission<K>
+		implements AdmissionPolicy<K> {
+
+	private final FrequencySketch sketch;
+
+	/**
+	 * Creates policy for a cache holding up to <code>maximumSize</code> entries.
+	 *
+	 * @param maximumSize maximum number of entries of the cache
+	 */
+	public TinyLFUAdmission(int maximumSize) {
+		this.sketch = new FrequencySketch(maximumSize);
+	}
+
+	@Override
+	public boolean admit(K candidate, K victim) {
+		return sketch.frequency(candidate) > sketch.frequency(victim);
+	}
+
+	@Override
+	public void record(K key) {
+		sketch.increment(key);
+	}
+
+	public FrequencySketch getSketch() {
+		return sketch;
+	}
+}
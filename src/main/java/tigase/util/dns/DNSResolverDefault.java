@@ -17,7 +17,9 @@
  */
 package tigase.util.dns;
 
-import tigase.util.cache.SimpleCache;
+import tigase.util.cache.CacheLoader;
+import tigase.util.cache.ExpiringCache;
+import tigase.util.cache.LoadingCache;
 
 import javax.naming.NamingEnumeration;
 import javax.naming.directory.Attribute;
@@ -28,6 +30,7 @@ import java.math.BigInteger;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -43,10 +46,15 @@ public class DNSResolverDefault
 	private static final String OPEN_DNS_HIT_NXDOMAIN = "hit-nxdomain.opendns.com";
 	private final static Comparator<String> IPv4_PRIORITY_COMPARATOR = Comparator.comparing(
 			(String s) -> s.contains(":"));
-	public static Map<String, DNSEntry> ip_cache = Collections.synchronizedMap(
-			new SimpleCache<String, DNSEntry>(100, DNS_CACHE_TIME));
-	public static Map<String, DNSEntry[]> srv_cache = Collections.synchronizedMap(
-			new SimpleCache<String, DNSEntry[]>(100, DNS_CACHE_TIME));
+	// typed references used for per entry TTLs and statistics, public fields keep their Map type for binary
+	// compatibility
+	private static final ExpiringCache<String, DNSEntry> ipCache = new ExpiringCache<>(100, DNS_CACHE_TIME);
+	private static final ExpiringCache<String, DNSEntry[]> srvCache = new ExpiringCache<>(100, DNS_CACHE_TIME);
+	public static Map<String, DNSEntry> ip_cache = ipCache;
+	public static Map<String, DNSEntry[]> srv_cache = srvCache;
+	// concurrent lookups of the same hostname wait for a single resolution
+	private static final LoadingCache<String, DNSEntry> ip_loader = new LoadingCache<>(ipCache, new HostIPsLoader(),
+																					   0, null);
 	private static String defaultHost = null;
 	private static String[] localnames = null;
 	private static String opendns_hit_nxdomain_ip = null;
@@ -66,6 +74,43 @@ public class DNSResolverDefault
 		return false;
 	}
 
+	private static DNSEntry resolveHostIPs(String hostname) throws UnknownHostException {
+		InetAddress[] all = InetAddress.getAllByName(hostname);
+		String[] ip_addresses = new String[all.length];
+
+		for (int j = 0; j < all.length; j++) {
+			ip_addresses[j] = all[j].getHostAddress();
+			if (ip_addresses[j].equals(opendns_hit_nxdomain_ip)) {
+				throw new UnknownHostException("OpenDNS NXDOMAIN");
+			}
+		}
+		Arrays.sort(ip_addresses, IPv4_PRIORITY_COMPARATOR);
+
+		return new DNSEntry(hostname, ip_addresses);
+	}
+
+	/**
+	 * Returns statistics of DNS caches, named <code>dns/ip-cache/...</code> and <code>dns/srv-cache/...</code>.
+	 */
+	public static Map<String, Number> getCacheStatistics() {
+		Map<String, Number> result = new LinkedHashMap<>();
+		result.putAll(ipCache.getStats().toMap("dns/ip-cache"));
+		result.putAll(srvCache.getStats().toMap("dns/srv-cache"));
+		return result;
+	}
+
+	/**
+	 * Returns time for which resolved entries may be cached: the lowest TTL of the entries, but not longer than
+	 * <code>DNS_CACHE_TIME</code>.
+	 */
+	protected static long getCacheTime(DNSEntry... entries) {
+		long time = DNS_CACHE_TIME;
+		for (DNSEntry entry : entries) {
+			time = Math.min(time, entry.getTtl());
+		}
+		return time;
+	}
+
 	private static boolean isNumbersOnly(String hostname) {
 		try {
 			new BigInteger(hostname);
@@ -293,32 +338,23 @@ public class DNSResolverDefault
 			throw new UnknownHostException("Provided hostname was decimal IP representation which is not supported");
 		}
 
-		DNSEntry cache_res = ip_cache.get(hostname);
-
-		if (cache_res != null) {
-			return cache_res.getIps();
-		}    // end of if (result != null)
-
-		InetAddress[] all = InetAddress.getAllByName(hostname);
-		String[] ip_addresses = new String[all.length];
-
-		for (int j = 0; j < all.length; j++) {
-			ip_addresses[j] = all[j].getHostAddress();
-			if (ip_addresses[j].equals(opendns_hit_nxdomain_ip)) {
-				throw new UnknownHostException("OpenDNS NXDOMAIN");
+		try {
+			DNSEntry entry = ip_loader.get(hostname);
+			return entry.getIps();
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof UnknownHostException) {
+				throw (UnknownHostException) ex.getCause();
 			}
+			UnknownHostException e = new UnknownHostException("Not possible to resolve " + hostname);
+			e.initCause(ex.getCause());
+			throw e;
 		}
-		Arrays.sort(ip_addresses, IPv4_PRIORITY_COMPARATOR);
-
-		ip_cache.put(hostname, new DNSEntry(hostname, ip_addresses));
-
-		return ip_addresses;
 	}
 
 	@Override
 	public DNSEntry[] getHostSRV_Entries(String hostname, String service, int defPort) throws UnknownHostException {
 		String key = service + "." + hostname;
-		DNSEntry[] cache_res = srv_cache.get(key);
+		DNSEntry[] cache_res = srvCache.get(key);
 
 		if (cache_res != null) {
 			return cache_res;
@@ -327,9 +363,23 @@ public class DNSResolverDefault
 		cache_res = DNSResolverIfc.super.getHostSRV_Entries(hostname, service, defPort);
 
 		if (cache_res != null) {
-			srv_cache.put(key, cache_res);
+			srvCache.put(key, cache_res, getCacheTime(cache_res));
 		}
 
 		return cache_res;
 	}
+
+	private static class HostIPsLoader
+			implements CacheLoader<String, DNSEntry> {
+
+		@Override
+		public DNSEntry load(String hostname) throws UnknownHostException {
+			return resolveHostIPs(hostname);
+		}
+
+		@Override
+		public long getTtl(String hostname, DNSEntry entry) {
+			return getCacheTime(entry);
+		}
+	}
 }
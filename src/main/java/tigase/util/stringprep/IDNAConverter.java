@@ -0,0 +1,260 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.stringprep;
+
+import gnu.inet.encoding.IDNA;
+import gnu.inet.encoding.IDNAException;
+import tigase.util.cache.ConcurrentClockCache;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caching facade for the RFC3490 IDNA conversions of the {@link IDNA} class. Results of the <code>ToASCII</code> and
+ * <code>ToUnicode</code> operations are cached per label in size-bounded concurrent caches, so labels shared by many
+ * domains (or domains converted over and over again during S2S connection setup and certificate verification) go
+ * through nameprep and Punycode only once. Domains consisting of ASCII characters only never reach the cache, as they
+ * are only validated (<code>toASCII</code>) or checked for the ACE prefix (<code>toUnicode</code>) and the same
+ * instance is returned.
+ * <br>
+ * Results are the same as returned by {@link IDNA#toASCII(String)} and {@link IDNA#toUnicode(String)}.
+ */
+public class IDNAConverter {
+
+	public static final String CACHE_SIZE_PROP_KEY = "tigase.idna.cache-size";
+
+	public static final int DEFAULT_CACHE_SIZE = 1000;
+
+	private static final IDNAConverter INSTANCE = new IDNAConverter();
+
+	private final ConcurrentClockCache<String, Object> asciiCache;
+	private final ConcurrentClockCache<String, String> unicodeCache;
+
+	/**
+	 * Returns shared instance with the cache size configured by <code>tigase.idna.cache-size</code> system property.
+	 *
+	 * @return shared instance of the converter
+	 */
+	public static IDNAConverter getInstance() {
+		return INSTANCE;
+	}
+
+	private static boolean isSeparator(char c) {
+		return c == '.' || c == '\u3002' || c == '\uff0e' || c == '\uff61';
+	}
+
+	private static boolean isASCII(String input, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (input.charAt(i) > 0x7f) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isACE(String input, int start, int end) {
+		return end - start >= IDNA.ACE_PREFIX.length() && input.startsWith(IDNA.ACE_PREFIX, start);
+	}
+
+	private static void checkASCIILabel(String input, int start, int end) throws IDNAException {
+		for (int i = start; i < end; i++) {
+			char c = input.charAt(i);
+			if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-')) {
+				throw new IDNAException(IDNAException.CONTAINS_NON_LDH);
+			}
+		}
+		if (end > start && (input.charAt(start) == '-' || input.charAt(end - 1) == '-')) {
+			throw new IDNAException(IDNAException.CONTAINS_HYPHEN);
+		}
+		if (end == start || end - start > 63) {
+			throw new IDNAException(IDNAException.TOO_LONG);
+		}
+	}
+
+	public IDNAConverter() {
+		this(Integer.getInteger(CACHE_SIZE_PROP_KEY, DEFAULT_CACHE_SIZE));
+	}
+
+	public IDNAConverter(int cacheSize) {
+		this.asciiCache = new ConcurrentClockCache<>(cacheSize);
+		this.unicodeCache = new ConcurrentClockCache<>(cacheSize);
+	}
+
+	/**
+	 * Converts domain name to ASCII (ACE) form, the same way as {@link IDNA#toASCII(String)} does.
+	 *
+	 * @param domain domain name which may contain internationalized labels
+	 *
+	 * @return ASCII form of the domain name or the same instance if it consists of ASCII characters only
+	 *
+	 * @throws IDNAException if any of labels is not valid
+	 */
+	public String toASCII(String domain) throws IDNAException {
+		int length = domain.length();
+		if (isASCII(domain, 0, length)) {
+			int start = 0;
+			for (int i = 0; i <= length; i++) {
+				if (i == length || domain.charAt(i) == '.') {
+					checkASCIILabel(domain, start, i);
+					start = i + 1;
+				}
+			}
+			return domain;
+		}
+
+		StringBuilder sb = new StringBuilder(length + 16);
+		int start = 0;
+		for (int i = 0; i <= length; i++) {
+			if (i == length || isSeparator(domain.charAt(i))) {
+				if (start > 0) {
+					sb.append('.');
+				}
+				if (isASCII(domain, start, i)) {
+					checkASCIILabel(domain, start, i);
+					sb.append(domain, start, i);
+				} else {
+					sb.append(labelToASCII(domain.substring(start, i)));
+				}
+				start = i + 1;
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Converts all domain names to ASCII (ACE) form. Duplicated domain names are converted only once.
+	 *
+	 * @param domains collection of domain names
+	 * @param errors map to which domain names which failed the conversion are added with the reason of the failure,
+	 * may be <code>null</code>
+	 *
+	 * @return map of successfully converted domain names to their ASCII form in order of the input collection
+	 */
+	public Map<String, String> toASCII(Collection<String> domains, Map<String, IDNAException> errors) {
+		Map<String, String> results = new LinkedHashMap<>();
+		for (String domain : domains) {
+			if (results.containsKey(domain) || (errors != null && errors.containsKey(domain))) {
+				continue;
+			}
+			try {
+				results.put(domain, toASCII(domain));
+			} catch (IDNAException ex) {
+				if (errors != null) {
+					errors.put(domain, ex);
+				}
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Converts domain name to Unicode form, the same way as {@link IDNA#toUnicode(String)} does. The conversion never
+	 * fails, labels which cannot be converted are returned unchanged.
+	 *
+	 * @param domain domain name
+	 *
+	 * @return Unicode form of the domain name or the same instance if nothing has to be converted
+	 */
+	public String toUnicode(String domain) {
+		int length = domain.length();
+		boolean convert = false;
+		int start = 0;
+		for (int i = 0; i <= length && !convert; i++) {
+			if (i == length || isSeparator(domain.charAt(i))) {
+				convert = isACE(domain, start, i) || !isASCII(domain, start, i);
+				start = i + 1;
+			}
+		}
+		if (!convert) {
+			return domain;
+		}
+
+		StringBuilder sb = new StringBuilder(length + 16);
+		start = 0;
+		for (int i = 0; i <= length; i++) {
+			if (i == length || isSeparator(domain.charAt(i))) {
+				if (isACE(domain, start, i) || !isASCII(domain, start, i)) {
+					sb.append(labelToUnicode(domain.substring(start, i)));
+				} else {
+					sb.append(domain, start, i);
+				}
+				if (i < length) {
+					sb.append(domain.charAt(i));
+				}
+				start = i + 1;
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Converts all domain names to Unicode form. Duplicated domain names are converted only once.
+	 *
+	 * @param domains collection of domain names
+	 *
+	 * @return map of domain names to their Unicode form in order of the input collection
+	 */
+	public Map<String, String> toUnicode(Collection<String> domains) {
+		Map<String, String> results = new LinkedHashMap<>();
+		for (String domain : domains) {
+			if (!results.containsKey(domain)) {
+				results.put(domain, toUnicode(domain));
+			}
+		}
+		return results;
+	}
+
+	public ConcurrentClockCache<String, Object> getASCIICache() {
+		return asciiCache;
+	}
+
+	public ConcurrentClockCache<String, String> getUnicodeCache() {
+		return unicodeCache;
+	}
+
+	private String labelToASCII(String label) throws IDNAException {
+		Object result = asciiCache.get(label);
+		if (result == null) {
+			try {
+				result = IDNA.toASCII(label, false, true);
+			} catch (IDNAException ex) {
+				result = ex;
+			}
+			result = asciiCache.putIfAbsent(label, result);
+		}
+		if (result instanceof IDNAException) {
+			IDNAException cached = (IDNAException) result;
+			// new instance is thrown, so the stack trace points to the current caller
+			IDNAException ex = new IDNAException(cached.getMessage());
+			if (cached.getCause() != null) {
+				ex.initCause(cached.getCause());
+			}
+			throw ex;
+		}
+		return (String) result;
+	}
+
+	private String labelToUnicode(String label) {
+		String result = unicodeCache.get(label);
+		if (result == null) {
+			result = unicodeCache.putIfAbsent(label, IDNA.toUnicode(label, false, true));
+		}
+		return result;
+	}
+}
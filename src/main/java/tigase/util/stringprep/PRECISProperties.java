@@ -0,0 +1,141 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.stringprep;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * PRECIS derived property values (RFC 8264, section 8) of all Unicode code points. The values are precomputed by
+ * <code>PRECISTablesGenerator</code> in the test sources and loaded from the <code>precis.dat</code> resource, stored as
+ * a two-level page table (4352 pages of 256 code points, identical pages are shared), so the property of a code point
+ * is a single constant-time lookup. Width mappings used by the PRECIS profiles are loaded from the same resource, so
+ * results do not depend on the Unicode version of the running JVM.
+ */
+final class PRECISProperties {
+
+	static final byte DISALLOWED = 0;
+	static final byte PVALID = 1;
+	/**
+	 * <code>ID_DIS</code> in the IdentifierClass, <code>FREE_PVAL</code> in the FreeformClass.
+	 */
+	static final byte FREE_PVAL = 2;
+	static final byte CONTEXTJ = 3;
+	static final byte CONTEXTO = 4;
+	static final byte UNASSIGNED = 5;
+
+	static final int MAGIC = 0x50524543;
+	static final int PAGE_SHIFT = 8;
+	static final String RESOURCE = "precis.dat";
+	static final int VERSION = 1;
+
+	private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+	private static final byte[] data;
+	private static final int[] index;
+	/**
+	 * Java specification version which Unicode data was used to generate the resource.
+	 */
+	static final String unicodeSource;
+	private static final int[] viramas;
+	private static final char[] widthMapping;
+
+	static {
+		ByteBuffer buffer = load();
+		unicodeSource = new String(readChars(buffer));
+		index = readInts(buffer);
+		data = new byte[buffer.getInt()];
+		buffer.get(data);
+		viramas = readInts(buffer);
+		widthMapping = readChars(buffer);
+	}
+
+	/**
+	 * Returns the PRECIS derived property of the code point.
+	 *
+	 * @param cp the code point.
+	 *
+	 * @return one of the derived property constants.
+	 */
+	static byte get(int cp) {
+		return data[index[cp >> PAGE_SHIFT] + (cp & PAGE_MASK)];
+	}
+
+	/**
+	 * Checks whether the code point has canonical combining class Virama (9), which is used by the CONTEXTJ rules.
+	 *
+	 * @param cp the code point.
+	 *
+	 * @return <code>true</code> for Virama characters.
+	 */
+	static boolean isVirama(int cp) {
+		return Arrays.binarySearch(viramas, cp) >= 0;
+	}
+
+	/**
+	 * Returns the width mapping (decomposition of a fullwidth or halfwidth character) of the code point.
+	 *
+	 * @param cp the code point.
+	 *
+	 * @return mapped code point or the code point itself if there is no mapping.
+	 */
+	static int mapWidth(int cp) {
+		if (cp == 0x3000) {
+			return ' ';
+		}
+		if (cp < 0xFF00 || cp > 0xFFFF) {
+			return cp;
+		}
+		char mapped = widthMapping[cp - 0xFF00];
+		return (mapped == 0) ? cp : mapped;
+	}
+
+	private static ByteBuffer load() {
+		try (InputStream in = PRECISProperties.class.getResourceAsStream(RESOURCE)) {
+			if (in == null) {
+				throw new IllegalStateException("PRECIS data resource " + RESOURCE + " not found");
+			}
+			ByteBuffer buffer = ByteBuffer.wrap(in.readAllBytes());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				throw new IllegalStateException("PRECIS data resource " + RESOURCE + " has invalid format");
+			}
+			return buffer;
+		} catch (IOException e) {
+			throw new IllegalStateException("PRECIS data resource " + RESOURCE + " cannot be read", e);
+		}
+	}
+
+	private static char[] readChars(ByteBuffer buffer) {
+		char[] result = new char[buffer.getInt()];
+		buffer.asCharBuffer().get(result);
+		buffer.position(buffer.position() + result.length * Character.BYTES);
+		return result;
+	}
+
+	private static int[] readInts(ByteBuffer buffer) {
+		int[] result = new int[buffer.getInt()];
+		buffer.asIntBuffer().get(result);
+		buffer.position(buffer.position() + result.length * Integer.BYTES);
+		return result;
+	}
+
+	private PRECISProperties() {
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.stringprep;
+
+import tigase.util.cache.ConcurrentClockCache;
+
+/**
+ * Caching decorator for a stringprep processor. Results of the nameprep, nodeprep and resourceprep processing are kept
+ * in separate, size-bounded concurrent caches, so the same JID part is processed by the decorated (usually CPU
+ * demanding) processor only once. Failures are cached as well and the <code>TigaseStringprepException</code> is
+ * rethrown for the same input without calling the decorated processor again.
+ * <br>
+ * The processor may be selected by adding the <code>cached-</code> prefix to the name of any other stringprep
+ * processor, i.e. <code>cached-libidn</code>.
+ */
+public class XMPPStringPrepCached
+		implements XMPPStringPrepIfc {
+
+	public static final String CACHE_SIZE_PROP_KEY = "tigase.stringprep.cache-size";
+
+	public static final int DEFAULT_CACHE_SIZE = 10000;
+
+	private final ConcurrentClockCache<String, Object> nameprepCache;
+	private final ConcurrentClockCache<String, Object> nodeprepCache;
+	private final ConcurrentClockCache<String, Object> resourceprepCache;
+	private final XMPPStringPrepIfc stringprep;
+
+	public XMPPStringPrepCached(XMPPStringPrepIfc stringprep) {
+		this(stringprep, Integer.getInteger(CACHE_SIZE_PROP_KEY, DEFAULT_CACHE_SIZE));
+	}
+
+	public XMPPStringPrepCached(XMPPStringPrepIfc stringprep, int cacheSize) {
+		this.stringprep = stringprep;
+		this.nameprepCache = new ConcurrentClockCache<>(cacheSize);
+		this.nodeprepCache = new ConcurrentClockCache<>(cacheSize);
+		this.resourceprepCache = new ConcurrentClockCache<>(cacheSize);
+	}
+
+	@Override
+	public String nameprep(String domain) throws TigaseStringprepException {
+		if (domain == null) {
+			return stringprep.nameprep(domain);
+		}
+		Object result = nameprepCache.get(domain);
+		if (result == null) {
+			try {
+				result = stringprep.nameprep(domain);
+			} catch (TigaseStringprepException ex) {
+				result = ex;
+			}
+			result = nameprepCache.putIfAbsent(domain, result);
+		}
+		return unwrap(result);
+	}
+
+	@Override
+	public String nodeprep(String localpart) throws TigaseStringprepException {
+		if (localpart == null) {
+			return stringprep.nodeprep(localpart);
+		}
+		Object result = nodeprepCache.get(localpart);
+		if (result == null) {
+			try {
+				result = stringprep.nodeprep(localpart);
+			} catch (TigaseStringprepException ex) {
+				result = ex;
+			}
+			result = nodeprepCache.putIfAbsent(localpart, result);
+		}
+		return unwrap(result);
+	}
+
+	@Override
+	public String resourceprep(String resource) throws TigaseStringprepException {
+		if (resource == null) {
+			return stringprep.resourceprep(resource);
+		}
+		Object result = resourceprepCache.get(resource);
+		if (result == null) {
+			try {
+				result = stringprep.resourceprep(resource);
+			} catch (TigaseStringprepException ex) {
+				result = ex;
+			}
+			result = resourceprepCache.putIfAbsent(resource, result);
+		}
+		return unwrap(result);
+	}
+
+	public ConcurrentClockCache<String, Object> getNameprepCache() {
+		return nameprepCache;
+	}
+
+	public ConcurrentClockCache<String, Object> getNodeprepCache() {
+		return nodeprepCache;
+	}
+
+	public ConcurrentClockCache<String, Object> getResourceprepCache() {
+		return resourceprepCache;
+	}
+
+	/**
+	 * Returns decorated stringprep processor.
+	 *
+	 * @return instance of the decorated XMPP Stringprep processor.
+	 */
+	public XMPPStringPrepIfc getStringprep() {
+		return stringprep;
+	}
+
+	private static String unwrap(Object result) throws TigaseStringprepException {
+		if (result instanceof TigaseStringprepException) {
+			TigaseStringprepException ex = (TigaseStringprepException) result;
+			// new instance is thrown, so the stack trace points to the current caller
+			throw new TigaseStringprepException(ex.getMessage(), ex.getCause());
+		}
+		return (String) result;
+	}
+}
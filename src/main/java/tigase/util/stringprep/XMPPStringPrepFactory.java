@@ -20,7 +20,15 @@ package tigase.util.stringprep;
 import tigase.xmpp.jid.BareJID;
 import tigase.xmpp.jid.JID;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Created: Dec 28, 2009 10:02:31 PM
@@ -32,10 +40,26 @@ public abstract class XMPPStringPrepFactory {
 
 	public static final String STRINGPREP_PROCESSOR_PROP_KEY = "stringprep-processor";
 
-	public static final String[] STRINGPREP_PROCESSORS = {"libidn", "simple", "empty"};
+	public static final String CACHED_PROCESSOR_PREFIX = "cached-";
+
+	public static final String METERED_PROCESSOR_PREFIX = "metered-";
+
+	public static final String[] STRINGPREP_PROCESSORS = {"libidn", "cached-libidn", "precis", "simple", "empty"};
 
 	public static String STRINGPREP_PROCESSOR = "simple";
 
+	private static final Set<String> PROFILE_KEYS = new HashSet<>(
+			Arrays.asList("nodeprep", "nameprep", "resourceprep", "default"));
+
+	private static final ConcurrentHashMap<String, Supplier<XMPPStringPrepIfc>> processors = new ConcurrentHashMap<>();
+
+	static {
+		processors.put("simple", XMPPStringPrepFactory::getSimpleXMPPStringPrep);
+		processors.put("libidn", XMPPStringPrepFactory::getLibIDNXMPPStringPrep);
+		processors.put("precis", XMPPStringPrepFactory::getPRECISXMPPStringPrep);
+		processors.put("empty", XMPPStringPrepFactory::getEmptyXMPPStringPrep);
+	}
+
 	private static boolean doWithJID(JID jid) {
 		return jid.toString() != null;
 	}
@@ -77,6 +101,18 @@ public abstract class XMPPStringPrepFactory {
 		return new XMPPStringPrepLibIDN();
 	}
 
+	/**
+	 * Factory method for creating and returning stringprep implementation used by the Tigase server. This factory
+	 * allows for pluggable stringprep library usage and replacing the library used by default. The stringprep processor
+	 * implements RFC 7622 PRECIS profiles for JID parts. Recommended for open, multi-lingual systems communicating with
+	 * modern clients.
+	 *
+	 * @return instance of XMPP Stringprep processor.
+	 */
+	public static XMPPStringPrepIfc getPRECISXMPPStringPrep() {
+		return new XMPPStringPrepPRECIS();
+	}
+
 	/**
 	 * Factory method for creating and returning stringprep implementation used by the Tigase server. This factory
 	 * allows for pluggable stringprep library usage and replacing the library used by default. The simple stringprep
@@ -90,19 +126,89 @@ public abstract class XMPPStringPrepFactory {
 	}
 
 	/**
+	 * Factory method for creating and returning stringprep implementation used by the Tigase server. This factory
+	 * wraps given stringprep processor with caches for results of its processing. Recommended for use with the LibIDN
+	 * processor in systems where the same JIDs are processed over and over again.
+	 *
+	 * @param stringprep processor which results should be cached.
+	 *
+	 * @return instance of XMPP Stringprep processor.
+	 */
+	public static XMPPStringPrepIfc getCachedXMPPStringPrep(XMPPStringPrepIfc stringprep) {
+		return new XMPPStringPrepCached(stringprep);
+	}
+
+	/**
+	 * Factory method for creating and returning stringprep implementation used by the Tigase server. This factory
+	 * wraps given stringprep processor with counters and latency histograms of its processing.
+	 *
+	 * @param stringprep processor which should be metered.
+	 *
+	 * @return instance of XMPP Stringprep processor.
+	 */
+	public static XMPPStringPrepIfc getMeteredXMPPStringPrep(XMPPStringPrepIfc stringprep) {
+		return new XMPPStringPrepMetered(stringprep);
+	}
+
+	/**
+	 * Registers stringprep processor under the given name, so it may be selected by this name in the same way as the
+	 * built-in processors. Registering a processor under name of an existing one replaces it.
+	 *
+	 * @param name is a name of the processor.
+	 * @param supplier creates new instances of the processor.
+	 */
+	public static void registerXMPPStringPrep(String name, Supplier<XMPPStringPrepIfc> supplier) {
+		if (name.startsWith(CACHED_PROCESSOR_PREFIX) || name.startsWith(METERED_PROCESSOR_PREFIX) ||
+				name.indexOf('=') >= 0 || name.indexOf(',') >= 0) {
+			throw new IllegalArgumentException("Incorrect stringprep processor name: " + name);
+		}
+		processors.put(name, supplier);
+	}
+
+	/**
+	 * Returns names of registered stringprep processors.
+	 *
+	 * @return a <code>Set</code> of processor names.
+	 */
+	public static Set<String> getRegisteredXMPPStringPrepNames() {
+		return Collections.unmodifiableSet(processors.keySet());
+	}
+
+	/**
+	 * Returns stringprep processor for the given name. Name may be one of the registered processor names (see {@link
+	 * #STRINGPREP_PROCESSORS} and {@link #registerXMPPStringPrep(String, Supplier)}), any name with {@link
+	 * #CACHED_PROCESSOR_PREFIX} or {@link #METERED_PROCESSOR_PREFIX} prefix or a class name of the processor
+	 * implementation.
+	 * <br>
+	 * Instead of a single name a profile may be given which selects a processor for each JID part separately, i.e.
+	 * <code>nodeprep=cached-libidn,nameprep=simple,resourceprep=libidn</code>. Parts which are not listed in the
+	 * profile are processed by the processor given as <code>default</code>, for example
+	 * <code>nameprep=simple,default=libidn</code>.
 	 *
+	 * @param stringprepProcessor is a <code>String</code> value with stringprep processor name or class name
+	 * implementing stringprep processing interface.
+	 *
+	 * @return instance of XMPP Stringprep processor.
 	 */
 	public static XMPPStringPrepIfc getXMPPStringPrep(String stringprepProcessor) {
-		if ("simple".equals(stringprepProcessor)) {
-			return getSimpleXMPPStringPrep();
+		if (stringprepProcessor != null && stringprepProcessor.indexOf('=') >= 0) {
+			return getProfileXMPPStringPrep(stringprepProcessor);
 		}
 
-		if ("libidn".equals(stringprepProcessor)) {
-			return getLibIDNXMPPStringPrep();
+		if (stringprepProcessor != null && stringprepProcessor.startsWith(METERED_PROCESSOR_PREFIX)) {
+			return getMeteredXMPPStringPrep(
+					getXMPPStringPrep(stringprepProcessor.substring(METERED_PROCESSOR_PREFIX.length())));
 		}
 
-		if ("empty".equals(stringprepProcessor)) {
-			return getEmptyXMPPStringPrep();
+		if (stringprepProcessor != null && stringprepProcessor.startsWith(CACHED_PROCESSOR_PREFIX)) {
+			return getCachedXMPPStringPrep(
+					getXMPPStringPrep(stringprepProcessor.substring(CACHED_PROCESSOR_PREFIX.length())));
+		}
+
+		Supplier<XMPPStringPrepIfc> supplier = (stringprepProcessor == null) ? null : processors.get(
+				stringprepProcessor);
+		if (supplier != null) {
+			return supplier.get();
 		}
 
 		try {
@@ -112,6 +218,36 @@ public abstract class XMPPStringPrepFactory {
 		}
 	}
 
+	private static XMPPStringPrepIfc getProfileXMPPStringPrep(String profile) {
+		Map<String, String> names = new HashMap<>();
+		for (String item : profile.split(",")) {
+			int idx = item.indexOf('=');
+			String key = (idx < 0) ? "" : item.substring(0, idx).trim();
+			if (!PROFILE_KEYS.contains(key)) {
+				throw new IllegalArgumentException("Incorrect stringprep profile entry: " + item + " in " + profile);
+			}
+			names.put(key, item.substring(idx + 1).trim());
+		}
+
+		// the same processor name used for more parts shares one instance
+		Map<String, XMPPStringPrepIfc> instances = new HashMap<>();
+		XMPPStringPrepIfc[] result = new XMPPStringPrepIfc[3];
+		String[] parts = {"nodeprep", "nameprep", "resourceprep"};
+		for (int i = 0; i < parts.length; i++) {
+			String name = names.getOrDefault(parts[i], names.get("default"));
+			if (name == null) {
+				throw new IllegalArgumentException("Missing " + parts[i] + " processor in stringprep profile: " + profile);
+			}
+			result[i] = instances.computeIfAbsent(name, XMPPStringPrepFactory::getXMPPStringPrep);
+		}
+		return new XMPPStringPrepProfile(result[0], result[1], result[2]);
+	}
+
+	/**
+	 * Simple wall-clock comparison of stringprep processors. For reliable results with warmup and per operation
+	 * statistics use JMH benchmarks from <code>src/jmh/java</code> run with <code>mvn -Pjmh test-compile
+	 * exec:exec</code>.
+	 */
 	public static void main(String[] args) throws Exception {
 		long testTime = 30;    // 30 seconds by default
 
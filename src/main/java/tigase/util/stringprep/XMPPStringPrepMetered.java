@@ -0,0 +1,110 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.stringprep;
+
+/**
+ * Metering decorator for a stringprep processor. Calls, errors and latencies of nameprep, nodeprep and resourceprep
+ * processing are recorded in separate {@link XMPPStringPrepMetrics} instances, which may be read at any time to find
+ * out how much time is spent on stringprep processing.
+ * <br>
+ * The processor may be selected by adding the <code>metered-</code> prefix to the name of any other stringprep
+ * processor, i.e. <code>metered-libidn</code> or <code>metered-cached-libidn</code>.
+ */
+public class XMPPStringPrepMetered
+		implements XMPPStringPrepIfc {
+
+	private final XMPPStringPrepMetrics nameprepMetrics = new XMPPStringPrepMetrics("nameprep");
+	private final XMPPStringPrepMetrics nodeprepMetrics = new XMPPStringPrepMetrics("nodeprep");
+	private final XMPPStringPrepMetrics resourceprepMetrics = new XMPPStringPrepMetrics("resourceprep");
+	private final XMPPStringPrepIfc stringprep;
+
+	public XMPPStringPrepMetered(XMPPStringPrepIfc stringprep) {
+		this.stringprep = stringprep;
+	}
+
+	@Override
+	public String nameprep(String domain) throws TigaseStringprepException {
+		long start = System.nanoTime();
+		boolean error = true;
+		try {
+			String result = stringprep.nameprep(domain);
+			error = false;
+			return result;
+		} finally {
+			nameprepMetrics.record(System.nanoTime() - start, error);
+		}
+	}
+
+	@Override
+	public String nodeprep(String localpart) throws TigaseStringprepException {
+		long start = System.nanoTime();
+		boolean error = true;
+		try {
+			String result = stringprep.nodeprep(localpart);
+			error = false;
+			return result;
+		} finally {
+			nodeprepMetrics.record(System.nanoTime() - start, error);
+		}
+	}
+
+	@Override
+	public String resourceprep(String resource) throws TigaseStringprepException {
+		long start = System.nanoTime();
+		boolean error = true;
+		try {
+			String result = stringprep.resourceprep(resource);
+			error = false;
+			return result;
+		} finally {
+			resourceprepMetrics.record(System.nanoTime() - start, error);
+		}
+	}
+
+	public XMPPStringPrepMetrics getNameprepMetrics() {
+		return nameprepMetrics;
+	}
+
+	public XMPPStringPrepMetrics getNodeprepMetrics() {
+		return nodeprepMetrics;
+	}
+
+	public XMPPStringPrepMetrics getResourceprepMetrics() {
+		return resourceprepMetrics;
+	}
+
+	/**
+	 * Returns decorated stringprep processor.
+	 *
+	 * @return instance of the decorated XMPP Stringprep processor.
+	 */
+	public XMPPStringPrepIfc getStringprep() {
+		return stringprep;
+	}
+
+	public void resetMetrics() {
+		nameprepMetrics.reset();
+		nodeprepMetrics.reset();
+		resourceprepMetrics.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "XMPPStringPrepMetered{" + nodeprepMetrics + ", " + nameprepMetrics + ", " + resourceprepMetrics + "}";
+	}
+}
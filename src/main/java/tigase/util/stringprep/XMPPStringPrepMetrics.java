@@ -0,0 +1,154 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.stringprep;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histogram of a single stringprep operation. Latencies are recorded in power of two nanosecond
+ * buckets: the bucket <code>i</code> counts calls which took less than <code>2^i</code> and at least
+ * <code>2^(i-1)</code> nanoseconds. All counters are updated without locking and may be read at any time.
+ */
+public final class XMPPStringPrepMetrics {
+
+	public static final int BUCKETS = 40;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final String name;
+	private final LongAdder totalNanos = new LongAdder();
+
+	/**
+	 * Returns upper bound of latencies counted in the given histogram bucket.
+	 *
+	 * @param bucket is an index of the bucket.
+	 *
+	 * @return upper bound (exclusive) in nanoseconds.
+	 */
+	public static long getBucketUpperBound(int bucket) {
+		return 1L << bucket;
+	}
+
+	public XMPPStringPrepMetrics(String name) {
+		this.name = name;
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Returns average latency of recorded calls.
+	 *
+	 * @return average latency in nanoseconds or <code>0</code> if there were no calls.
+	 */
+	public long getAverageNanos() {
+		long count = calls.sum();
+		return (count == 0) ? 0 : totalNanos.sum() / count;
+	}
+
+	public long getCalls() {
+		return calls.sum();
+	}
+
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	/**
+	 * Returns a snapshot of the latency histogram.
+	 *
+	 * @return array of {@link #BUCKETS} counters, see {@link #getBucketUpperBound(int)} for bucket bounds.
+	 */
+	public long[] getHistogram() {
+		long[] result = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			result[i] = buckets[i].sum();
+		}
+		return result;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns approximate latency percentile calculated from the histogram.
+	 *
+	 * @param percentile is a percentile between <code>0</code> and <code>100</code>.
+	 *
+	 * @return upper bound in nanoseconds of the histogram bucket containing the percentile or <code>0</code> if there
+	 * were no calls.
+	 */
+	public long getPercentileNanos(double percentile) {
+		long[] histogram = getHistogram();
+		long count = 0;
+		for (long value : histogram) {
+			count += value;
+		}
+		if (count == 0) {
+			return 0;
+		}
+		long threshold = (long) Math.ceil(count * percentile / 100);
+		long sum = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			sum += histogram[i];
+			if (sum >= threshold && sum > 0) {
+				return getBucketUpperBound(i);
+			}
+		}
+		return getBucketUpperBound(BUCKETS - 1);
+	}
+
+	/**
+	 * Returns total time spent in the operation.
+	 *
+	 * @param unit is a unit of the returned value.
+	 *
+	 * @return total time of all recorded calls.
+	 */
+	public long getTotalTime(TimeUnit unit) {
+		return unit.convert(totalNanos.sum(), TimeUnit.NANOSECONDS);
+	}
+
+	public void record(long nanos, boolean error) {
+		calls.increment();
+		if (error) {
+			errors.increment();
+		}
+		totalNanos.add(nanos);
+		int bucket = (nanos <= 0) ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+		buckets[bucket].increment();
+	}
+
+	public void reset() {
+		calls.reset();
+		errors.reset();
+		totalNanos.reset();
+		for (LongAdder bucket : buckets) {
+			bucket.reset();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return name + "{calls=" + getCalls() + ", errors=" + getErrors() + ", avg=" + getAverageNanos() + "ns, p99=" +
+				getPercentileNanos(99) + "ns}";
+	}
+}
@@ -0,0 +1,405 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.stringprep;
+
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Stringprep processor implementing RFC 7622 preparation and enforcement of JID parts with PRECIS profiles:
+ * <ul>
+ * <li>localpart - UsernameCaseMapped profile (RFC 8265) of the IdentifierClass, additionally without characters
+ * <code>"&amp;'/:&lt;&gt;@</code>,</li>
+ * <li>domainpart - lower cased and NFC normalized IDNA2008 labels or IP literal,</li>
+ * <li>resourcepart - OpaqueString profile (RFC 8265) of the FreeformClass.</li>
+ * </ul>
+ * Code point validity is checked against precomputed {@link PRECISProperties} table and printable ASCII input is
+ * handled without normalization. If the input is already in its enforced form the same <code>String</code> instance is
+ * returned.
+ * <br>
+ * Please note, PRECIS is based on the Unicode version of the running JVM instead of Unicode 3.2 used by RFC 3454
+ * stringprep, and it does not apply compatibility normalization. Characters like <code>ß</code>, fullwidth letters in
+ * resource parts or compatibility characters like <code>²</code> are handled differently than by the
+ * <code>libidn</code> processor.
+ */
+class XMPPStringPrepPRECIS
+		implements XMPPStringPrepIfc {
+
+	private static final int MAX_PART_LENGTH = 1023;
+
+	private static final boolean[] LOCALPART_ASCII = new boolean[128];
+	private static final boolean[] DOMAIN_ASCII = new boolean[128];
+
+	static {
+		for (char c = 0x21; c < 0x7F; c++) {
+			LOCALPART_ASCII[c] = "\"&'/:<>@".indexOf(c) < 0;
+		}
+		for (char c = 'a'; c <= 'z'; c++) {
+			DOMAIN_ASCII[c] = true;
+			DOMAIN_ASCII[Character.toUpperCase(c)] = true;
+		}
+		for (char c = '0'; c <= '9'; c++) {
+			DOMAIN_ASCII[c] = true;
+		}
+		DOMAIN_ASCII['-'] = true;
+		DOMAIN_ASCII['.'] = true;
+	}
+
+	@Override
+	public String nameprep(String domain) throws TigaseStringprepException {
+		String result = isAscii(domain, DOMAIN_ASCII) ? lowerCaseAscii(domain) : prepareDomain(domain);
+		if (result.endsWith(".")) {
+			result = result.substring(0, result.length() - 1);
+		}
+		if (result.isEmpty()) {
+			throw new TigaseStringprepException("Empty domain");
+		}
+		if (result.charAt(0) == '[' && result.charAt(result.length() - 1) == ']') {
+			checkIPLiteral(result, domain);
+		} else {
+			checkDomain(result, domain);
+		}
+		checkLength(result, domain);
+		return result;
+	}
+
+	@Override
+	public String nodeprep(String localpart) throws TigaseStringprepException {
+		if (localpart.isEmpty()) {
+			throw new TigaseStringprepException("Empty localpart");
+		}
+		if (isAscii(localpart, LOCALPART_ASCII)) {
+			return checkLength(lowerCaseAscii(localpart), localpart);
+		}
+
+		// UsernameCaseMapped: width mapping, case mapping, normalization, directionality
+		String result = normalize(mapWidth(localpart).toLowerCase(Locale.ROOT));
+		for (int i = 0; i < result.length(); ) {
+			int cp = result.codePointAt(i);
+			if (cp < 0x80 ? !LOCALPART_ASCII[cp] : !isValid(cp, false, result, i)) {
+				throw new TigaseStringprepException(
+						"Illegal character " + codePoint(cp) + " in string, localpart = " + localpart);
+			}
+			i += Character.charCount(cp);
+		}
+		checkBidi(result, localpart);
+		return checkLength(result, localpart);
+	}
+
+	@Override
+	public String resourceprep(String resource) throws TigaseStringprepException {
+		if (resource.isEmpty()) {
+			throw new TigaseStringprepException("Empty resource");
+		}
+		boolean ascii = true;
+		for (int i = 0; i < resource.length() && ascii; i++) {
+			char c = resource.charAt(i);
+			ascii = c >= 0x20 && c < 0x7F;
+		}
+		if (ascii) {
+			return checkLength(resource, resource);
+		}
+
+		// OpaqueString: non-ASCII spaces mapped to space, normalization
+		StringBuilder sb = null;
+		for (int i = 0; i < resource.length(); i++) {
+			char c = resource.charAt(i);
+			if (c >= 0x80 && Character.getType(c) == Character.SPACE_SEPARATOR) {
+				if (sb == null) {
+					sb = new StringBuilder(resource);
+				}
+				sb.setCharAt(i, ' ');
+			}
+		}
+		String result = normalize(sb == null ? resource : sb.toString());
+		for (int i = 0; i < result.length(); ) {
+			int cp = result.codePointAt(i);
+			if (!isValid(cp, true, result, i)) {
+				throw new TigaseStringprepException(
+						"Illegal character " + codePoint(cp) + " in string, resource = " + resource);
+			}
+			i += Character.charCount(cp);
+		}
+		return checkLength(result, resource);
+	}
+
+	private static void checkBidi(String label, String input) throws TigaseStringprepException {
+		boolean rtl = false;
+		for (int i = 0; i < label.length() && !rtl; ) {
+			int cp = label.codePointAt(i);
+			byte dir = Character.getDirectionality(cp);
+			rtl = dir == Character.DIRECTIONALITY_RIGHT_TO_LEFT || dir == Character.DIRECTIONALITY_RIGHT_TO_LEFT_ARABIC ||
+					dir == Character.DIRECTIONALITY_ARABIC_NUMBER;
+			i += Character.charCount(cp);
+		}
+		if (rtl && !isBidiRuleSatisfied(label)) {
+			throw new TigaseStringprepException("Violation of the Bidi Rule, input = " + input);
+		}
+	}
+
+	private static void checkDomain(String domain, String input) throws TigaseStringprepException {
+		int labelStart = 0;
+		boolean rtl = false;
+		for (int i = 0; i <= domain.length(); ) {
+			if (i == domain.length() || domain.charAt(i) == '.') {
+				if (i == labelStart) {
+					throw new TigaseStringprepException("Empty label in domain = " + input);
+				}
+				labelStart = i + 1;
+				i++;
+				continue;
+			}
+			int cp = domain.codePointAt(i);
+			if (cp < 0x80 ? !DOMAIN_ASCII[cp] : !isValidDomainCodePoint(cp, domain, i)) {
+				throw new TigaseStringprepException(
+						"Illegal character " + codePoint(cp) + " in string, domain = " + input);
+			}
+			byte dir = Character.getDirectionality(cp);
+			rtl |= dir == Character.DIRECTIONALITY_RIGHT_TO_LEFT ||
+					dir == Character.DIRECTIONALITY_RIGHT_TO_LEFT_ARABIC || dir == Character.DIRECTIONALITY_ARABIC_NUMBER;
+			i += Character.charCount(cp);
+		}
+		if (rtl) {
+			// RFC 5893: if any label is RTL, the Bidi Rule applies to all labels
+			for (String label : domain.split("\\.")) {
+				if (!isBidiRuleSatisfied(label)) {
+					throw new TigaseStringprepException("Violation of the Bidi Rule, domain = " + input);
+				}
+			}
+		}
+	}
+
+	private static void checkIPLiteral(String domain, String input) throws TigaseStringprepException {
+		for (int i = 1; i < domain.length() - 1; i++) {
+			char c = domain.charAt(i);
+			if (Character.digit(c, 16) < 0 && c != ':' && c != '.') {
+				throw new TigaseStringprepException("Illegal character in IP literal, domain = " + input);
+			}
+		}
+	}
+
+	private static String checkLength(String result, String input) throws TigaseStringprepException {
+		int length = result.length();
+		if (length > MAX_PART_LENGTH / 3 && result.getBytes(StandardCharsets.UTF_8).length > MAX_PART_LENGTH) {
+			throw new TigaseStringprepException("JID part longer than " + MAX_PART_LENGTH + " bytes: " + input);
+		}
+		return result;
+	}
+
+	private static String codePoint(int cp) {
+		return String.format("U+%04X", cp);
+	}
+
+	private static boolean isAscii(String str, boolean[] allowed) {
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			if (c >= 0x80 || !allowed[c]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * RFC 5893 section 2.
+	 */
+	private static boolean isBidiRuleSatisfied(String label) {
+		if (label.isEmpty()) {
+			return true;
+		}
+		byte first = Character.getDirectionality(label.codePointAt(0));
+		boolean rtl;
+		if (first == Character.DIRECTIONALITY_RIGHT_TO_LEFT || first == Character.DIRECTIONALITY_RIGHT_TO_LEFT_ARABIC) {
+			rtl = true;
+		} else if (first == Character.DIRECTIONALITY_LEFT_TO_RIGHT) {
+			rtl = false;
+		} else {
+			return false;
+		}
+
+		boolean en = false;
+		boolean an = false;
+		byte last = first;
+		for (int i = 0; i < label.length(); ) {
+			int cp = label.codePointAt(i);
+			byte dir = Character.getDirectionality(cp);
+			switch (dir) {
+				case Character.DIRECTIONALITY_LEFT_TO_RIGHT:
+					if (rtl) {
+						return false;
+					}
+					break;
+				case Character.DIRECTIONALITY_RIGHT_TO_LEFT:
+				case Character.DIRECTIONALITY_RIGHT_TO_LEFT_ARABIC:
+					if (!rtl) {
+						return false;
+					}
+					break;
+				case Character.DIRECTIONALITY_ARABIC_NUMBER:
+					if (!rtl) {
+						return false;
+					}
+					an = true;
+					break;
+				case Character.DIRECTIONALITY_EUROPEAN_NUMBER:
+					en = true;
+					break;
+				case Character.DIRECTIONALITY_EUROPEAN_NUMBER_SEPARATOR:
+				case Character.DIRECTIONALITY_COMMON_NUMBER_SEPARATOR:
+				case Character.DIRECTIONALITY_EUROPEAN_NUMBER_TERMINATOR:
+				case Character.DIRECTIONALITY_OTHER_NEUTRALS:
+				case Character.DIRECTIONALITY_BOUNDARY_NEUTRAL:
+				case Character.DIRECTIONALITY_NONSPACING_MARK:
+					break;
+				default:
+					return false;
+			}
+			if (dir != Character.DIRECTIONALITY_NONSPACING_MARK) {
+				last = dir;
+			}
+			i += Character.charCount(cp);
+		}
+
+		if (rtl) {
+			return !(en && an) && (last == Character.DIRECTIONALITY_RIGHT_TO_LEFT ||
+					last == Character.DIRECTIONALITY_RIGHT_TO_LEFT_ARABIC ||
+					last == Character.DIRECTIONALITY_EUROPEAN_NUMBER || last == Character.DIRECTIONALITY_ARABIC_NUMBER);
+		}
+		return last == Character.DIRECTIONALITY_LEFT_TO_RIGHT || last == Character.DIRECTIONALITY_EUROPEAN_NUMBER;
+	}
+
+	/**
+	 * RFC 5892 appendix A.
+	 */
+	private static boolean isContextValid(int cp, String str, int pos) {
+		switch (cp) {
+			case 0x200C:
+			case 0x200D:
+				// only the Virama rule, joining types are not available in the JDK character data
+				return pos > 0 && PRECISProperties.isVirama(str.codePointBefore(pos));
+			case 0x00B7:
+				return pos > 0 && pos + 1 < str.length() && str.charAt(pos - 1) == 'l' && str.charAt(pos + 1) == 'l';
+			case 0x0375:
+				return pos + 1 < str.length() &&
+						Character.UnicodeScript.of(str.codePointAt(pos + 1)) == Character.UnicodeScript.GREEK;
+			case 0x05F3:
+			case 0x05F4:
+				return pos > 0 &&
+						Character.UnicodeScript.of(str.codePointBefore(pos)) == Character.UnicodeScript.HEBREW;
+			case 0x30FB:
+				for (int i = 0; i < str.length(); ) {
+					int c = str.codePointAt(i);
+					Character.UnicodeScript script = Character.UnicodeScript.of(c);
+					if (c != 0x30FB && (script == Character.UnicodeScript.HIRAGANA ||
+							script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HAN)) {
+						return true;
+					}
+					i += Character.charCount(c);
+				}
+				return false;
+			default:
+				if (cp >= 0x0660 && cp <= 0x0669) {
+					return !containsRange(str, 0x06F0, 0x06F9);
+				}
+				if (cp >= 0x06F0 && cp <= 0x06F9) {
+					return !containsRange(str, 0x0660, 0x0669);
+				}
+				return false;
+		}
+	}
+
+	private static boolean containsRange(String str, int from, int to) {
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			if (c >= from && c <= to) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isValid(int cp, boolean freeform, String str, int pos) {
+		switch (PRECISProperties.get(cp)) {
+			case PRECISProperties.PVALID:
+				return true;
+			case PRECISProperties.FREE_PVAL:
+				return freeform;
+			case PRECISProperties.CONTEXTJ:
+			case PRECISProperties.CONTEXTO:
+				return isContextValid(cp, str, pos);
+			default:
+				return false;
+		}
+	}
+
+	private static boolean isValidDomainCodePoint(int cp, String domain, int pos) {
+		// IDNA2008 does not allow symbols, punctuation and compatibility characters which are ID_DIS in PRECIS
+		return isValid(cp, false, domain, pos);
+	}
+
+	private static String lowerCaseAscii(String str) {
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				char[] chars = str.toCharArray();
+				for (int j = i; j < chars.length; j++) {
+					if (chars[j] >= 'A' && chars[j] <= 'Z') {
+						chars[j] += 'a' - 'A';
+					}
+				}
+				return new String(chars);
+			}
+		}
+		return str;
+	}
+
+	private static String mapWidth(String str) {
+		StringBuilder sb = null;
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			int mapped = PRECISProperties.mapWidth(c);
+			if (mapped != c) {
+				if (sb == null) {
+					sb = new StringBuilder(str);
+				}
+				sb.setCharAt(i, (char) mapped);
+			}
+		}
+		return (sb == null) ? str : sb.toString();
+	}
+
+	private static String normalize(String str) {
+		return Normalizer.isNormalized(str, Normalizer.Form.NFC) ? str : Normalizer.normalize(str, Normalizer.Form.NFC);
+	}
+
+	private static String prepareDomain(String domain) {
+		StringBuilder sb = null;
+		for (int i = 0; i < domain.length(); i++) {
+			char c = domain.charAt(i);
+			int mapped = (c == 0x3002 || c == 0xFF0E || c == 0xFF61) ? '.' : PRECISProperties.mapWidth(c);
+			if (mapped != c) {
+				if (sb == null) {
+					sb = new StringBuilder(domain);
+				}
+				sb.setCharAt(i, (char) mapped);
+			}
+		}
+		return normalize((sb == null ? domain : sb.toString()).toLowerCase(Locale.ROOT));
+	}
+}
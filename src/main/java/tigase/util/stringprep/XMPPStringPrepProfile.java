@@ -0,0 +1,68 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.stringprep;
+
+/**
+ * Stringprep processor which delegates processing of each JID part to a different processor, so for example domains
+ * may be processed by a fast processor while localparts are processed with full stringprep.
+ * <br>
+ * The processor may be selected with a profile specification in place of the processor name, i.e.
+ * <code>nodeprep=libidn,nameprep=simple,resourceprep=empty</code>. See
+ * {@link XMPPStringPrepFactory#getXMPPStringPrep(String)} for details.
+ */
+public class XMPPStringPrepProfile
+		implements XMPPStringPrepIfc {
+
+	private final XMPPStringPrepIfc nameprep;
+	private final XMPPStringPrepIfc nodeprep;
+	private final XMPPStringPrepIfc resourceprep;
+
+	public XMPPStringPrepProfile(XMPPStringPrepIfc nodeprep, XMPPStringPrepIfc nameprep,
+								 XMPPStringPrepIfc resourceprep) {
+		this.nodeprep = nodeprep;
+		this.nameprep = nameprep;
+		this.resourceprep = resourceprep;
+	}
+
+	@Override
+	public String nameprep(String domain) throws TigaseStringprepException {
+		return nameprep.nameprep(domain);
+	}
+
+	@Override
+	public String nodeprep(String localpart) throws TigaseStringprepException {
+		return nodeprep.nodeprep(localpart);
+	}
+
+	@Override
+	public String resourceprep(String resource) throws TigaseStringprepException {
+		return resourceprep.resourceprep(resource);
+	}
+
+	public XMPPStringPrepIfc getNameprepProcessor() {
+		return nameprep;
+	}
+
+	public XMPPStringPrepIfc getNodeprepProcessor() {
+		return nodeprep;
+	}
+
+	public XMPPStringPrepIfc getResourceprepProcessor() {
+		return resourceprep;
+	}
+}
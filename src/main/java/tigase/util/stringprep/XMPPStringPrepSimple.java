@@ -17,10 +17,12 @@
  */
 package tigase.util.stringprep;
 
-import java.util.regex.Pattern;
-
 /**
  * Created: Feb 4, 2010 9:31:23 AM
+ * <br>
+ * Single pass, allocation free implementation: characters are validated against a lookup table for the ASCII range
+ * (non ASCII characters are always allowed) and the input instance is returned unchanged if it does not contain
+ * surrounding whitespace or, in case of the domain, characters which require lower-casing.
  *
  * @author <a href="mailto:artur.hefczyc@tigase.org">Artur Hefczyc</a>
  * @version $Rev$
@@ -28,37 +30,85 @@ import java.util.regex.Pattern;
 public class XMPPStringPrepSimple
 		implements XMPPStringPrepIfc {
 
-	private static final Pattern p = Pattern.compile("[ @&()\\[\\]\t\n\r\f\\a\\e]");
+	private static final boolean[] FORBIDDEN = new boolean[0x80];
+
+	static {
+		for (char c : " @&()[]\t\n\r\f\u0007\u001B".toCharArray()) {
+			FORBIDDEN[c] = true;
+		}
+	}
 
 	@Override
 	public String nameprep(String domain) throws TigaseStringprepException {
-		String result = domain.trim().toLowerCase();
+		int start = trimStart(domain);
+		int end = trimEnd(domain, start);
+		boolean lowerCase = true;
 
-		if (!checkString(result)) {
-			throw new TigaseStringprepException("Illegal characters in string, domain = " + domain);
+		for (int i = start; i < end; i++) {
+			char c = domain.charAt(i);
+			if (c < 0x80) {
+				if (FORBIDDEN[c]) {
+					throw new TigaseStringprepException("Illegal characters in string, domain = " + domain);
+				}
+				if (c >= 'A' && c <= 'Z') {
+					lowerCase = false;
+				}
+			} else if (lowerCase) {
+				int cp = domain.codePointAt(i);
+				if (Character.toLowerCase(cp) != cp) {
+					lowerCase = false;
+				}
+				if (Character.isSupplementaryCodePoint(cp)) {
+					i++;
+				}
+			}
 		}
 
-		return result;
+		String result = substring(domain, start, end);
+
+		return lowerCase ? result : result.toLowerCase();
 	}
 
 	@Override
 	public String nodeprep(String localpart) throws TigaseStringprepException {
-		String result = localpart.trim();
+		int start = trimStart(localpart);
+		int end = trimEnd(localpart, start);
 
-		if (!checkString(result)) {
-			throw new TigaseStringprepException("Illegal characters in string, localpart = " + localpart);
+		for (int i = start; i < end; i++) {
+			char c = localpart.charAt(i);
+			if (c < 0x80 && FORBIDDEN[c]) {
+				throw new TigaseStringprepException("Illegal characters in string, localpart = " + localpart);
+			}
 		}
 
-		return result;
+		return substring(localpart, start, end);
 	}
 
 	@Override
 	public String resourceprep(String resource) throws TigaseStringprepException {
-		return resource.trim();
+		int start = trimStart(resource);
+
+		return substring(resource, start, trimEnd(resource, start));
 	}
 
-	private boolean checkString(String input) {
-		return !p.matcher(input).find();
+	private static String substring(String input, int start, int end) {
+		return (start == 0 && end == input.length()) ? input : input.substring(start, end);
 	}
-}
 
+	private static int trimStart(String input) {
+		int start = 0;
+		int length = input.length();
+		while (start < length && input.charAt(start) <= ' ') {
+			start++;
+		}
+		return start;
+	}
+
+	private static int trimEnd(String input, int start) {
+		int end = input.length();
+		while (end > start && input.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		return end;
+	}
+}
@@ -17,10 +17,17 @@
  */
 package tigase.xmpp.jid;
 
+import tigase.util.cache.ConcurrentClockCache;
+import tigase.util.cache.ConcurrentStatsCounter;
 import tigase.util.stringprep.TigaseStringprepException;
 import tigase.util.stringprep.XMPPStringPrepFactory;
 import tigase.util.stringprep.XMPPStringPrepIfc;
 
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * Instance of the <code>BareJID</code> class holds a single, bare JID. When the object is created the parameters are
  * checked and processed through the stringprep. An exception is throw in case of stringprep processing error. The
@@ -35,6 +42,16 @@ import tigase.util.stringprep.XMPPStringPrepIfc;
  * The class also offers a few utility methods for parsing and constructing JID strings. Please see JavaDoc
  * documentation for more details.
  * <br>
+ * Optionally, instances created from <code>String</code> JIDs may be kept in a size-bounded interning pool, so parsing
+ * the same JID again returns the same canonical instance without repeating the stringprep processing. The pool is
+ * disabled by default and may be enabled with the <code>tigase.jid.interning-pool-size</code> system property or
+ * {@link #useInterningPool(int)} method.
+ * <br>
+ * Each instance also holds a small cache of full <code>JID</code> instances created for it, keyed by the resource
+ * part (see {@link JID#useResourceCache(int)}). This cache is the only mutable state of the class. It is a
+ * thread-safe side cache, which does not affect the JID value, so it is not a part of <code>equals()</code>,
+ * <code>hashCode()</code> or <code>compareTo()</code>, and the instances may still be treated as immutable values.
+ * <br>
  * Created: Dec 28, 2009 10:47:51 PM
  *
  * @author <a href="mailto:artur.hefczyc@tigase.org">Artur Hefczyc</a>
@@ -43,12 +60,19 @@ import tigase.util.stringprep.XMPPStringPrepIfc;
 public final class BareJID
 		implements Comparable<BareJID> {
 
-	static XMPPStringPrepIfc stringPrep = XMPPStringPrepFactory.getDefaultXMPPStringPrep();
+	public static final String INTERNING_POOL_SIZE_PROP_KEY = "tigase.jid.interning-pool-size";
 
-	private final String domain;
+	private static final int NOT_SIMPLE_CASE = Integer.MIN_VALUE;
+
+	static volatile XMPPStringPrepIfc stringPrep = XMPPStringPrepFactory.getDefaultXMPPStringPrep();
+	static volatile ConcurrentClockCache<String, BareJID> internPool = createInterningPool(
+			Integer.getInteger(INTERNING_POOL_SIZE_PROP_KEY, 0));
+
+	private final DomainRegistry.Domain domain;
 	private final int hashcode;
 	private final String localpart;
-	private final String to_string;
+	private String to_string;
+	volatile JIDResourceCache resourceCache;
 
 	/**
 	 * The method creates an instance of the <code>BareJID</code> class. The bare JID is parsed and constructed from the
@@ -69,9 +93,21 @@ public final class BareJID
 	 * instance.
 	 */
 	public static BareJID bareJIDInstance(String jid) throws TigaseStringprepException {
+		ConcurrentClockCache<String, BareJID> pool = internPool;
+		if (pool != null) {
+			BareJID result = pool.get(jid);
+			if (result != null) {
+				return result;
+			}
+		}
+
+		// processor is read after the pool, as useStringprepProcessor() replaces pools after changing the processor
+		XMPPStringPrepIfc processor = stringPrep;
 		String[] parsedJid = parseJID(jid);
+		BareJID result = createBareJID(processor, parsedJid[0], parsedJid[1]);
 
-		return bareJIDInstance(parsedJid[0], parsedJid[1]);
+		// instance created by the processor which was replaced in the meantime is not added to the pool
+		return (pool == null || stringPrep != processor) ? result : pool.putIfAbsent(jid, result);
 	}
 
 	/**
@@ -94,11 +130,17 @@ public final class BareJID
 	 * instance.
 	 */
 	public static BareJID bareJIDInstance(String p_localpart, String p_domain) throws TigaseStringprepException {
-		String f_localpart = (p_localpart == null) ? null : stringPrep.nodeprep(p_localpart);
+		// processor may be replaced concurrently, so the same one is used for both parts
+		return createBareJID(stringPrep, p_localpart, p_domain);
+	}
+
+	static BareJID createBareJID(XMPPStringPrepIfc processor, String p_localpart, String p_domain)
+			throws TigaseStringprepException {
+		String f_localpart = (p_localpart == null) ? null : processor.nodeprep(p_localpart);
 		if (p_domain == null || p_domain.trim().isEmpty()) {
 			throw new TigaseStringprepException("Domain part is required");
 		}
-		String f_domain = stringPrep.nameprep(p_domain);
+		String f_domain = processor.nameprep(p_domain);
 
 		return new BareJID(f_localpart, f_domain);
 	}
@@ -159,6 +201,36 @@ public final class BareJID
 		return toString(parsed[0], parsed[1]);
 	}
 
+	/**
+	 * The method parses and processes through the stringprep all JIDs from the given collection. Identical strings are
+	 * processed only once. Stringprep processing errors do not stop parsing, they are reported for each failed item in
+	 * the returned result. The resource part, if provided in the JID strings, is thrown away.
+	 *
+	 * @param jids is a <code>Collection</code> of JID strings.
+	 *
+	 * @return a <code>JIDParseResult</code> with parsed <code>BareJID</code> instances and errors, index aligned with
+	 * the input collection.
+	 */
+	public static JIDParseResult<BareJID> parseAll(Collection<String> jids) {
+		return parseAll(jids, null);
+	}
+
+	/**
+	 * The method parses and processes through the stringprep all JIDs from the given collection. Identical strings are
+	 * processed only once. If the pool is not <code>null</code> and there are at least
+	 * {@link JIDParseResult#PARALLEL_THRESHOLD} distinct strings, the processing is split between threads of the pool.
+	 * Stringprep processing errors do not stop parsing, they are reported for each failed item in the returned result.
+	 *
+	 * @param jids is a <code>Collection</code> of JID strings.
+	 * @param pool is a <code>ForkJoinPool</code> used for parallel processing, may be <code>null</code>.
+	 *
+	 * @return a <code>JIDParseResult</code> with parsed <code>BareJID</code> instances and errors, index aligned with
+	 * the input collection.
+	 */
+	public static JIDParseResult<BareJID> parseAll(Collection<String> jids, ForkJoinPool pool) {
+		return JIDParseResult.parseAll(jids, pool, BareJID::bareJIDInstance);
+	}
+
 	/**
 	 * A utility method to parse and split the given JID string into separate parts. The result is returned as a three
 	 * elements' <code>String</code> array: <ol> <li>The first element (index 0) of the array is the JID's localpart
@@ -170,22 +242,26 @@ public final class BareJID
 	 * @param jid is a <code>String</code> representing user full JID.
 	 *
 	 * @return a three element <code>String</code> array with parsed JID parts. The array may contain null elements.
+	 *
+	 * @see ParsedJID for parsing without creating <code>String</code> instances.
 	 */
 	public static String[] parseJID(String jid) {
 		String[] result = new String[3];
 
 		// Cut off the resource part first
-		int idx = jid.indexOf('/');
+		int slash = jid.indexOf('/');
+		int end = (slash == -1) ? jid.length() : slash;
 
 		// Resource part:
-		result[2] = ((idx == -1) ? null : jid.substring(idx + 1));
-
-		String id = ((idx == -1) ? jid : jid.substring(0, idx));
+		result[2] = ((slash == -1) ? null : jid.substring(slash + 1));
 
-		// Parse the localpart and the domain name
-		idx = id.indexOf('@');
-		result[0] = ((idx == -1) ? null : id.substring(0, idx));
-		result[1] = ((idx == -1) ? id : id.substring(idx + 1));
+		// Parse the localpart and the domain name without copying the bare JID part
+		int at = jid.indexOf('@');
+		if (at >= end) {
+			at = -1;
+		}
+		result[0] = ((at == -1) ? null : jid.substring(0, at));
+		result[1] = jid.substring(at + 1, end);
 
 		return result;
 	}
@@ -244,14 +320,127 @@ public final class BareJID
 	 * implementing stringprep processing interface.
 	 */
 	public static void useStringprepProcessor(String stringprepProcessor) {
-		stringPrep = XMPPStringPrepFactory.getXMPPStringPrep(stringprepProcessor);
+		useStringprepProcessor(XMPPStringPrepFactory.getXMPPStringPrep(stringprepProcessor));
+	}
+
+	/**
+	 * Changes stringprep processor instance used for the JID checking. The method can be called at any time to change
+	 * used processor. All subsequent <code>JID</code> and <code>BareJID</code> instances are created using a new
+	 * processor. Interning pools are replaced with empty ones, so their statistics start from zero.
+	 *
+	 * @param stringprepProcessor is a stringprep processor instance.
+	 */
+	public static synchronized void useStringprepProcessor(XMPPStringPrepIfc stringprepProcessor) {
+		if (stringprepProcessor == null) {
+			throw new IllegalArgumentException("Stringprep processor can't be null");
+		}
+		stringPrep = stringprepProcessor;
+		replaceInterningPools();
+	}
+
+	/**
+	 * Returns stringprep processor currently used for the JID checking. If the processor was selected with the
+	 * <code>metered-</code> prefix, the returned instance may be used to read stringprep processing metrics.
+	 *
+	 * @return a stringprep processor instance.
+	 */
+	public static XMPPStringPrepIfc getStringprepProcessor() {
+		return stringPrep;
+	}
+
+	/**
+	 * Enables, resizes or disables interning pools used for <code>BareJID</code> and <code>JID</code> instances created
+	 * from <code>String</code> JIDs. Repeated parsing of the same JID string returns the same canonical instance from
+	 * the pool, skipping parsing and stringprep processing. Least recently used instances are evicted from the pool
+	 * when the limit is exceeded.
+	 *
+	 * @param maxSize maximum number of instances kept in each pool, <code>0</code> disables the pools.
+	 */
+	public static synchronized void useInterningPool(int maxSize) {
+		internPool = createInterningPool(maxSize);
+		JID.internPool = createInterningPool(maxSize);
+	}
+
+	/**
+	 * Returns interning pool of <code>BareJID</code> instances which may be used to read pool statistics: hits, misses
+	 * and evictions. The counters are always recorded, even if cache statistics are disabled with
+	 * <code>tigase.cache.stats</code> system property.
+	 *
+	 * @return interning pool or <code>null</code> if pool is disabled.
+	 */
+	public static ConcurrentClockCache<String, BareJID> getInterningPool() {
+		return internPool;
+	}
+
+	static <J> ConcurrentClockCache<String, J> createInterningPool(int maxSize) {
+		if (maxSize <= 0) {
+			return null;
+		}
+		ConcurrentClockCache<String, J> pool = new ConcurrentClockCache<>(maxSize);
+		// pool counters are part of the public API, so they are kept regardless of the tigase.cache.stats switch
+		pool.setStatsCounter(new ConcurrentStatsCounter());
+		return pool;
+	}
+
+	/**
+	 * Calculates the same value as <code>toString(localpart, domain).toLowerCase().hashCode()</code> without creating
+	 * any intermediate <code>String</code>. Falls back to the allocating version for locales and characters for which
+	 * lower casing is not a simple per character mapping.
+	 */
+	static int caseInsensitiveHashCode(String localpart, String domain) {
+		String language = Locale.getDefault().getLanguage();
+		if ("tr".equals(language) || "az".equals(language) || "lt".equals(language)) {
+			return toString(localpart, domain).toLowerCase().hashCode();
+		}
+
+		int h = 0;
+		if (localpart != null && !localpart.isEmpty()) {
+			h = lowerCaseHash(h, localpart);
+			if (h == NOT_SIMPLE_CASE) {
+				return toString(localpart, domain).toLowerCase().hashCode();
+			}
+			h = 31 * h + '@';
+		}
+		int result = lowerCaseHash(h, domain);
+		return (result == NOT_SIMPLE_CASE) ? toString(localpart, domain).toLowerCase().hashCode() : result;
+	}
+
+	private static int lowerCaseHash(int h, String str) {
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			if (c < 0x80) {
+				if (c >= 'A' && c <= 'Z') {
+					c += 'a' - 'A';
+				}
+			} else if (c == '\u0130' || c == '\u03A3' || Character.isSurrogate(c)) {
+				// context or length changing mappings
+				return NOT_SIMPLE_CASE;
+			} else {
+				c = Character.toLowerCase(c);
+			}
+			h = 31 * h + c;
+		}
+		// a genuine hash equal to the marker only causes the slower path to be used
+		return h;
+	}
+
+	private static void replaceInterningPools() {
+		// pools are replaced instead of cleared, so that a thread which created an instance with the old processor
+		// can add it only to the old pool
+		ConcurrentClockCache<String, BareJID> pool = internPool;
+		if (pool != null) {
+			internPool = createInterningPool(pool.limit());
+		}
+		ConcurrentClockCache<String, JID> jidPool = JID.internPool;
+		if (jidPool != null) {
+			JID.internPool = createInterningPool(jidPool.limit());
+		}
 	}
 
 	private BareJID(String localpart, String domain) {
 		this.localpart = localpart;
-		this.domain = domain.toLowerCase().intern();
-		this.to_string = toString(this.localpart, this.domain);
-		this.hashcode = to_string.toLowerCase().hashCode();
+		this.domain = DomainRegistry.getInstance().intern(domain.toLowerCase());
+		this.hashcode = caseInsensitiveHashCode(this.localpart, this.domain.getName());
 	}
 
 	/**
@@ -270,7 +459,10 @@ public final class BareJID
 	 */
 	@Override
 	public int compareTo(BareJID o) {
-		return to_string.compareToIgnoreCase(o.to_string);
+		if (this == o) {
+			return 0;
+		}
+		return toString().compareToIgnoreCase(o.toString());
 	}
 
 	/**
@@ -285,20 +477,28 @@ public final class BareJID
 	 */
 	@Override
 	public boolean equals(Object b) {
-		boolean result = false;
+		if (this == b) {
+			return true;
+		}
+		if (!(b instanceof BareJID)) {
+			return false;
+		}
 
-		if (b instanceof BareJID) {
+		BareJID jid = (BareJID) b;
 
-			// Intentionally comparing domains by reference instead of value
-			// domain is processed through the String.intern() method
-			// NOPMD
-			result = ((this.domain == ((BareJID) b).domain || this.domain.equalsIgnoreCase(((BareJID) b).domain))) &&
-					((this.localpart == null)
-					 ? this.localpart == ((BareJID) b).localpart
-					 : this.localpart.equalsIgnoreCase(((BareJID) b).localpart));
+		// Hash codes are calculated from case folded JIDs, so different hash codes allow rejecting
+		// the JID without comparing strings
+		if (hashcode != jid.hashcode) {
+			return false;
 		}
 
-		return result;
+		// Intentionally comparing domains by reference instead of value
+		// domain is a canonical instance obtained from the DomainRegistry
+		// NOPMD
+		return (this.domain == jid.domain || this.domain.getName().equalsIgnoreCase(jid.domain.getName())) &&
+				((this.localpart == null)
+				 ? jid.localpart == null
+				 : (this.localpart.equals(jid.localpart) || this.localpart.equalsIgnoreCase(jid.localpart)));
 	}
 
 	/**
@@ -308,6 +508,27 @@ public final class BareJID
 	 * @return a domain part of the <code>BareJID</code> instance.
 	 */
 	public String getDomain() {
+		return domain.getName();
+	}
+
+	/**
+	 * Method returns ID of the domain part of the <code>BareJID</code> assigned by the {@link DomainRegistry}. The ID
+	 * may be used as an index of per domain lookup tables, which should compare the generation of the ID as well, see
+	 * {@link DomainRegistry.Domain#getGeneration()}.
+	 *
+	 * @return an ID of the domain part.
+	 */
+	public int getDomainId() {
+		return domain.getId();
+	}
+
+	/**
+	 * Method returns canonical instance of the domain part of the <code>BareJID</code> obtained from the
+	 * {@link DomainRegistry}.
+	 *
+	 * @return a domain part of the <code>BareJID</code> instance.
+	 */
+	public DomainRegistry.Domain getCanonicalDomain() {
 		return domain;
 	}
 
@@ -332,13 +553,60 @@ public final class BareJID
 	}
 
 	/**
-	 * Method returns a <code>String</code> representation of the <code>BareJID</code> instance.
+	 * Method appends a <code>String</code> representation of the <code>BareJID</code> instance to the given
+	 * <code>StringBuilder</code> without creating an intermediate <code>String</code>.
+	 *
+	 * @param sb is a <code>StringBuilder</code> to which the JID is appended.
+	 *
+	 * @return the <code>StringBuilder</code> given as the parameter.
+	 */
+	public StringBuilder appendTo(StringBuilder sb) {
+		String str = to_string;
+		if (str != null) {
+			return sb.append(str);
+		}
+		if (localpart != null && !localpart.isEmpty()) {
+			sb.append(localpart).append('@');
+		}
+		return sb.append(domain.getName());
+	}
+
+	/**
+	 * Method appends a <code>String</code> representation of the <code>BareJID</code> instance to the given
+	 * <code>Appendable</code> without creating an intermediate <code>String</code>.
+	 *
+	 * @param out is an <code>Appendable</code> to which the JID is appended.
+	 *
+	 * @return the <code>Appendable</code> given as the parameter.
+	 *
+	 * @throws IOException if appending to the <code>Appendable</code> fails.
+	 */
+	public Appendable appendTo(Appendable out) throws IOException {
+		String str = to_string;
+		if (str != null) {
+			return out.append(str);
+		}
+		if (localpart != null && !localpart.isEmpty()) {
+			out.append(localpart).append('@');
+		}
+		return out.append(domain.getName());
+	}
+
+	/**
+	 * Method returns a <code>String</code> representation of the <code>BareJID</code> instance. The representation is
+	 * created on the first call and cached.
 	 *
 	 * @return a <code>String</code> representation of the <code>BareJID</code> instance.
 	 */
 	@Override
 	public String toString() {
-		return to_string;
+		// benign race, String is immutable, so at worst it is created more than once
+		String str = to_string;
+		if (str == null) {
+			str = toString(localpart, domain.getName());
+			to_string = str;
+		}
+		return str;
 	}
 }
 
@@ -0,0 +1,312 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.xmpp.jid;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Instance of the <code>CompactJID</code> class holds a bare or full JID in a memory efficient form. Localpart and
+ * resource part are stored in a single <code>byte[]</code> array encoded as ISO-8859-1 if possible and UTF-8
+ * otherwise, while the domain part is a canonical instance shared with other JIDs through the {@link DomainRegistry}.
+ * The <code>String</code> representation of the JID is not kept by the instance and is created only when requested.
+ * <br>
+ * The class is intended for large collections of JIDs, like rosters or session maps, which are kept in memory for a long
+ * time. Instances are created from already processed <code>BareJID</code> or <code>JID</code> instances, so no
+ * stringprep processing is performed, and may be converted back with {@link #toBareJID()} and {@link #toJID()}
+ * methods.
+ * <br>
+ * Instances created from a <code>BareJID</code> have the same hash code as the source instance and instances created
+ * from a <code>JID</code> have the same hash code as the source <code>JID</code>. Two <code>CompactJID</code> instances
+ * are equal if and only if the instances they were created from are equal. <code>CompactJID</code> is never equal to
+ * a <code>BareJID</code> or <code>JID</code> instance, use {@link #represents(BareJID)} and {@link #represents(JID)}
+ * methods for such comparisons.
+ *
+ * @version $Rev$
+ */
+public final class CompactJID {
+
+	private static final byte[] EMPTY = new byte[0];
+	private static final byte LATIN1 = 1;
+	private static final byte FULL = 1 << 1;
+
+	private final byte[] data;
+	private final DomainRegistry.Domain domain;
+	private final byte flags;
+	private final int hashcode;
+	private final int localLength;
+	private final int resourceLength;
+
+	/**
+	 * The method creates an instance of the <code>CompactJID</code> class representing the given bare JID.
+	 *
+	 * @param bareJid is a <code>BareJID</code> instance to convert.
+	 *
+	 * @return an instance of the <code>CompactJID</code> class which corresponds to the JID given as the parameter.
+	 */
+	public static CompactJID compactJIDInstance(BareJID bareJid) {
+		return create(bareJid.getLocalpart(), bareJid.getCanonicalDomain(), null, false, bareJid.hashCode());
+	}
+
+	/**
+	 * The method creates an instance of the <code>CompactJID</code> class representing the given full JID.
+	 *
+	 * @param jid is a <code>JID</code> instance to convert.
+	 *
+	 * @return an instance of the <code>CompactJID</code> class which corresponds to the JID given as the parameter.
+	 */
+	public static CompactJID compactJIDInstance(JID jid) {
+		return create(jid.getLocalpart(), jid.getBareJID().getCanonicalDomain(), jid.getResource(), true,
+					  jid.hashCode());
+	}
+
+	private static CompactJID create(String localpart, DomainRegistry.Domain domain, String resource, boolean full,
+									 int hashcode) {
+		boolean latin1 = isLatin1(localpart) && isLatin1(resource);
+		byte[] local = encode(localpart, latin1);
+		byte[] res = encode(resource, latin1);
+		byte[] data;
+		if (res == null || res.length == 0) {
+			data = (local == null) ? res : local;
+		} else if (local == null || local.length == 0) {
+			data = res;
+		} else {
+			data = Arrays.copyOf(local, local.length + res.length);
+			System.arraycopy(res, 0, data, local.length, res.length);
+		}
+		return new CompactJID(data == null ? EMPTY : data, domain,
+							  (byte) ((latin1 ? LATIN1 : 0) | (full ? FULL : 0)), hashcode,
+							  local == null ? -1 : local.length, res == null ? -1 : res.length);
+	}
+
+	private static boolean isLatin1(String str) {
+		if (str != null) {
+			for (int i = 0; i < str.length(); i++) {
+				if (str.charAt(i) > 0xFF) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static byte[] encode(String str, boolean latin1) {
+		if (str == null) {
+			return null;
+		}
+		if (latin1) {
+			return str.getBytes(StandardCharsets.ISO_8859_1);
+		}
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			if (Character.isHighSurrogate(c) && i + 1 < str.length() && Character.isLowSurrogate(str.charAt(i + 1))) {
+				i++;
+			} else if (Character.isSurrogate(c)) {
+				throw new IllegalArgumentException("JID part contains unpaired surrogate character: " + str);
+			}
+		}
+		return str.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private CompactJID(byte[] data, DomainRegistry.Domain domain, byte flags, int hashcode, int localLength,
+					   int resourceLength) {
+		this.data = data;
+		this.domain = domain;
+		this.flags = flags;
+		this.hashcode = hashcode;
+		this.localLength = localLength;
+		this.resourceLength = resourceLength;
+	}
+
+	/**
+	 * Method returns a <code>CompactJID</code> instance representing bare JID of this instance.
+	 *
+	 * @return a <code>CompactJID</code> instance without resource part, or this instance if it already represents a
+	 * bare JID.
+	 */
+	public CompactJID copyWithoutResource() {
+		if (!isFullJID()) {
+			return this;
+		}
+		String localpart = getLocalpart();
+		byte[] local = (localLength > 0) ? Arrays.copyOf(data, localLength) : EMPTY;
+		return new CompactJID(local, domain, (byte) (flags & LATIN1),
+							  BareJID.caseInsensitiveHashCode(localpart, getDomain()), localLength, -1);
+	}
+
+	/**
+	 * Method compares whether this <code>CompactJID</code> instance represents the same JID as the one given in
+	 * parameter. Instances representing bare JIDs are never equal to instances representing full JIDs, even if the
+	 * resource part of the full JID is <code>null</code>, following the behaviour of <code>BareJID</code> and
+	 * <code>JID</code> classes.
+	 *
+	 * @param b is a <code>CompactJID</code> object to which the instance is compared.
+	 *
+	 * @return a <code>boolean</code> value of <code>true</code> if both instances represent the same JID and
+	 * <code>false</code> otherwise.
+	 */
+	@Override
+	public boolean equals(Object b) {
+		if (this == b) {
+			return true;
+		}
+		if (!(b instanceof CompactJID)) {
+			return false;
+		}
+
+		CompactJID jid = (CompactJID) b;
+		if (hashcode != jid.hashcode || ((flags ^ jid.flags) & FULL) != 0 ||
+				resourceLength < 0 != jid.resourceLength < 0 || localLength < 0 != jid.localLength < 0) {
+			return false;
+		}
+		if (domain != jid.domain && !domain.getName().equalsIgnoreCase(jid.domain.getName())) {
+			return false;
+		}
+		if (flags == jid.flags && localLength == jid.localLength && resourceLength == jid.resourceLength &&
+				Arrays.equals(data, jid.data)) {
+			return true;
+		}
+
+		String localpart = getLocalpart();
+		return (localpart == null || localpart.equalsIgnoreCase(jid.getLocalpart())) &&
+				(resourceLength < 0 || getResource().equals(jid.getResource()));
+	}
+
+	/**
+	 * Method returns a domain part of the JID.
+	 *
+	 * @return a domain part of the <code>CompactJID</code> instance.
+	 */
+	public String getDomain() {
+		return domain.getName();
+	}
+
+	/**
+	 * Method returns a localpart (nickname) of the JID.
+	 *
+	 * @return a localpart (nickname) of the <code>CompactJID</code> instance or <code>null</code>.
+	 */
+	public String getLocalpart() {
+		return decode(0, localLength);
+	}
+
+	/**
+	 * Method returns a resource part of the JID.
+	 *
+	 * @return a resource part of the <code>CompactJID</code> instance or <code>null</code>.
+	 */
+	public String getResource() {
+		return decode(Math.max(localLength, 0), resourceLength);
+	}
+
+	/**
+	 * Method returns a hash code calculated for the <code>CompactJID</code> instance. The value is the same as the hash
+	 * code of the <code>BareJID</code> or <code>JID</code> instance represented by this object.
+	 *
+	 * @return an object hash code.
+	 */
+	@Override
+	public int hashCode() {
+		return hashcode;
+	}
+
+	/**
+	 * Method checks whether the instance represents a full JID, that is whether it was created from a <code>JID</code>
+	 * instance.
+	 *
+	 * @return <code>true</code> if the instance represents a full JID, <code>false</code> for a bare JID.
+	 */
+	public boolean isFullJID() {
+		return (flags & FULL) != 0;
+	}
+
+	/**
+	 * Method checks whether the instance represents the given bare JID.
+	 *
+	 * @param bareJid is a <code>BareJID</code> instance to compare with.
+	 *
+	 * @return <code>true</code> if this instance was created from a <code>BareJID</code> equal to the given one.
+	 */
+	public boolean represents(BareJID bareJid) {
+		return bareJid != null && !isFullJID() && hashcode == bareJid.hashCode() &&
+				domain.getName().equalsIgnoreCase(bareJid.getDomain()) &&
+				localpartEqualsIgnoreCase(bareJid.getLocalpart());
+	}
+
+	/**
+	 * Method checks whether the instance represents the given full JID.
+	 *
+	 * @param jid is a <code>JID</code> instance to compare with.
+	 *
+	 * @return <code>true</code> if this instance was created from a <code>JID</code> equal to the given one.
+	 */
+	public boolean represents(JID jid) {
+		if (jid == null || !isFullJID() || hashcode != jid.hashCode() ||
+				!domain.getName().equalsIgnoreCase(jid.getDomain()) ||
+				!localpartEqualsIgnoreCase(jid.getLocalpart())) {
+			return false;
+		}
+		String resource = jid.getResource();
+		return resource == null ? resourceLength < 0 : resource.equals(getResource());
+	}
+
+	/**
+	 * Method converts the instance to a <code>BareJID</code>. For instances representing a full JID the resource part
+	 * is dropped.
+	 *
+	 * @return a <code>BareJID</code> instance equal to the bare JID represented by this instance.
+	 */
+	public BareJID toBareJID() {
+		return BareJID.bareJIDInstanceNS(getLocalpart(), getDomain());
+	}
+
+	/**
+	 * Method converts the instance to a <code>JID</code>.
+	 *
+	 * @return a <code>JID</code> instance equal to the JID represented by this instance.
+	 */
+	public JID toJID() {
+		return JID.jidInstanceNS(getLocalpart(), getDomain(), getResource());
+	}
+
+	/**
+	 * Method returns a <code>String</code> representation of the JID. The value is not cached and a new
+	 * <code>String</code> is created on each call.
+	 *
+	 * @return a <code>String</code> representation of the <code>CompactJID</code> instance.
+	 */
+	@Override
+	public String toString() {
+		return BareJID.toString(getLocalpart(), getDomain(), getResource());
+	}
+
+	private String decode(int offset, int length) {
+		if (length < 0) {
+			return null;
+		}
+		return new String(data, offset, length,
+						  (flags & LATIN1) != 0 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+	}
+
+	private boolean localpartEqualsIgnoreCase(String localpart) {
+		if (localpart == null || localLength < 0) {
+			return localpart == null && localLength < 0;
+		}
+		return localpart.equalsIgnoreCase(getLocalpart());
+	}
+}
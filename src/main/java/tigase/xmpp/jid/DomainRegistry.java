@@ -0,0 +1,279 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.xmpp.jid;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of canonical domain names used by <code>BareJID</code> and <code>JID</code> instances instead of
+ * <code>String.intern()</code>. For each lower cased domain name the registry hands out a single {@link Domain}
+ * instance with a small integer ID, which may be used as an index of per domain lookup tables.
+ * <br>
+ * Domains registered explicitly with {@link #register(String)}, i.e. local virtual hosts, are pinned: they are held
+ * strongly, so their IDs are stable until they are removed with {@link #remove(String)}. Other domains, i.e. remote
+ * domains seen in S2S traffic, are registered implicitly when a JID is created and are held weakly, so domains no
+ * longer used by any JID are dropped from the registry automatically.
+ * <br>
+ * IDs of dropped and removed domains are reused, which keeps them small and dense. Each reuse of an ID increases its
+ * generation, so a <code>Domain</code> is identified by the pair of its ID and generation (or by the instance itself).
+ * A lookup table indexed by IDs should store the generation (or the <code>Domain</code>) of each entry and compare it
+ * with the one of the looked up domain, to detect entries left over from a previous owner of the ID.
+ *
+ * @version $Rev$
+ */
+public final class DomainRegistry {
+
+	private static final DomainRegistry instance = new DomainRegistry();
+
+	private final ConcurrentHashMap<String, DomainRef> domains = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, Domain> pinned = new ConcurrentHashMap<>();
+	private final ReferenceQueue<Domain> queue = new ReferenceQueue<>();
+	// guarded by the registry monitor
+	private final BitSet usedIds = new BitSet();
+	private volatile DomainRef[] byId = new DomainRef[64];
+	// generation of the last domain which got the ID, guarded by the registry monitor
+	private int[] generations = new int[64];
+
+	/**
+	 * Returns registry used by <code>BareJID</code> and <code>JID</code> instances.
+	 *
+	 * @return the domain registry.
+	 */
+	public static DomainRegistry getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Registers the domain as pinned, i.e. a local virtual host, so its <code>Domain</code> instance and ID are kept
+	 * until the domain is removed with {@link #remove(String)}. The name is converted to lower case before the lookup.
+	 *
+	 * @param domain is a domain name.
+	 *
+	 * @return canonical <code>Domain</code> instance.
+	 */
+	public Domain register(String domain) {
+		String name = domain.toLowerCase();
+		Domain result = pinned.get(name);
+		if (result != null) {
+			return result;
+		}
+		synchronized (this) {
+			result = intern(name);
+			pinned.put(name, result);
+			return result;
+		}
+	}
+
+	/**
+	 * Returns <code>Domain</code> instance currently registered under the given ID.
+	 *
+	 * @param id is a domain ID.
+	 *
+	 * @return a <code>Domain</code> instance or <code>null</code> if there is no domain with this ID.
+	 */
+	public Domain getDomain(int id) {
+		DomainRef[] table = byId;
+		if (id < 0 || id >= table.length) {
+			return null;
+		}
+		DomainRef ref = table[id];
+		return (ref == null) ? null : ref.get();
+	}
+
+	/**
+	 * Returns <code>Domain</code> instance registered for the given domain name without registering it.
+	 *
+	 * @param domain is a domain name.
+	 *
+	 * @return a <code>Domain</code> instance or <code>null</code> if the domain is not registered.
+	 */
+	public Domain getDomain(String domain) {
+		DomainRef ref = domains.get(domain.toLowerCase());
+		return (ref == null) ? null : ref.get();
+	}
+
+	/**
+	 * Checks if the domain was registered with {@link #register(String)}.
+	 *
+	 * @param domain is a domain name.
+	 *
+	 * @return <code>true</code> if the domain is pinned.
+	 */
+	public boolean isPinned(String domain) {
+		return pinned.containsKey(domain.toLowerCase());
+	}
+
+	/**
+	 * Removes the domain from the registry and releases its ID. Existing JIDs keep the removed <code>Domain</code>
+	 * instance, while JIDs created later for this domain get a new one, possibly with the same ID but with a different
+	 * generation.
+	 *
+	 * @param domain is a domain name.
+	 *
+	 * @return <code>true</code> if the domain was registered.
+	 */
+	public synchronized boolean remove(String domain) {
+		expungeStaleEntries();
+		String name = domain.toLowerCase();
+		pinned.remove(name);
+		DomainRef ref = domains.remove(name);
+		if (ref == null) {
+			return false;
+		}
+		release(ref);
+		return ref.get() != null;
+	}
+
+	/**
+	 * Returns number of registered domains.
+	 *
+	 * @return number of domains.
+	 */
+	public synchronized int size() {
+		expungeStaleEntries();
+		return domains.size();
+	}
+
+	@Override
+	public String toString() {
+		return "DomainRegistry{size=" + size() + ", pinned=" + pinned.size() + "}";
+	}
+
+	/**
+	 * Returns canonical <code>Domain</code> instance for the lower cased domain name, registering the domain weakly if
+	 * needed. Used by JID constructors, so it never fails.
+	 *
+	 * @param name is a lower cased domain name.
+	 *
+	 * @return canonical <code>Domain</code> instance.
+	 */
+	Domain intern(String name) {
+		DomainRef ref = domains.get(name);
+		Domain result = (ref == null) ? null : ref.get();
+		return (result != null) ? result : internSlow(name);
+	}
+
+	private synchronized Domain internSlow(String name) {
+		expungeStaleEntries();
+		DomainRef ref = domains.get(name);
+		Domain result = (ref == null) ? null : ref.get();
+		if (result != null) {
+			return result;
+		}
+
+		int id = usedIds.nextClearBit(0);
+		usedIds.set(id);
+		DomainRef[] table = byId;
+		if (id >= table.length) {
+			table = Arrays.copyOf(table, table.length * 2);
+			generations = Arrays.copyOf(generations, table.length);
+		}
+		result = new Domain(name, id, ++generations[id]);
+		ref = new DomainRef(result, queue);
+		table[id] = ref;
+		byId = table;
+		domains.put(name, ref);
+		return result;
+	}
+
+	private void expungeStaleEntries() {
+		DomainRef ref;
+		while ((ref = (DomainRef) queue.poll()) != null) {
+			if (domains.remove(ref.name, ref)) {
+				release(ref);
+			}
+		}
+	}
+
+	private void release(DomainRef ref) {
+		// ID could have been released by remove() and given to other domain already
+		if (byId[ref.id] == ref) {
+			byId[ref.id] = null;
+			usedIds.clear(ref.id);
+		}
+	}
+
+	/**
+	 * Canonical representation of a domain name with an ID assigned by the <code>DomainRegistry</code>. There is only
+	 * one instance for each registered domain, so instances may be compared by reference.
+	 */
+	public static final class Domain {
+
+		private final int generation;
+		private final int id;
+		private final String name;
+
+		private Domain(String name, int id, int generation) {
+			this.name = name;
+			this.id = id;
+			this.generation = generation;
+		}
+
+		/**
+		 * Returns ID of the domain. IDs are small and dense, as IDs of domains dropped from the registry are reused.
+		 * The ID identifies this domain only together with {@link #getGeneration()}. It is stable as long as the
+		 * domain is pinned (see {@link DomainRegistry#register(String)}) or the caller holds this
+		 * <code>Domain</code> instance.
+		 *
+		 * @return domain ID.
+		 */
+		public int getId() {
+			return id;
+		}
+
+		/**
+		 * Returns generation of the ID, which is increased each time the ID is given to a new <code>Domain</code>.
+		 *
+		 * @return generation of the domain ID.
+		 */
+		public int getGeneration() {
+			return generation;
+		}
+
+		/**
+		 * Returns lower cased domain name.
+		 *
+		 * @return domain name.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	private static final class DomainRef
+			extends WeakReference<Domain> {
+
+		private final int id;
+		private final String name;
+
+		private DomainRef(Domain domain, ReferenceQueue<Domain> queue) {
+			super(domain, queue);
+			this.id = domain.id;
+			this.name = domain.name;
+		}
+	}
+}
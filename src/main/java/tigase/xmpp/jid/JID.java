@@ -17,14 +17,23 @@
  */
 package tigase.xmpp.jid;
 
+import tigase.util.cache.ConcurrentClockCache;
 import tigase.util.stringprep.TigaseStringprepException;
+import tigase.util.stringprep.XMPPStringPrepIfc;
 
+import java.io.IOException;
+import java.util.Collection;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The class defines an instance of a single XMPP JID identifier. When the object is created all parameters are checked
  * and processed through the stringprep. An exception is thrown in case of a stringprep processing error.
  * <br>
+ * Full JIDs created from a <code>BareJID</code> instance and a resource part are cached by the <code>BareJID</code>, so
+ * repeated creation of JIDs for the same resources returns existing instances. The size of the per user cache may be
+ * set with the <code>tigase.jid.resource-cache-size</code> system property or {@link #useResourceCache(int)} method.
+ * <br>
  * <br>
  * Created: Dec 28, 2009 10:48:04 PM
  *
@@ -34,10 +43,15 @@ import java.util.Objects;
 public final class JID
 		implements Comparable<JID> {
 
+	public static final String RESOURCE_CACHE_SIZE_PROP_KEY = "tigase.jid.resource-cache-size";
+
+	static volatile ConcurrentClockCache<String, JID> internPool = BareJID.createInterningPool(
+			Integer.getInteger(BareJID.INTERNING_POOL_SIZE_PROP_KEY, 0));
+
 	private final BareJID bareJid;
 	private final int hashcode;
 	private final String resource;
-	private final String to_string;
+	private String to_string;
 
 	/**
 	 * Constructs a new <code>JID</code> instance using given <code>BareJID</code> instance as user bare JID and
@@ -56,12 +70,18 @@ public final class JID
 	 * string/domain was null or effectively empty..
 	 */
 	public static JID jidInstance(BareJID bareJid, String p_resource) throws TigaseStringprepException {
-		String f_resource = (p_resource == null) ? null : BareJID.stringPrep.resourceprep(p_resource);
+		if (bareJid == null || p_resource == null) {
+			return createJID(bareJid, p_resource);
+		}
 
-		if (bareJid == null) {
-			throw new TigaseStringprepException("BareJID can't be null");
+		XMPPStringPrepIfc stringPrep = BareJID.stringPrep;
+		JIDResourceCache cache = bareJid.resourceCache;
+		JID result = (cache == null) ? null : cache.get(p_resource, stringPrep);
+		if (result == null) {
+			result = new JID(bareJid, stringPrep.resourceprep(p_resource));
+			bareJid.resourceCache = JIDResourceCache.add(cache, p_resource, result, stringPrep);
 		}
-		return new JID(bareJid, f_resource);
+		return result;
 	}
 
 	/**
@@ -90,9 +110,33 @@ public final class JID
 	 * string/domain was null or effectively empty..
 	 */
 	public static JID jidInstance(String jid) throws TigaseStringprepException {
+		ConcurrentClockCache<String, JID> pool = internPool;
+		if (pool != null) {
+			JID result = pool.get(jid);
+			if (result != null) {
+				return result;
+			}
+		}
+
+		// processor is read after the pool, as BareJID.useStringprepProcessor() replaces pools after changing it
+		XMPPStringPrepIfc processor = BareJID.stringPrep;
 		String[] parsedJid = BareJID.parseJID(jid);
+		JID result = createJID(processor, BareJID.createBareJID(processor, parsedJid[0], parsedJid[1]),
+							   parsedJid[2]);
+
+		// instance created by the processor which was replaced in the meantime is not added to the pool
+		return (pool == null || BareJID.stringPrep != processor) ? result : pool.putIfAbsent(jid, result);
+	}
 
-		return jidInstance(parsedJid[0], parsedJid[1], parsedJid[2]);
+	/**
+	 * Returns interning pool of <code>JID</code> instances which may be used to read pool statistics: hits, misses and
+	 * evictions. The pool is configured with {@link BareJID#useInterningPool(int)}. The counters are always recorded,
+	 * even if cache statistics are disabled with <code>tigase.cache.stats</code> system property.
+	 *
+	 * @return interning pool or <code>null</code> if pool is disabled.
+	 */
+	public static ConcurrentClockCache<String, JID> getInterningPool() {
+		return internPool;
 	}
 
 	/**
@@ -129,7 +173,8 @@ public final class JID
 	 * passed string/domain was null or effectively empty..
 	 */
 	public static JID jidInstance(String localpart, String domain, String resource) throws TigaseStringprepException {
-		return jidInstance(BareJID.bareJIDInstance(localpart, domain), resource);
+		// BareJID is a new instance, so there is no point in using its resource cache
+		return createJID(BareJID.bareJIDInstance(localpart, domain), resource);
 	}
 
 	/**
@@ -162,7 +207,17 @@ public final class JID
 	 * @return <code>JID</code> class instance or null if passed string/domain was null or effectively empty.
 	 */
 	public static JID jidInstanceNS(BareJID bareJid, String p_resource) {
-		return bareJid != null ? new JID(bareJid, p_resource) : null;
+		if (bareJid == null || p_resource == null) {
+			return bareJid != null ? new JID(bareJid, p_resource) : null;
+		}
+
+		JIDResourceCache cache = bareJid.resourceCache;
+		JID result = (cache == null) ? null : cache.get(p_resource, null);
+		if (result == null) {
+			result = new JID(bareJid, p_resource);
+			bareJid.resourceCache = JIDResourceCache.add(cache, p_resource, result, null);
+		}
+		return result;
 	}
 
 	/**
@@ -197,7 +252,8 @@ public final class JID
 	 * @return <code>JID</code> class instance.
 	 */
 	public static JID jidInstanceNS(String localpart, String domain, String resource) {
-		return jidInstanceNS(BareJID.bareJIDInstanceNS(localpart, domain), resource);
+		BareJID bareJid = BareJID.bareJIDInstanceNS(localpart, domain);
+		return bareJid != null ? new JID(bareJid, resource) : null;
 	}
 
 	/**
@@ -214,6 +270,61 @@ public final class JID
 		return jidInstanceNS(BareJID.bareJIDInstanceNS(localpart, domain));
 	}
 
+	/**
+	 * The method parses and processes through the stringprep all JIDs from the given collection. Identical strings are
+	 * processed only once. Stringprep processing errors do not stop parsing, they are reported for each failed item in
+	 * the returned result.
+	 *
+	 * @param jids is a <code>Collection</code> of JID strings.
+	 *
+	 * @return a <code>JIDParseResult</code> with parsed <code>JID</code> instances and errors, index aligned with the
+	 * input collection.
+	 */
+	public static JIDParseResult<JID> parseAll(Collection<String> jids) {
+		return parseAll(jids, null);
+	}
+
+	/**
+	 * The method parses and processes through the stringprep all JIDs from the given collection. Identical strings are
+	 * processed only once. If the pool is not <code>null</code> and there are at least
+	 * {@link JIDParseResult#PARALLEL_THRESHOLD} distinct strings, the processing is split between threads of the pool.
+	 * Stringprep processing errors do not stop parsing, they are reported for each failed item in the returned result.
+	 *
+	 * @param jids is a <code>Collection</code> of JID strings.
+	 * @param pool is a <code>ForkJoinPool</code> used for parallel processing, may be <code>null</code>.
+	 *
+	 * @return a <code>JIDParseResult</code> with parsed <code>JID</code> instances and errors, index aligned with the
+	 * input collection.
+	 */
+	public static JIDParseResult<JID> parseAll(Collection<String> jids, ForkJoinPool pool) {
+		return JIDParseResult.parseAll(jids, pool, JID::jidInstance);
+	}
+
+	/**
+	 * Sets maximum number of full JIDs cached by each <code>BareJID</code> instance for reuse by
+	 * {@link #jidInstance(BareJID, String)}, {@link #jidInstanceNS(BareJID, String)} and <code>copyWithResource</code>
+	 * methods. Caches which already exist are not resized.
+	 *
+	 * @param maxSize maximum number of cached JIDs per <code>BareJID</code>, <code>0</code> disables the cache.
+	 */
+	public static void useResourceCache(int maxSize) {
+		JIDResourceCache.maxSize = maxSize;
+	}
+
+	private static JID createJID(BareJID bareJid, String p_resource) throws TigaseStringprepException {
+		return createJID(BareJID.stringPrep, bareJid, p_resource);
+	}
+
+	private static JID createJID(XMPPStringPrepIfc processor, BareJID bareJid, String p_resource)
+			throws TigaseStringprepException {
+		String f_resource = (p_resource == null) ? null : processor.resourceprep(p_resource);
+
+		if (bareJid == null) {
+			throw new TigaseStringprepException("BareJID can't be null");
+		}
+		return new JID(bareJid, f_resource);
+	}
+
 	/**
 	 * Constructs a new <code>JID</code> instance using given <code>BareJID</code> instance as user bare JID and
 	 * <code>String</code> instance as a resource part.
@@ -229,8 +340,8 @@ public final class JID
 	private JID(BareJID bareJid, String resource) {
 		this.bareJid = bareJid;
 		this.resource = resource;
-		this.to_string = BareJID.toString(bareJid, resource);
-		this.hashcode = Objects.hash(bareJid, resource);
+		// same value as Objects.hash(bareJid, resource) without the varargs array
+		this.hashcode = 31 * (31 + bareJid.hashCode()) + Objects.hashCode(resource);
 	}
 
 	public boolean hasResource() {
@@ -250,7 +361,7 @@ public final class JID
 	 */
 	@Override
 	public int compareTo(JID o) {
-		return to_string.compareTo(o.to_string);
+		return toString().compareTo(o.toString());
 	}
 
 	/**
@@ -258,7 +369,8 @@ public final class JID
 	 *
 	 * @param resource is a <code>String</code> instance representing JID's new resource part.
 	 *
-	 * @return a new instance of the <code>JID</code> class with a new resource part.
+	 * @return an instance of the <code>JID</code> class with a new resource part. It may be a cached instance shared
+	 * with other callers, see {@link #useResourceCache(int)}.
 	 *
 	 * @throws TigaseStringprepException if resource stringprep processing fails.
 	 */
@@ -271,7 +383,8 @@ public final class JID
 	 *
 	 * @param resource is a <code>String</code> instance representing JID's new resource part.
 	 *
-	 * @return a new instance of the <code>JID</code> class with a new resource part.
+	 * @return an instance of the <code>JID</code> class with a new resource part. It may be a cached instance shared
+	 * with other callers, see {@link #useResourceCache(int)}.
 	 */
 	public JID copyWithResourceNS(String resource) {
 		return jidInstanceNS(bareJid, resource);
@@ -329,6 +442,15 @@ public final class JID
 		return bareJid.getDomain();
 	}
 
+	/**
+	 * Method returns ID of the domain part of the JID assigned by the {@link DomainRegistry}.
+	 *
+	 * @return an ID of the domain part.
+	 */
+	public int getDomainId() {
+		return bareJid.getDomainId();
+	}
+
 	/**
 	 * Method a localpart (nickname) of the <code>JID</code> instance.
 	 *
@@ -358,12 +480,63 @@ public final class JID
 	}
 
 	/**
-	 * Method returns a <code>String</code> representation of the <code>JID</code> instance.
+	 * Method appends a <code>String</code> representation of the <code>JID</code> instance to the given
+	 * <code>StringBuilder</code> without creating an intermediate <code>String</code>.
+	 *
+	 * @param sb is a <code>StringBuilder</code> to which the JID is appended.
+	 *
+	 * @return the <code>StringBuilder</code> given as the parameter.
+	 */
+	public StringBuilder appendTo(StringBuilder sb) {
+		String str = to_string;
+		if (str != null) {
+			return sb.append(str);
+		}
+		bareJid.appendTo(sb);
+		if (resource != null && !resource.isEmpty()) {
+			sb.append('/').append(resource);
+		}
+		return sb;
+	}
+
+	/**
+	 * Method appends a <code>String</code> representation of the <code>JID</code> instance to the given
+	 * <code>Appendable</code> without creating an intermediate <code>String</code>.
+	 *
+	 * @param out is an <code>Appendable</code> to which the JID is appended.
+	 *
+	 * @return the <code>Appendable</code> given as the parameter.
+	 *
+	 * @throws IOException if appending to the <code>Appendable</code> fails.
+	 */
+	public Appendable appendTo(Appendable out) throws IOException {
+		String str = to_string;
+		if (str != null) {
+			return out.append(str);
+		}
+		bareJid.appendTo(out);
+		if (resource != null && !resource.isEmpty()) {
+			out.append('/').append(resource);
+		}
+		return out;
+	}
+
+	/**
+	 * Method returns a <code>String</code> representation of the <code>JID</code> instance. The representation is
+	 * created on the first call and cached.
 	 *
 	 * @return a <code>String</code> representation of the <code>JID</code> instance.
 	 */
 	@Override
 	public String toString() {
-		return to_string;
+		// benign race, String is immutable, so at worst it is created more than once
+		String str = to_string;
+		if (str == null) {
+			str = (resource == null || resource.isEmpty())
+				  ? bareJid.toString()
+				  : appendTo(new StringBuilder(64)).toString();
+			to_string = str;
+		}
+		return str;
 	}
 }
@@ -0,0 +1,271 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.xmpp.jid;
+
+import tigase.util.stringprep.TigaseStringprepException;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Instance of the <code>JIDParseResult</code> class holds results of bulk JID parsing performed by
+ * {@link JID#parseAll(Collection)} or {@link BareJID#parseAll(Collection)} methods and their variants. Results are
+ * index aligned with the parsed collection: for each input item there is either a parsed JID instance or a stringprep
+ * processing error.
+ * <br>
+ * Identical input strings are parsed only once and share the same result instance (or error). <code>null</code> input
+ * items produce <code>null</code> results without an error.
+ *
+ * @param <J> type of parsed JID, <code>JID</code> or <code>BareJID</code>.
+ *
+ * @version $Rev$
+ */
+public final class JIDParseResult<J> {
+
+	/**
+	 * Minimal number of distinct input strings for which parsing is split between threads of the
+	 * <code>ForkJoinPool</code>.
+	 */
+	public static final int PARALLEL_THRESHOLD = 1024;
+
+	private static final int MIN_CHUNK_SIZE = 256;
+
+	private final int errorCount;
+	private final String[] inputs;
+	private final int[] uniqueIndex;
+	private final Object[] uniqueResults;
+
+	static <J> JIDParseResult<J> parseAll(Collection<String> jids, ForkJoinPool pool, Parser<J> parser) {
+		String[] inputs = jids.toArray(new String[0]);
+		int[] uniqueIndex = new int[inputs.length];
+		HashMap<String, Integer> unique = new HashMap<>();
+		String[] uniqueInputs = new String[inputs.length];
+		int uniqueCount = 0;
+		for (int i = 0; i < inputs.length; i++) {
+			if (inputs[i] == null) {
+				uniqueIndex[i] = -1;
+				continue;
+			}
+			Integer idx = unique.putIfAbsent(inputs[i], uniqueCount);
+			if (idx == null) {
+				uniqueInputs[uniqueCount] = inputs[i];
+				idx = uniqueCount++;
+			}
+			uniqueIndex[i] = idx;
+		}
+
+		Object[] results = new Object[uniqueCount];
+		if (pool == null || uniqueCount < PARALLEL_THRESHOLD) {
+			parseRange(parser, uniqueInputs, results, 0, uniqueCount);
+		} else {
+			int chunkSize = Math.max(MIN_CHUNK_SIZE, uniqueCount / (pool.getParallelism() * 4));
+			pool.invoke(new ParseTask<>(parser, uniqueInputs, results, 0, uniqueCount, chunkSize));
+		}
+
+		int errors = 0;
+		for (int i = 0; i < inputs.length; i++) {
+			if (uniqueIndex[i] >= 0 && results[uniqueIndex[i]] instanceof TigaseStringprepException) {
+				errors++;
+			}
+		}
+		return new JIDParseResult<>(inputs, uniqueIndex, results, errors);
+	}
+
+	private static <J> void parseRange(Parser<J> parser, String[] inputs, Object[] results, int from, int to) {
+		for (int i = from; i < to; i++) {
+			try {
+				results[i] = parser.parse(inputs[i]);
+			} catch (TigaseStringprepException e) {
+				results[i] = e;
+			}
+		}
+	}
+
+	private JIDParseResult(String[] inputs, int[] uniqueIndex, Object[] uniqueResults, int errorCount) {
+		this.inputs = inputs;
+		this.uniqueIndex = uniqueIndex;
+		this.uniqueResults = uniqueResults;
+		this.errorCount = errorCount;
+	}
+
+	/**
+	 * Method returns parsed JID for the input item at the given index.
+	 *
+	 * @param index is an index of the item in the parsed collection.
+	 *
+	 * @return a parsed JID or <code>null</code> if the item was <code>null</code> or stringprep processing failed.
+	 */
+	@SuppressWarnings("unchecked")
+	public J get(int index) {
+		Object result = result(index);
+		return (result instanceof TigaseStringprepException) ? null : (J) result;
+	}
+
+	/**
+	 * Method returns number of input items for which stringprep processing failed.
+	 *
+	 * @return number of failed items, each occurrence of a repeated input is counted.
+	 */
+	public int getErrorCount() {
+		return errorCount;
+	}
+
+	/**
+	 * Method returns stringprep processing error for the input item at the given index.
+	 *
+	 * @param index is an index of the item in the parsed collection.
+	 *
+	 * @return a stringprep processing error or <code>null</code> if the item was parsed successfully.
+	 */
+	public TigaseStringprepException getError(int index) {
+		Object result = result(index);
+		return (result instanceof TigaseStringprepException) ? (TigaseStringprepException) result : null;
+	}
+
+	/**
+	 * Method returns all stringprep processing errors keyed by the input string which caused them.
+	 *
+	 * @return a <code>Map</code> of invalid input strings to stringprep processing errors, in order of the first
+	 * occurrence in the input collection.
+	 */
+	public Map<String, TigaseStringprepException> getErrors() {
+		Map<String, TigaseStringprepException> errors = new LinkedHashMap<>();
+		for (int i = 0; i < inputs.length; i++) {
+			TigaseStringprepException error = getError(i);
+			if (error != null) {
+				errors.putIfAbsent(inputs[i], error);
+			}
+		}
+		return errors;
+	}
+
+	/**
+	 * Method returns the input string at the given index.
+	 *
+	 * @param index is an index of the item in the parsed collection.
+	 *
+	 * @return the input string.
+	 */
+	public String getInput(int index) {
+		return inputs[index];
+	}
+
+	/**
+	 * Method returns parsed JIDs as a list index aligned with the input collection.
+	 *
+	 * @return an unmodifiable <code>List</code> of parsed JIDs, which contains <code>null</code> elements for
+	 * <code>null</code> and invalid input items.
+	 */
+	public List<J> getResults() {
+		return Collections.unmodifiableList(new AbstractList<J>() {
+			@Override
+			public J get(int index) {
+				return JIDParseResult.this.get(index);
+			}
+
+			@Override
+			public int size() {
+				return inputs.length;
+			}
+		});
+	}
+
+	/**
+	 * Method returns number of distinct non <code>null</code> input strings which were processed.
+	 *
+	 * @return number of distinct input strings.
+	 */
+	public int getUniqueCount() {
+		return uniqueResults.length;
+	}
+
+	/**
+	 * Method checks whether the stringprep processing failed for any input item.
+	 *
+	 * @return <code>true</code> if there was at least one error.
+	 */
+	public boolean hasErrors() {
+		return errorCount > 0;
+	}
+
+	/**
+	 * Method returns number of input items.
+	 *
+	 * @return size of the parsed collection.
+	 */
+	public int size() {
+		return inputs.length;
+	}
+
+	@Override
+	public String toString() {
+		return "JIDParseResult{size=" + inputs.length + ", unique=" + uniqueResults.length + ", errors=" + errorCount +
+				"}";
+	}
+
+	private Object result(int index) {
+		int idx = uniqueIndex[index];
+		return (idx < 0) ? null : uniqueResults[idx];
+	}
+
+	interface Parser<J> {
+
+		J parse(String jid) throws TigaseStringprepException;
+
+	}
+
+	private static final class ParseTask<J>
+			extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int chunkSize;
+		private final int from;
+		private final String[] inputs;
+		private final Parser<J> parser;
+		private final Object[] results;
+		private final int to;
+
+		private ParseTask(Parser<J> parser, String[] inputs, Object[] results, int from, int to, int chunkSize) {
+			this.parser = parser;
+			this.inputs = inputs;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= chunkSize) {
+				parseRange(parser, inputs, results, from, to);
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new ParseTask<>(parser, inputs, results, from, mid, chunkSize),
+						  new ParseTask<>(parser, inputs, results, mid, to, chunkSize));
+			}
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.xmpp.jid;
+
+import tigase.util.stringprep.XMPPStringPrepIfc;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Small cache of full <code>JID</code> instances kept by a <code>BareJID</code> and keyed by the resource part, so
+ * repeated creation of the same full JIDs for a user with several connected resources does not repeat stringprep
+ * processing and object allocation.
+ * <br>
+ * Instances are immutable: adding a JID creates a new cache, which is published by the owning <code>BareJID</code>.
+ * Concurrent updates may lose an entry, which only causes a later cache miss. JIDs are referenced weakly, so entries
+ * for resources which are no longer used are released and replaced first. When the cache is full the oldest entry is
+ * replaced.
+ */
+final class JIDResourceCache {
+
+	static volatile int maxSize = Integer.getInteger(JID.RESOURCE_CACHE_SIZE_PROP_KEY, 8);
+
+	private final Entry[] entries;
+
+	static JIDResourceCache add(JIDResourceCache cache, String resource, JID jid, XMPPStringPrepIfc stringPrep) {
+		int limit = maxSize;
+		if (limit <= 0) {
+			return null;
+		}
+
+		Entry[] current = (cache == null) ? new Entry[0] : cache.entries;
+		Entry[] live = new Entry[current.length];
+		int size = 0;
+		for (Entry entry : current) {
+			if (entry.get() != null && !entry.resource.equals(resource)) {
+				live[size++] = entry;
+			}
+		}
+
+		// drop the oldest entries if there is no space left
+		int from = Math.max(0, size + 1 - limit);
+		Entry[] entries = new Entry[size - from + 1];
+		System.arraycopy(live, from, entries, 0, size - from);
+		entries[entries.length - 1] = new Entry(resource, jid, stringPrep);
+		return new JIDResourceCache(entries);
+	}
+
+	private JIDResourceCache(Entry[] entries) {
+		this.entries = entries;
+	}
+
+	/**
+	 * Looks up JID created for the given resource.
+	 *
+	 * @param resource is the resource part as passed for the JID creation, before stringprep processing.
+	 * @param stringPrep is the stringprep processor which has to be used to create the JID or <code>null</code> if the
+	 * JID has to be created without stringprep processing.
+	 *
+	 * @return cached <code>JID</code> or <code>null</code>.
+	 */
+	JID get(String resource, XMPPStringPrepIfc stringPrep) {
+		for (Entry entry : entries) {
+			if (entry.resource.equals(resource)) {
+				JID jid = entry.get();
+				if (jid == null) {
+					return null;
+				}
+				if (stringPrep == null) {
+					// not processed resource has to be used as is
+					return resource.equals(jid.getResource()) ? jid : null;
+				}
+				return (entry.stringPrep == stringPrep) ? jid : null;
+			}
+		}
+		return null;
+	}
+
+	int size() {
+		return entries.length;
+	}
+
+	private static final class Entry
+			extends WeakReference<JID> {
+
+		private final String resource;
+		private final XMPPStringPrepIfc stringPrep;
+
+		private Entry(String resource, JID jid, XMPPStringPrepIfc stringPrep) {
+			super(jid);
+			this.resource = resource;
+			this.stringPrep = stringPrep;
+		}
+	}
+}
@@ -0,0 +1,361 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.xmpp.jid;
+
+import tigase.util.stringprep.TigaseStringprepException;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Instance of the <code>ParsedJID</code> class is a flyweight view of a JID stored in a <code>CharSequence</code>,
+ * <code>char[]</code> array or UTF-8 encoded <code>ByteBuffer</code>. Parsing only finds boundaries of the JID parts and
+ * does not copy any data, so it is suitable for inspecting <code>to</code> and <code>from</code> attributes received
+ * from the network. <code>String</code> instances are created only when JID parts are requested as strings or the JID
+ * is converted to a <code>BareJID</code> or <code>JID</code> instance.
+ * <br>
+ * JID is split in the same way as by {@link BareJID#parseJID(String)} method. Instances are mutable and may be reused by
+ * calling any of <code>parse</code> methods again, but they are not thread safe. The view is valid only as long as the
+ * underlying data is not modified.
+ *
+ * @version $Rev$
+ */
+public final class ParsedJID {
+
+	private int at = -1;
+	private int end;
+	private CharSequence jid;
+	private int slash = -1;
+	private int start;
+
+	/**
+	 * Method checks whether the domain part of the JID equals ignoring case to the given domain.
+	 *
+	 * @param domain is a <code>String</code> with a domain name.
+	 *
+	 * @return <code>true</code> if domain parts are equal ignoring case.
+	 */
+	public boolean domainEquals(String domain) {
+		return regionEqualsIgnoreCase(getDomainStart(), getDomainEnd(), domain);
+	}
+
+	/**
+	 * Method checks whether the parsed JID, ignoring the resource part, represents the given bare JID. Parts of the JID
+	 * are compared ignoring case without stringprep processing and without creating any new objects.
+	 *
+	 * @param bareJid is a <code>BareJID</code> instance to compare with.
+	 *
+	 * @return <code>true</code> if localpart and domain part of the JID equal ignoring case to the bare JID parts.
+	 */
+	public boolean bareJIDEquals(BareJID bareJid) {
+		String localpart = bareJid.getLocalpart();
+		if (localpart == null ? hasLocalpart() : !regionEqualsIgnoreCase(start, getLocalpartEnd(), localpart)) {
+			return false;
+		}
+		return domainEquals(bareJid.getDomain());
+	}
+
+	/**
+	 * Method returns a domain part of the JID as a view of the underlying data.
+	 *
+	 * @return a <code>CharSequence</code> with the domain part.
+	 */
+	public CharSequence getDomain() {
+		return jid.subSequence(getDomainStart(), getDomainEnd());
+	}
+
+	/**
+	 * Method returns an index of the first character after the domain part in the parsed sequence.
+	 *
+	 * @return an end index (exclusive) of the domain part.
+	 */
+	public int getDomainEnd() {
+		return (slash == -1) ? end : slash;
+	}
+
+	/**
+	 * Method returns an index of the first character of the domain part in the parsed sequence.
+	 *
+	 * @return a start index of the domain part.
+	 */
+	public int getDomainStart() {
+		return (at == -1) ? start : at + 1;
+	}
+
+	/**
+	 * Method returns a localpart of the JID as a view of the underlying data.
+	 *
+	 * @return a <code>CharSequence</code> with the localpart or <code>null</code> if there is no localpart.
+	 */
+	public CharSequence getLocalpart() {
+		return hasLocalpart() ? jid.subSequence(start, at) : null;
+	}
+
+	/**
+	 * Method returns an index of the first character after the localpart in the parsed sequence.
+	 *
+	 * @return an end index (exclusive) of the localpart or <code>-1</code> if there is no localpart.
+	 */
+	public int getLocalpartEnd() {
+		return at;
+	}
+
+	/**
+	 * Method returns a resource part of the JID as a view of the underlying data.
+	 *
+	 * @return a <code>CharSequence</code> with the resource part or <code>null</code> if there is no resource part.
+	 */
+	public CharSequence getResource() {
+		return hasResource() ? jid.subSequence(slash + 1, end) : null;
+	}
+
+	/**
+	 * Method returns an index of the first character of the resource part in the parsed sequence.
+	 *
+	 * @return a start index of the resource part or <code>-1</code> if there is no resource part.
+	 */
+	public int getResourceStart() {
+		return hasResource() ? slash + 1 : -1;
+	}
+
+	/**
+	 * Method returns the sequence of characters which was parsed. Indexes returned by the instance refer to this
+	 * sequence.
+	 *
+	 * @return parsed <code>CharSequence</code>.
+	 */
+	public CharSequence getSequence() {
+		return jid;
+	}
+
+	/**
+	 * Method checks whether the JID has a localpart.
+	 *
+	 * @return <code>true</code> if the JID contains a localpart.
+	 */
+	public boolean hasLocalpart() {
+		return at != -1;
+	}
+
+	/**
+	 * Method checks whether the JID has a resource part.
+	 *
+	 * @return <code>true</code> if the JID contains a resource part.
+	 */
+	public boolean hasResource() {
+		return slash != -1;
+	}
+
+	/**
+	 * Method parses JID stored in the given <code>CharSequence</code>.
+	 *
+	 * @param jid is a <code>CharSequence</code> containing the JID.
+	 *
+	 * @return this instance.
+	 */
+	public ParsedJID parse(CharSequence jid) {
+		return parse(jid, 0, jid.length());
+	}
+
+	/**
+	 * Method parses JID stored in the given range of the <code>CharSequence</code>.
+	 *
+	 * @param jid is a <code>CharSequence</code> containing the JID.
+	 * @param start is an index of the first character of the JID.
+	 * @param end is an index of the character following the last character of the JID.
+	 *
+	 * @return this instance.
+	 */
+	public ParsedJID parse(CharSequence jid, int start, int end) {
+		if (start < 0 || end > jid.length() || start > end) {
+			throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + jid.length());
+		}
+		this.jid = jid;
+		this.start = start;
+		this.end = end;
+		this.at = -1;
+		this.slash = -1;
+		for (int i = start; i < end; i++) {
+			char c = jid.charAt(i);
+			if (c == '/') {
+				slash = i;
+				break;
+			}
+			if (c == '@' && at == -1) {
+				at = i;
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Method parses JID stored in the given range of <code>char[]</code> array. The array is not copied.
+	 *
+	 * @param jid is a <code>char[]</code> array containing the JID.
+	 * @param offset is an index of the first character of the JID.
+	 * @param length is a number of characters of the JID.
+	 *
+	 * @return this instance.
+	 */
+	public ParsedJID parse(char[] jid, int offset, int length) {
+		return parse(CharBuffer.wrap(jid), offset, offset + length);
+	}
+
+	/**
+	 * Method parses UTF-8 encoded JID stored between the position and the limit of the given <code>ByteBuffer</code>.
+	 * The position of the buffer is not changed. If the JID contains only ASCII characters the buffer content is not
+	 * copied, otherwise the JID is decoded to a new <code>CharBuffer</code>.
+	 *
+	 * @param utf8 is a <code>ByteBuffer</code> containing UTF-8 encoded JID.
+	 *
+	 * @return this instance.
+	 *
+	 * @throws IllegalArgumentException if the buffer does not contain valid UTF-8 data.
+	 */
+	public ParsedJID parse(ByteBuffer utf8) {
+		for (int i = utf8.position(); i < utf8.limit(); i++) {
+			if (utf8.get(i) < 0) {
+				try {
+					return parse(StandardCharsets.UTF_8.newDecoder()
+										 .onMalformedInput(CodingErrorAction.REPORT)
+										 .onUnmappableCharacter(CodingErrorAction.REPORT)
+										 .decode(utf8.duplicate()));
+				} catch (CharacterCodingException e) {
+					throw new IllegalArgumentException("Invalid UTF-8 encoded JID", e);
+				}
+			}
+		}
+		return parse(new AsciiSequence(utf8, utf8.position(), utf8.limit()));
+	}
+
+	/**
+	 * Method creates a <code>BareJID</code> instance from the parsed JID. The localpart and domain are processed through
+	 * the stringprep.
+	 *
+	 * @return a <code>BareJID</code> instance.
+	 *
+	 * @throws TigaseStringprepException if the stringprep processing fails for any JID part.
+	 */
+	public BareJID toBareJID() throws TigaseStringprepException {
+		return BareJID.bareJIDInstance(toString(getLocalpart()), getDomain().toString());
+	}
+
+	/**
+	 * Method creates a <code>BareJID</code> instance from the parsed JID without stringprep processing.
+	 *
+	 * @return a <code>BareJID</code> instance or <code>null</code> if the domain part is empty.
+	 */
+	public BareJID toBareJIDNS() {
+		return BareJID.bareJIDInstanceNS(toString(getLocalpart()), getDomain().toString());
+	}
+
+	/**
+	 * Method creates a <code>JID</code> instance from the parsed JID. All JID parts are processed through the
+	 * stringprep.
+	 *
+	 * @return a <code>JID</code> instance.
+	 *
+	 * @throws TigaseStringprepException if the stringprep processing fails for any JID part.
+	 */
+	public JID toJID() throws TigaseStringprepException {
+		return JID.jidInstance(toString(getLocalpart()), getDomain().toString(), toString(getResource()));
+	}
+
+	/**
+	 * Method creates a <code>JID</code> instance from the parsed JID without stringprep processing.
+	 *
+	 * @return a <code>JID</code> instance or <code>null</code> if the domain part is empty.
+	 */
+	public JID toJIDNS() {
+		return JID.jidInstanceNS(toString(getLocalpart()), getDomain().toString(), toString(getResource()));
+	}
+
+	@Override
+	public String toString() {
+		return (jid == null) ? "" : jid.subSequence(start, end).toString();
+	}
+
+	private static String toString(CharSequence part) {
+		return (part == null) ? null : part.toString();
+	}
+
+	private boolean regionEqualsIgnoreCase(int from, int to, String str) {
+		if (to - from != str.length()) {
+			return false;
+		}
+		for (int i = 0; i < str.length(); i++) {
+			char c1 = jid.charAt(from + i);
+			char c2 = str.charAt(i);
+			if (c1 != c2 && Character.toUpperCase(c1) != Character.toUpperCase(c2) &&
+					Character.toLowerCase(c1) != Character.toLowerCase(c2)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * <code>CharSequence</code> view of ASCII encoded bytes stored in a <code>ByteBuffer</code>.
+	 */
+	private static final class AsciiSequence
+			implements CharSequence {
+
+		private final ByteBuffer buffer;
+		private final int end;
+		private final int start;
+
+		private AsciiSequence(ByteBuffer buffer, int start, int end) {
+			this.buffer = buffer;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index < 0 || index >= length()) {
+				throw new IndexOutOfBoundsException("index: " + index + ", length: " + length());
+			}
+			return (char) buffer.get(start + index);
+		}
+
+		@Override
+		public int length() {
+			return end - start;
+		}
+
+		@Override
+		public CharSequence subSequence(int from, int to) {
+			if (from < 0 || to > length() || from > to) {
+				throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", length: " + length());
+			}
+			return new AsciiSequence(buffer, start + from, start + to);
+		}
+
+		@Override
+		public String toString() {
+			char[] chars = new char[length()];
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = (char) buffer.get(start + i);
+			}
+			return new String(chars);
+		}
+	}
+}
@@ -0,0 +1,647 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package gnu.inet.encoding;
+
+/**
+ * Copy of the <code>StringBuffer</code> and table scanning based stringprep and NFKC implementation from before the
+ * lookup tables, ASCII fast path and NFKC quick check were introduced. It is used as the reference implementation in
+ * tests and benchmarks and works on the generated Java tables only, so it is also used to generate binary Unicode data
+ * resources.
+ */
+public class LegacyStringprep {
+
+	/**
+	 * Characters prohibited by RFC3920 nodeprep that aren't defined as part of the RFC3454 tables.
+	 */
+	static final char[] RFC3920_NODEPREP_PROHIBIT = new char[]{'\u0022', '\u0026', '\'', '\u002F', '\u003A',
+																	   '\u003C', '\u003E', '\u0040'};
+
+	static boolean contains(StringBuffer s, char[] p) {
+		for (int i = 0; i < p.length; i++) {
+			char c = p[i];
+			for (int j = 0; j < s.length(); j++) {
+				if (c == s.charAt(j)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	static boolean contains(StringBuffer s, char[][] p) {
+		for (int i = 0; i < p.length; i++) {
+			char[] r = p[i];
+			if (1 == r.length) {
+				char c = r[0];
+				for (int j = 0; j < s.length(); j++) {
+					if (c == s.charAt(j)) {
+						return true;
+					}
+				}
+			} else if (2 == r.length) {
+				char f = r[0];
+				char t = r[1];
+				for (int j = 0; j < s.length(); j++) {
+					if (f <= s.charAt(j) && t >= s.charAt(j)) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	static boolean contains(char c, char[][] p) {
+		for (int i = 0; i < p.length; i++) {
+			char[] r = p[i];
+			if (1 == r.length) {
+				if (c == r[0]) {
+					return true;
+				}
+			} else if (2 == r.length) {
+				char f = r[0];
+				char t = r[1];
+				if (f <= c && t >= c) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	static void filter(StringBuffer s, char[] f) {
+		for (int i = 0; i < f.length; i++) {
+			char c = f[i];
+
+			int j = 0;
+			while (j < s.length()) {
+				if (c == s.charAt(j)) {
+					s.deleteCharAt(j);
+				} else {
+					j++;
+				}
+			}
+		}
+	}
+
+	static void filter(StringBuffer s, char[][] f) {
+		for (int i = 0; i < f.length; i++) {
+			char[] r = f[i];
+
+			if (1 == r.length) {
+				char c = r[0];
+
+				int j = 0;
+				while (j < s.length()) {
+					if (c == s.charAt(j)) {
+						s.deleteCharAt(j);
+					} else {
+						j++;
+					}
+				}
+			} else if (2 == r.length) {
+				char from = r[0];
+				char to = r[1];
+
+				int j = 0;
+				while (j < s.length()) {
+					if (from <= s.charAt(j) && to >= s.charAt(j)) {
+						s.deleteCharAt(j);
+					} else {
+						j++;
+					}
+				}
+			}
+		}
+	}
+
+	static void map(StringBuffer s, char[] search, String[] replace) {
+		for (int i = 0; i < search.length; i++) {
+			char c = search[i];
+
+			int j = 0;
+			while (j < s.length()) {
+				if (c == s.charAt(j)) {
+					s.deleteCharAt(j);
+					if (null != replace[i]) {
+						s.insert(j, replace[i]);
+						j += replace[i].length() - 1;
+					}
+				} else {
+					j++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Preps a name according to the Stringprep profile defined in RFC3491. Unassigned code points are not allowed.
+	 *
+	 * @param input the name to prep.
+	 *
+	 * @return the prepped name.
+	 *
+	 * @throws StringprepException If the name cannot be prepped with this profile.
+	 * @throws NullPointerException If the name is null.
+	 */
+	public static String nameprep(String input) throws StringprepException, NullPointerException {
+		return nameprep(input, false);
+	}
+
+	/**
+	 * Preps a name according to the Stringprep profile defined in RFC3491.
+	 *
+	 * @param input the name to prep.
+	 * @param allowUnassigned true if the name may contain unassigned code points.
+	 *
+	 * @return the prepped name.
+	 *
+	 * @throws StringprepException If the name cannot be prepped with this profile.
+	 * @throws NullPointerException If the name is null.
+	 */
+	public static String nameprep(String input, boolean allowUnassigned)
+			throws StringprepException, NullPointerException {
+		if (input == null) {
+			throw new NullPointerException();
+		}
+
+		StringBuffer s = new StringBuffer(input);
+
+		if (!allowUnassigned && contains(s, RFC3454.A1)) {
+			throw new StringprepException(StringprepException.CONTAINS_UNASSIGNED);
+		}
+
+		filter(s, RFC3454.B1);
+		map(s, RFC3454.B2search, RFC3454.B2replace);
+
+		s = new StringBuffer(normalizeNFKC(s.toString()));
+		// B.3 is only needed if NFKC is not used, right?
+		// map(s, RFC3454.B3search, RFC3454.B3replace);
+
+		if (contains(s, RFC3454.C12) || contains(s, RFC3454.C22) || contains(s, RFC3454.C3) ||
+				contains(s, RFC3454.C4) || contains(s, RFC3454.C5) || contains(s, RFC3454.C6) ||
+				contains(s, RFC3454.C7) || contains(s, RFC3454.C8)) {
+			// Table C.9 only contains code points > 0xFFFF which Java
+			// doesn't handle
+			throw new StringprepException(StringprepException.CONTAINS_PROHIBITED);
+		}
+
+		// Bidi handling
+		boolean r = contains(s, RFC3454.D1);
+		boolean l = contains(s, RFC3454.D2);
+
+		// RFC 3454, section 6, requirement 1: already handled above (table C.8)
+
+		// RFC 3454, section 6, requirement 2
+		if (r && l) {
+			throw new StringprepException(StringprepException.BIDI_BOTHRAL);
+		}
+
+		// RFC 3454, section 6, requirement 3
+		if (r) {
+			if (!contains(s.charAt(0), RFC3454.D1) || !contains(s.charAt(s.length() - 1), RFC3454.D1)) {
+				throw new StringprepException(StringprepException.BIDI_LTRAL);
+			}
+		}
+
+		return s.toString();
+	}
+
+	/**
+	 * Preps a node name according to the Stringprep profile defined in RFC3920. Unassigned code points are not
+	 * allowed.
+	 *
+	 * @param input the node name to prep.
+	 *
+	 * @return the prepped node name.
+	 *
+	 * @throws StringprepException If the node name cannot be prepped with this profile.
+	 * @throws NullPointerException If the node name is null.
+	 */
+	public static String nodeprep(String input) throws StringprepException, NullPointerException {
+		return nodeprep(input, false);
+	}
+
+	/**
+	 * Preps a node name according to the Stringprep profile defined in RFC3920.
+	 *
+	 * @param input the node name to prep.
+	 * @param allowUnassigned true if the node name may contain unassigned code points.
+	 *
+	 * @return the prepped node name.
+	 *
+	 * @throws StringprepException If the node name cannot be prepped with this profile.
+	 * @throws NullPointerException If the node name is null.
+	 */
+	public static String nodeprep(String input, boolean allowUnassigned)
+			throws StringprepException, NullPointerException {
+		if (input == null) {
+			throw new NullPointerException();
+		}
+
+		StringBuffer s = new StringBuffer(input);
+
+		if (!allowUnassigned && contains(s, RFC3454.A1)) {
+			throw new StringprepException(StringprepException.CONTAINS_UNASSIGNED);
+		}
+
+		filter(s, RFC3454.B1);
+		map(s, RFC3454.B2search, RFC3454.B2replace);
+
+		s = new StringBuffer(normalizeNFKC(s.toString()));
+
+		if (contains(s, RFC3454.C11) || contains(s, RFC3454.C12) || contains(s, RFC3454.C21) ||
+				contains(s, RFC3454.C22) || contains(s, RFC3454.C3) || contains(s, RFC3454.C4) ||
+				contains(s, RFC3454.C5) || contains(s, RFC3454.C6) || contains(s, RFC3454.C7) ||
+				contains(s, RFC3454.C8) || contains(s, RFC3920_NODEPREP_PROHIBIT)) {
+			// Table C.9 only contains code points > 0xFFFF which Java
+			// doesn't handle
+			throw new StringprepException(StringprepException.CONTAINS_PROHIBITED);
+		}
+
+		// Bidi handling
+		boolean r = contains(s, RFC3454.D1);
+		boolean l = contains(s, RFC3454.D2);
+
+		// RFC 3454, section 6, requirement 1: already handled above (table C.8)
+
+		// RFC 3454, section 6, requirement 2
+		if (r && l) {
+			throw new StringprepException(StringprepException.BIDI_BOTHRAL);
+		}
+
+		// RFC 3454, section 6, requirement 3
+		if (r) {
+			if (!contains(s.charAt(0), RFC3454.D1) || !contains(s.charAt(s.length() - 1), RFC3454.D1)) {
+				throw new StringprepException(StringprepException.BIDI_LTRAL);
+			}
+		}
+
+		return s.toString();
+	}
+
+	/**
+	 * Preps a resource name according to the Stringprep profile defined in RFC3920. Unassigned code points are not
+	 * allowed.
+	 *
+	 * @param input the resource name to prep.
+	 *
+	 * @return the prepped node name.
+	 *
+	 * @throws StringprepException If the resource name cannot be prepped with this profile.
+	 * @throws NullPointerException If the resource name is null.
+	 */
+	public static String resourceprep(String input) throws StringprepException, NullPointerException {
+		return resourceprep(input, false);
+	}
+
+	/**
+	 * Preps a resource name according to the Stringprep profile defined in RFC3920.
+	 *
+	 * @param input the resource name to prep.
+	 * @param allowUnassigned true if the resource name may contain unassigned code points.
+	 *
+	 * @return the prepped node name.
+	 *
+	 * @throws StringprepException If the resource name cannot be prepped with this profile.
+	 * @throws NullPointerException If the resource name is null.
+	 */
+	public static String resourceprep(String input, boolean allowUnassigned)
+			throws StringprepException, NullPointerException {
+		if (input == null) {
+			throw new NullPointerException();
+		}
+
+		StringBuffer s = new StringBuffer(input);
+
+		if (!allowUnassigned && contains(s, RFC3454.A1)) {
+			throw new StringprepException(StringprepException.CONTAINS_UNASSIGNED);
+		}
+
+		filter(s, RFC3454.B1);
+
+		s = new StringBuffer(normalizeNFKC(s.toString()));
+
+		if (contains(s, RFC3454.C12) || contains(s, RFC3454.C21) || contains(s, RFC3454.C22) ||
+				contains(s, RFC3454.C3) || contains(s, RFC3454.C4) || contains(s, RFC3454.C5) ||
+				contains(s, RFC3454.C6) || contains(s, RFC3454.C7) || contains(s, RFC3454.C8)) {
+			// Table C.9 only contains code points > 0xFFFF which Java
+			// doesn't handle
+			throw new StringprepException(StringprepException.CONTAINS_PROHIBITED);
+		}
+
+		// Bidi handling
+		boolean r = contains(s, RFC3454.D1);
+		boolean l = contains(s, RFC3454.D2);
+
+		// RFC 3454, section 6, requirement 1: already handled above (table C.8)
+
+		// RFC 3454, section 6, requirement 2
+		if (r && l) {
+			throw new StringprepException(StringprepException.BIDI_BOTHRAL);
+		}
+
+		// RFC 3454, section 6, requirement 3
+		if (r) {
+			if (!contains(s.charAt(0), RFC3454.D1) || !contains(s.charAt(s.length() - 1), RFC3454.D1)) {
+				throw new StringprepException(StringprepException.BIDI_LTRAL);
+			}
+		}
+
+		return s.toString();
+	}
+
+	/**
+	 * Rearranges characters in a stringbuffer in order to respect the canonical ordering properties.
+	 *
+	 * @param The StringBuffer to rearrange.
+	 */
+	static void canonicalOrdering(StringBuffer in) {
+		// the only change comparing to the original code, which failed for empty strings
+		if (in.length() == 0) {
+			return;
+		}
+		boolean isOrdered = false;
+
+		while (!isOrdered) {
+			isOrdered = true;
+
+			int lastCC = combiningClass(in.charAt(0));
+
+			for (int i = 0; i < in.length() - 1; i++) {
+				int nextCC = combiningClass(in.charAt(i + 1));
+				if (nextCC != 0 && lastCC > nextCC) {
+					for (int j = i + 1; j > 0; j--) {
+						if (combiningClass(in.charAt(j - 1)) <= nextCC) {
+							break;
+						}
+						char t = in.charAt(j);
+						in.setCharAt(j, in.charAt(j - 1));
+						in.setCharAt(j - 1, t);
+						isOrdered = false;
+					}
+					nextCC = lastCC;
+				}
+				lastCC = nextCC;
+			}
+		}
+	}
+
+	/**
+	 * Returns the combining class of a given character.
+	 *
+	 * @param c The character.
+	 *
+	 * @return The combining class.
+	 */
+	static int combiningClass(char c) {
+		int h = c >> 8;
+		int l = c & 0xff;
+
+		int i = CombiningClass.i[h];
+		if (i > -1) {
+			return CombiningClass.c[i][l];
+		} else {
+			return 0;
+		}
+	}
+
+	/**
+	 * Tries to compose two characters canonically.
+	 *
+	 * @param a First character.
+	 * @param b Second character.
+	 *
+	 * @return The composed character or -1 if no composition could be found.
+	 */
+	static int compose(char a, char b) {
+		int h = composeHangul(a, b);
+		if (h != -1) {
+			return h;
+		}
+
+		int ai = composeIndex(a);
+
+		if (ai >= Composition.singleFirstStart && ai < Composition.singleSecondStart) {
+			if (b == Composition.singleFirst[ai - Composition.singleFirstStart][0]) {
+				return Composition.singleFirst[ai - Composition.singleFirstStart][1];
+			} else {
+				return -1;
+			}
+		}
+
+		int bi = composeIndex(b);
+
+		if (bi >= Composition.singleSecondStart) {
+			if (a == Composition.singleSecond[bi - Composition.singleSecondStart][0]) {
+				return Composition.singleSecond[bi - Composition.singleSecondStart][1];
+			} else {
+				return -1;
+			}
+		}
+
+		if (ai >= 0 && ai < Composition.multiSecondStart && bi >= Composition.multiSecondStart &&
+				bi < Composition.singleFirstStart) {
+			char[] f = Composition.multiFirst[ai];
+
+			if (bi - Composition.multiSecondStart < f.length) {
+				char r = f[bi - Composition.multiSecondStart];
+				if (r == 0) {
+					return -1;
+				} else {
+					return r;
+				}
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Composes two hangul characters.
+	 *
+	 * @param a First character.
+	 * @param b Second character.
+	 *
+	 * @return Returns the composed character or -1 if the two characters cannot be composed.
+	 */
+	static int composeHangul(char a, char b) {
+		// 1. check to see if two current characters are L and V
+		int LIndex = a - NFKC.LBase;
+		if (0 <= LIndex && LIndex < NFKC.LCount) {
+			int VIndex = b - NFKC.VBase;
+			if (0 <= VIndex && VIndex < NFKC.VCount) {
+				// make syllable of form LV
+				return NFKC.SBase + (LIndex * NFKC.VCount + VIndex) * NFKC.TCount;
+			}
+		}
+
+		// 2. check to see if two current characters are LV and T
+		int SIndex = a - NFKC.SBase;
+		if (0 <= SIndex && SIndex < NFKC.SCount && (SIndex % NFKC.TCount) == 0) {
+			int TIndex = b - NFKC.TBase;
+			if (0 <= TIndex && TIndex <= NFKC.TCount) {
+				// make syllable of form LVT
+				return a + TIndex;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the index inside the composition table.
+	 *
+	 * @param a Character to look up.
+	 *
+	 * @return Index if found, -1 otherwise.
+	 */
+	static int composeIndex(char a) {
+		if (a >> 8 >= Composition.composePage.length) {
+			return -1;
+		}
+		int ap = Composition.composePage[a >> 8];
+		if (ap == -1) {
+			return -1;
+		}
+		return Composition.composeData[ap][a & 0xff];
+	}
+
+	/**
+	 * Returns the index inside the decomposition table, implemented using a binary search.
+	 *
+	 * @param c Character to look up.
+	 *
+	 * @return Index if found, -1 otherwise.
+	 */
+	static int decomposeIndex(char c) {
+		int start = 0;
+		int end = DecompositionKeys.k.length / 2;
+
+		while (true) {
+			int half = (start + end) / 2;
+			int code = DecompositionKeys.k[half * 2];
+
+			if (c == code) {
+				return DecompositionKeys.k[half * 2 + 1];
+			}
+			if (half == start) {
+				// Character not found
+				return -1;
+			} else if (c > code) {
+				start = half;
+			} else {
+				end = half;
+			}
+		}
+	}
+
+	/**
+	 * Decomposes a hangul character.
+	 *
+	 * @param s A character to decompose.
+	 *
+	 * @return A string containing the hangul decomposition of the input character. If no hangul decomposition can be
+	 * found, a string containing the character itself is returned.
+	 */
+	static String decomposeHangul(char s) {
+		int SIndex = s - NFKC.SBase;
+		if (SIndex < 0 || SIndex >= NFKC.SCount) {
+			return String.valueOf(s);
+		}
+		StringBuffer result = new StringBuffer();
+		int L = NFKC.LBase + SIndex / NFKC.NCount;
+		int V = NFKC.VBase + (SIndex % NFKC.NCount) / NFKC.TCount;
+		int T = NFKC.TBase + SIndex % NFKC.TCount;
+		result.append((char) L);
+		result.append((char) V);
+		if (T != NFKC.TBase) {
+			result.append((char) T);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Applies NFKC normalization to a string.
+	 *
+	 * @param in The string to normalize.
+	 *
+	 * @return An NFKC normalized string.
+	 */
+	public static String normalizeNFKC(String in) {
+		StringBuffer out = new StringBuffer();
+
+		for (int i = 0; i < in.length(); i++) {
+			char code = in.charAt(i);
+
+			// In Unicode 3.0, Hangul was defined as the block from U+AC00
+			// to U+D7A3, however, since Unicode 3.2 the block extends until
+			// U+D7AF. The decomposeHangul function only decomposes until
+			// U+D7A3. Should this be changed?
+			if (code >= 0xAC00 && code <= 0xD7AF) {
+				out.append(decomposeHangul(code));
+			} else {
+				int index = decomposeIndex(code);
+				if (index == -1) {
+					out.append(code);
+				} else {
+					out.append(DecompositionMappings.m[index]);
+				}
+			}
+		}
+
+		// Bring the stringbuffer into canonical order.
+		canonicalOrdering(out);
+
+		// Do the canonical composition.
+		int last_cc = 0;
+		int last_start = 0;
+
+		for (int i = 0; i < out.length(); i++) {
+			int cc = combiningClass(out.charAt(i));
+
+			if (i > 0 && (last_cc == 0 || last_cc != cc)) {
+				// Try to combine characters
+				char a = out.charAt(last_start);
+				char b = out.charAt(i);
+
+				int c = compose(a, b);
+
+				if (c != -1) {
+					out.setCharAt(last_start, (char) c);
+					out.deleteCharAt(i);
+					i--;
+
+					if (i == last_start) {
+						last_cc = 0;
+					} else {
+						last_cc = combiningClass(out.charAt(i - 1));
+					}
+					continue;
+				}
+			}
+
+			if (cc == 0) {
+				last_start = i;
+			}
+
+			last_cc = cc;
+		}
+
+		return out.toString();
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package gnu.inet.encoding;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class NFKCTest {
+
+	private static final char[][] RANGES = {{' ', '~'}, {'\u00a0', '\u00ff'}, {'\u0300', '\u036f'},
+											{'\u0590', '\u05ff'}, {'\u0900', '\u097f'}, {'\u1100', '\u11ff'},
+											{'\u1e00', '\u1fff'}, {'\u3040', '\u30ff'}, {'\u3300', '\u33ff'},
+											{'\uac00', '\ud7af'}, {'\ufb00', '\ufdff'}, {'\uff00', '\uffef'}};
+
+	@Test
+	public void testSingleCharacters() {
+		for (int c = 0; c <= 0xFFFF; c++) {
+			String input = String.valueOf((char) c);
+			assertEquals("Invalid normalization of U+" + Integer.toHexString(c), LegacyStringprep.normalizeNFKC(input),
+						 NFKC.normalizeNFKC(input));
+		}
+	}
+
+	@Test
+	public void testRandomStrings() {
+		Random random = new Random(15);
+		for (int i = 0; i < 100000; i++) {
+			char[] chars = new char[1 + random.nextInt(12)];
+			for (int j = 0; j < chars.length; j++) {
+				char[] range = RANGES[random.nextInt(RANGES.length)];
+				chars[j] = (char) (range[0] + random.nextInt(range[1] - range[0] + 1));
+			}
+			String input = new String(chars);
+			assertEquals("Invalid normalization of " + input, LegacyStringprep.normalizeNFKC(input), NFKC.normalizeNFKC(input));
+		}
+	}
+
+	@Test
+	public void testNormalizedInputIsReturned() {
+		String input = "Zürich東京";
+		assertTrue(NFKC.isNormalizedNFKC(input));
+		assertSame(input, NFKC.normalizeNFKC(input));
+		assertSame("", NFKC.normalizeNFKC(""));
+
+		assertFalse(NFKC.isNormalizedNFKC("Zürich"));
+		assertEquals("Zürich", NFKC.normalizeNFKC("Zürich"));
+		assertEquals("カ", NFKC.normalizeNFKC("ｶ"));
+		assertEquals("각", NFKC.normalizeNFKC("각"));
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package gnu.inet.encoding;
+
+import org.junit.Test;
+
+import java.nio.CharBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PunycodeTest {
+
+	// RFC3492 section 7.1 sample strings
+	private static final String[][] SAMPLES = {
+			{"ليهمابتكلموشعربي؟", "egbpdaj6bu4bxfgehfvwxn"},
+			{"他们为什么不说中文", "ihqwcrb4cv8a8dqg056pqjye"},
+			{"Pročprostěnemluvíčesky", "Proprostnemluvesky-uyb24dma41a"},
+			{"なぜみんな日本語を話してくれないのか", "n8jok5ay5dzabd5bym9f0cm5685rrjetr6pdxa"},
+			{"3年B組金八先生", "3B-ww4c5e180e575a65lsy2b"},
+			{"安室奈美恵-with-SUPER-MONKEYS", "-with-SUPER-MONKEYS-pc58ag80a8qai00g7n9n"},
+			{"-> $1.00 <-", "-> $1.00 <--"}};
+
+	@Test
+	public void testSamples() throws PunycodeException {
+		char[] buffer = new char[128];
+		for (String[] sample : SAMPLES) {
+			int length = Punycode.encode(sample[0], buffer, 0, buffer.length);
+			assertEquals(sample[1], new String(buffer, 0, length));
+			length = Punycode.decode(sample[1], buffer, 0, buffer.length);
+			assertEquals(sample[0], new String(buffer, 0, length));
+			int delimiter = sample[1].lastIndexOf('-') + 1;
+			String upperCase = sample[1].substring(0, delimiter) + sample[1].substring(delimiter).toUpperCase();
+			length = Punycode.decode(upperCase, buffer, 0, buffer.length);
+			assertEquals(sample[0], new String(buffer, 0, length));
+			assertEquals(sample[1], Punycode.encode(sample[0]));
+		}
+	}
+
+	@Test
+	public void testParityWithStringImplementation() throws PunycodeException {
+		Random random = new Random(3492);
+		char[] buffer = new char[1024];
+		for (int i = 0; i < 10000; i++) {
+			StringBuilder sb = new StringBuilder();
+			int length = random.nextInt(64);
+			for (int j = 0; j < length; j++) {
+				sb.append(random.nextInt(3) == 0 ? (char) ('a' + random.nextInt(26)) : (char) (0x80 + random.nextInt(0x3000)));
+			}
+			String input = sb.toString();
+			String encoded = Punycode.encode(input);
+
+			int result = Punycode.encode(input, buffer, 7, buffer.length);
+			assertEquals(encoded, new String(buffer, 7, result));
+			result = Punycode.decode(encoded, buffer, 7, buffer.length);
+			if (encoded.length() > Punycode.MAX_DECODE_LENGTH) {
+				assertEquals(Punycode.ERROR_BAD_INPUT, result);
+			} else {
+				assertEquals(input, new String(buffer, 7, result));
+			}
+			assertEquals(input, Punycode.decode(encoded));
+		}
+	}
+
+	@Test
+	public void testCharBuffer() {
+		CharBuffer buffer = CharBuffer.allocate(64);
+		buffer.put("xn--");
+		assertEquals(9, Punycode.encode("bücher", buffer));
+		assertEquals("xn--bcher-kva", buffer.flip().toString());
+
+		buffer.clear();
+		assertEquals(6, Punycode.decode(CharBuffer.wrap("bcher-kva".toCharArray()), buffer));
+		assertEquals(6, buffer.position());
+		assertEquals("bücher", buffer.flip().toString());
+	}
+
+	@Test
+	public void testErrors() {
+		char[] buffer = new char[16];
+		assertEquals(Punycode.ERROR_BUFFER_TOO_SMALL, Punycode.encode("bücher", buffer, 0, 5));
+		assertEquals(Punycode.ERROR_BUFFER_TOO_SMALL, Punycode.encode("bücher", buffer, 0, 8));
+		assertEquals(9, Punycode.encode("bücher", buffer, 0, 9));
+		assertEquals(Punycode.ERROR_BUFFER_TOO_SMALL, Punycode.decode("bcher-kva", buffer, 0, 5));
+		assertEquals(Punycode.ERROR_BAD_INPUT, Punycode.decode("bcher-kv_", buffer, 0, buffer.length));
+		assertEquals(Punycode.ERROR_BAD_INPUT, Punycode.decode("bcher-k", buffer, 0, buffer.length));
+		assertEquals(Punycode.ERROR_BAD_INPUT, Punycode.decode("bü-kva", buffer, 0, buffer.length));
+		assertEquals(Punycode.ERROR_OVERFLOW, Punycode.decode("99999999999", buffer, 0, buffer.length));
+		StringBuilder tooLong = new StringBuilder("a-");
+		while (tooLong.length() <= Punycode.MAX_DECODE_LENGTH) {
+			tooLong.append('a');
+		}
+		assertEquals(Punycode.ERROR_BAD_INPUT, Punycode.decode(tooLong, new char[128], 0, 128));
+
+		CharBuffer charBuffer = CharBuffer.allocate(4);
+		assertEquals(Punycode.ERROR_BUFFER_TOO_SMALL, Punycode.encode("bücher", charBuffer));
+		assertEquals(0, charBuffer.position());
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package gnu.inet.encoding;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RFC3454PropertiesTest {
+
+	@Test
+	public void testPropertiesMatchTables() {
+		for (int i = 0; i <= 0xFFFF; i++) {
+			char c = (char) i;
+			assertProperty(c, RFC3454Properties.UNASSIGNED, contains(c, RFC3454.A1));
+			assertProperty(c, RFC3454Properties.MAP_TO_NOTHING, contains(c, RFC3454.B1));
+			assertProperty(c, RFC3454Properties.C11, contains(c, RFC3454.C11));
+			assertProperty(c, RFC3454Properties.C12, contains(c, RFC3454.C12));
+			assertProperty(c, RFC3454Properties.C21, contains(c, RFC3454.C21));
+			assertProperty(c, RFC3454Properties.C22, contains(c, RFC3454.C22));
+			assertProperty(c, RFC3454Properties.C3, contains(c, RFC3454.C3));
+			assertProperty(c, RFC3454Properties.C4, contains(c, RFC3454.C4));
+			assertProperty(c, RFC3454Properties.C5, contains(c, RFC3454.C5));
+			assertProperty(c, RFC3454Properties.C6, contains(c, RFC3454.C6));
+			assertProperty(c, RFC3454Properties.C7, contains(c, RFC3454.C7));
+			assertProperty(c, RFC3454Properties.C8, contains(c, RFC3454.C8));
+			assertProperty(c, RFC3454Properties.RAL, contains(c, RFC3454.D1));
+			assertProperty(c, RFC3454Properties.L, contains(c, RFC3454.D2));
+			assertProperty(c, RFC3454Properties.RFC3920_NODEPREP_PROHIBITED,
+						   contains(c, Stringprep.RFC3920_NODEPREP_PROHIBIT));
+		}
+	}
+
+	private static void assertProperty(char c, int property, boolean expected) {
+		assertEquals("Invalid property " + property + " for U+" + Integer.toHexString(c), expected,
+					 RFC3454Properties.is(c, property));
+	}
+
+	private static boolean contains(char c, char[] table) {
+		for (char t : table) {
+			if (t == c) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean contains(char c, char[][] table) {
+		for (char[] range : table) {
+			if ((range.length == 1 && range[0] == c) || (range.length == 2 && range[0] <= c && c <= range[1])) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package gnu.inet.encoding;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class StringprepTest {
+
+	@Test
+	public void testAsciiFastPathMatchesFullPath() {
+		for (String input : createAsciiCorpus()) {
+			assertTrue(Stringprep.isPrintableAscii(input));
+			assertSameResult(input, prep(() -> Stringprep.nameprepFull(input, false)),
+							 prep(() -> Stringprep.asciiNameprep(input)));
+			assertSameResult(input, prep(() -> Stringprep.nodeprepFull(input, false)),
+							 prep(() -> Stringprep.asciiNodeprep(input)));
+			assertSameResult(input, prep(() -> Stringprep.resourceprepFull(input, false)),
+							 prep(() -> Stringprep.asciiResourceprep(input)));
+		}
+	}
+
+	@Test
+	public void testMatchesLegacyImplementation() {
+		char[][] ranges = {{' ', '~'}, {'\u0000', '\u00FF'}, {'\u0100', '\u024F'}, {'\u0300', '\u036F'},
+						   {'\u0370', '\u03FF'}, {'\u0590', '\u06FF'}, {'\u1E00', '\u1FFF'},
+						   {'\u2000', '\u206F'}, {'\u3000', '\u30FF'}, {'\uAC00', '\uD7AF'},
+						   {'\uFB00', '\uFDFF'}, {'\uFE00', '\uFFFF'}};
+		Random random = new Random(3920);
+		for (int i = 0; i < 50000; i++) {
+			char[] chars = new char[1 + random.nextInt(12)];
+			int scripts = 1 + random.nextInt(2);
+			int first = random.nextInt(ranges.length);
+			for (int j = 0; j < chars.length; j++) {
+				char[] range = ranges[(scripts == 1) ? first : random.nextInt(ranges.length)];
+				chars[j] = (char) (range[0] + random.nextInt(range[1] - range[0] + 1));
+			}
+			String input = new String(chars);
+			assertSameResult(input, prep(() -> LegacyStringprep.nameprep(input)), prep(() -> Stringprep.nameprep(input)));
+			assertSameResult(input, prep(() -> LegacyStringprep.nodeprep(input)), prep(() -> Stringprep.nodeprep(input)));
+			assertSameResult(input, prep(() -> LegacyStringprep.resourceprep(input)),
+							 prep(() -> Stringprep.resourceprep(input)));
+		}
+	}
+
+	@Test
+	public void testAsciiFastPathReturnsSameInstance() throws StringprepException {
+		String domain = "example.com";
+		String localpart = "user.name-123";
+
+		assertSame(domain, Stringprep.nameprep(domain));
+		assertSame(localpart, Stringprep.nodeprep(localpart));
+		assertEquals("user", Stringprep.nodeprep("USER"));
+		assertEquals("example.com", Stringprep.nameprep("Example.COM"));
+	}
+
+	@Test
+	public void testNonAsciiInput() throws StringprepException {
+		assertFalse(Stringprep.isPrintableAscii("café"));
+		assertFalse(Stringprep.isPrintableAscii("tab\tinside"));
+		assertEquals("café", Stringprep.nodeprep("CAFÉ"));
+		assertEquals("strasse", Stringprep.nameprep("Straße"));
+	}
+
+	@Test(expected = StringprepException.class)
+	public void testNodeprepProhibited() throws StringprepException {
+		Stringprep.nodeprep("user name");
+	}
+
+	private static List<String> createAsciiCorpus() {
+		List<String> corpus = new ArrayList<>();
+		for (char c = ' '; c <= '~'; c++) {
+			corpus.add(String.valueOf(c));
+			for (char d = ' '; d <= '~'; d++) {
+				corpus.add(new String(new char[]{c, d}));
+			}
+		}
+		corpus.add("user@example.com/Resource");
+		corpus.add("-101100311719181%chat.facebook.com");
+		corpus.add("User_Local_Part_12345");
+		corpus.add("JID_Domain_Part.Example.COM");
+
+		Random random = new Random(3454);
+		for (int i = 0; i < 10000; i++) {
+			char[] chars = new char[1 + random.nextInt(40)];
+			for (int j = 0; j < chars.length; j++) {
+				chars[j] = (char) (' ' + random.nextInt('\u007F' - ' '));
+			}
+			corpus.add(new String(chars));
+		}
+		return corpus;
+	}
+
+	private static void assertSameResult(String input, String expected, String actual) {
+		assertEquals("Different result for input: '" + input + "'", expected, actual);
+	}
+
+	private static String prep(PrepFunction function) {
+		try {
+			return function.prep();
+		} catch (StringprepException ex) {
+			return "Exception: " + ex.getMessage();
+		}
+	}
+
+	private interface PrepFunction {
+
+		String prep() throws StringprepException;
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package gnu.inet.encoding;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Generates the binary Unicode data resources loaded by {@link UnicodeTables} from the generated Java tables
+ * (<code>RFC3454</code>, <code>CombiningClass</code>, <code>Composition</code>, <code>DecompositionKeys</code> and
+ * <code>DecompositionMappings</code>). NFKC lookups needed to compute the quick check properties are done by
+ * {@link LegacyStringprep}, so generation does not depend on the resources being generated.
+ * <br>
+ * Run with: <code>java gnu.inet.encoding.UnicodeTablesGenerator src/main/resources/gnu/inet/encoding</code>
+ */
+public class UnicodeTablesGenerator {
+
+	private static final int PAGES = 0x10000 >> UnicodeTables.PAGE_SHIFT;
+
+	public static void main(String[] args) throws IOException {
+		Path dir = Paths.get(args.length > 0 ? args[0] : "src/main/resources/gnu/inet/encoding");
+		Files.createDirectories(dir);
+		Files.write(dir.resolve(UnicodeTables.RFC3454_RESOURCE), generateRFC3454());
+		Files.write(dir.resolve(UnicodeTables.NFKC_RESOURCE), generateNFKC());
+	}
+
+	static byte[] generateNFKC() throws IOException {
+		char[] combiningClass = new char[0x10000];
+		char[] composition = new char[0x10000];
+		for (int c = 0; c <= 0xFFFF; c++) {
+			combiningClass[c] = (char) LegacyStringprep.combiningClass((char) c);
+			composition[c] = (char) (LegacyStringprep.composeIndex((char) c) + 1);
+		}
+		char[] decomposition = new char[0x10000];
+		for (int i = 0; i < DecompositionKeys.k.length; i += 2) {
+			decomposition[DecompositionKeys.k[i]] = (char) (DecompositionKeys.k[i + 1] + 1);
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		writeHeader(out);
+		writePaged(out, combiningClass);
+		writePaged(out, decomposition);
+		writeStrings(out, DecompositionMappings.m);
+		writePaged(out, composition);
+		writeCharArrays(out, Composition.multiFirst);
+		writeCharArrays(out, Composition.singleFirst);
+		writeCharArrays(out, Composition.singleSecond);
+		out.writeInt(Composition.multiSecondStart);
+		out.writeInt(Composition.singleFirstStart);
+		out.writeInt(Composition.singleSecondStart);
+		writeLongs(out, quickCheckYes());
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	static byte[] generateRFC3454() throws IOException {
+		char[] flags = new char[0x10000];
+		set(flags, RFC3454.A1, RFC3454Properties.UNASSIGNED);
+		set(flags, RFC3454.B1, RFC3454Properties.MAP_TO_NOTHING);
+		set(flags, RFC3454.C11, RFC3454Properties.C11);
+		set(flags, RFC3454.C12, RFC3454Properties.C12);
+		set(flags, RFC3454.C21, RFC3454Properties.C21);
+		set(flags, RFC3454.C22, RFC3454Properties.C22);
+		set(flags, RFC3454.C3, RFC3454Properties.C3);
+		set(flags, RFC3454.C4, RFC3454Properties.C4);
+		set(flags, RFC3454.C5, RFC3454Properties.C5);
+		set(flags, RFC3454.C6, RFC3454Properties.C6);
+		set(flags, RFC3454.C7, RFC3454Properties.C7);
+		set(flags, RFC3454.C8, RFC3454Properties.C8);
+		set(flags, RFC3454.D1, RFC3454Properties.RAL);
+		set(flags, RFC3454.D2, RFC3454Properties.L);
+		set(flags, LegacyStringprep.RFC3920_NODEPREP_PROHIBIT, RFC3454Properties.RFC3920_NODEPREP_PROHIBITED);
+		set(flags, RFC3454.B2search, RFC3454Properties.CASE_FOLDING);
+
+		// position of the mapping in B.2 table increased by one, 0 means no mapping
+		char[] caseFolding = new char[0x10000];
+		for (int i = 0; i < RFC3454.B2search.length; i++) {
+			caseFolding[RFC3454.B2search[i]] = (char) (i + 1);
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		writeHeader(out);
+		writePaged(out, flags);
+		writePaged(out, caseFolding);
+		writeStrings(out, RFC3454.B2replace);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Finds characters with NFKC_QC=Yes property which are also starters, can't be decomposed and can't be combined
+	 * with a preceding character.
+	 */
+	private static long[] quickCheckYes() {
+		boolean[] second = new boolean[0x10000];
+		for (char[] pair : Composition.singleFirst) {
+			second[pair[0]] = true;
+		}
+		for (int c = 0; c <= 0xFFFF; c++) {
+			int index = LegacyStringprep.composeIndex((char) c);
+			if ((index >= Composition.multiSecondStart && index < Composition.singleFirstStart) ||
+					index >= Composition.singleSecondStart) {
+				second[c] = true;
+			}
+		}
+		for (int c = NFKC.VBase; c < NFKC.VBase + NFKC.VCount; c++) {
+			second[c] = true;
+		}
+		for (int c = NFKC.TBase; c <= NFKC.TBase + NFKC.TCount; c++) {
+			second[c] = true;
+		}
+
+		long[] quickCheckYes = new long[0x10000 >> 6];
+		for (int c = 0; c <= 0xFFFF; c++) {
+			char code = (char) c;
+			if (second[c] || LegacyStringprep.combiningClass(code) != 0) {
+				continue;
+			}
+			int index = (code >= 0xAC00 && code <= 0xD7AF) ? -1 : LegacyStringprep.decomposeIndex(code);
+			if (index != -1) {
+				// Precomposed character is stable only if its decomposition starts with a starter which can't be
+				// combined with a preceding character and it composes back to the same character.
+				char first = DecompositionMappings.m[index].charAt(0);
+				String single = String.valueOf(code);
+				if (second[first] || LegacyStringprep.combiningClass(first) != 0 ||
+						!single.equals(LegacyStringprep.normalizeNFKC(single))) {
+					continue;
+				}
+			}
+			quickCheckYes[c >> 6] |= 1L << c;
+		}
+		return quickCheckYes;
+	}
+
+	private static void set(char[] flags, char[] table, int flag) {
+		for (char c : table) {
+			flags[c] |= flag;
+		}
+	}
+
+	private static void set(char[] flags, char[][] table, int flag) {
+		for (char[] range : table) {
+			if (range.length == 1) {
+				flags[range[0]] |= flag;
+			} else if (range.length == 2) {
+				for (int c = range[0]; c <= range[1]; c++) {
+					flags[c] |= flag;
+				}
+			}
+		}
+	}
+
+	private static void writeCharArrays(DataOutputStream out, char[][] arrays) throws IOException {
+		out.writeInt(arrays.length);
+		for (char[] array : arrays) {
+			writeChars(out, array);
+		}
+	}
+
+	private static void writeChars(DataOutputStream out, char[] chars) throws IOException {
+		out.writeInt(chars.length);
+		for (char c : chars) {
+			out.writeChar(c);
+		}
+	}
+
+	private static void writeHeader(DataOutputStream out) throws IOException {
+		out.writeInt(UnicodeTables.MAGIC);
+		out.writeInt(UnicodeTables.VERSION);
+	}
+
+	private static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+		out.writeInt(values.length);
+		for (long value : values) {
+			out.writeLong(value);
+		}
+	}
+
+	/**
+	 * Splits the table into pages, shares identical pages and writes the page index followed by the page data.
+	 */
+	private static void writePaged(DataOutputStream out, char[] table) throws IOException {
+		int pageSize = 1 << UnicodeTables.PAGE_SHIFT;
+		Map<String, Integer> offsets = new HashMap<>();
+		StringBuilder unique = new StringBuilder();
+
+		out.writeInt(PAGES);
+		for (int page = 0; page < PAGES; page++) {
+			String content = new String(table, page << UnicodeTables.PAGE_SHIFT, pageSize);
+			Integer offset = offsets.get(content);
+			if (offset == null) {
+				offset = unique.length();
+				offsets.put(content, offset);
+				unique.append(content);
+			}
+			out.writeInt(offset);
+		}
+		writeChars(out, unique.toString().toCharArray());
+	}
+
+	private static void writeStrings(DataOutputStream out, String[] strings) throws IOException {
+		out.writeInt(strings.length);
+		for (String string : strings) {
+			writeChars(out, string.toCharArray());
+		}
+	}
+}
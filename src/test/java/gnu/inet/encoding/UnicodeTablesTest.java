@@ -0,0 +1,65 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package gnu.inet.encoding;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+public class UnicodeTablesTest {
+
+	@Test
+	public void testNFKCResourceUpToDate() throws IOException {
+		assertArrayEquals("Regenerate resources with UnicodeTablesGenerator",
+						  UnicodeTablesGenerator.generateNFKC(), read(UnicodeTables.NFKC_RESOURCE));
+	}
+
+	@Test
+	public void testRFC3454ResourceUpToDate() throws IOException {
+		assertArrayEquals("Regenerate resources with UnicodeTablesGenerator",
+						  UnicodeTablesGenerator.generateRFC3454(), read(UnicodeTables.RFC3454_RESOURCE));
+	}
+
+	@Test
+	public void testLookupsMatchGeneratedTables() {
+		for (int c = 0; c <= 0xFFFF; c++) {
+			char code = (char) c;
+			assertEquals(LegacyStringprep.combiningClass(code), NFKC.combiningClass(code));
+			assertEquals(LegacyStringprep.decomposeIndex(code), NFKC.decomposeIndex(code));
+			assertEquals(LegacyStringprep.composeIndex(code), NFKC.composeIndex(code));
+		}
+		String composable = "AaEeOoUù̧́̈각";
+		for (int i = 0; i < composable.length(); i++) {
+			for (int j = 0; j < composable.length(); j++) {
+				char a = composable.charAt(i);
+				char b = composable.charAt(j);
+				assertEquals(LegacyStringprep.compose(a, b), NFKC.compose(a, b));
+			}
+		}
+	}
+
+	private static byte[] read(String resource) throws IOException {
+		try (InputStream in = UnicodeTables.class.getResourceAsStream(resource)) {
+			assertNotNull("Missing resource " + resource, in);
+			return in.readAllBytes();
+		}
+	}
+}
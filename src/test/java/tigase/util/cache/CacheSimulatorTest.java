@@ -0,0 +1,65 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.cache;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CacheSimulatorTest {
+
+	@Test
+	public void testZipfTraceIsReproducible() {
+		Object[] first = CacheSimulator.zipfTrace(1000, 0.9, 10000, 0.2, 1);
+		Object[] second = CacheSimulator.zipfTrace(1000, 0.9, 10000, 0.2, 1);
+		assertTrue(Arrays.equals(first, second));
+		long unique = Arrays.stream(first).filter(key -> ((Long) key) >= 1000).count();
+		assertTrue(unique > 1500 && unique < 2500);
+	}
+
+	@Test
+	public void testFileTrace() throws IOException {
+		File file = File.createTempFile("trace", ".txt");
+		try {
+			Files.write(file.toPath(), "a\nb\n\na\nc\na\n".getBytes(StandardCharsets.UTF_8));
+			Object[] trace = CacheSimulator.loadTrace(file.getPath());
+			assertArrayEquals(new Object[]{"a", "b", "a", "c", "a"}, trace);
+			// a is found twice out of 5 requests
+			assertEquals(0.4, CacheSimulator.simulate("lru", 10, trace), 0.0001);
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testTinyLFUBeatsLRUWithScanNoise() {
+		Object[] trace = CacheSimulator.zipfTrace(10000, 0.9, 200000, 0.3, 42);
+		for (String[] pair : new String[][]{{"lru", "lru-tinylfu"}, {"concurrent-lru", "concurrent-lru-tinylfu"},
+											{"clock", "clock-tinylfu"}}) {
+			double plain = CacheSimulator.simulate(pair[0], 500, trace);
+			double admitted = CacheSimulator.simulate(pair[1], 500, trace);
+			assertTrue(pair[1] + ": " + admitted + " vs " + pair[0] + ": " + plain, admitted > plain);
+		}
+	}
+}
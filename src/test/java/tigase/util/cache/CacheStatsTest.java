@@ -0,0 +1,163 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.cache;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class CacheStatsTest {
+
+	@Test
+	public void testCounter() {
+		ConcurrentStatsCounter counter = new ConcurrentStatsCounter();
+		counter.recordHits(3);
+		counter.recordMisses(1);
+		counter.recordEviction();
+		counter.recordExpiration();
+		counter.recordExpiration();
+		counter.recordLoadSuccess(100);
+		counter.recordLoadFailure(300);
+
+		CacheStats stats = counter.snapshot();
+		assertEquals(new CacheStats(3, 1, 1, 2, 1, 1, 400), stats);
+		assertEquals(4, stats.getRequestCount());
+		assertEquals(0.75, stats.getHitRate(), 0.0001);
+		assertEquals(200.0, stats.getAverageLoadTime(), 0.0001);
+
+		counter.recordHits(2);
+		assertEquals(new CacheStats(2, 0, 0, 0, 0, 0, 0), counter.snapshot().minus(stats));
+
+		counter.reset();
+		assertEquals(CacheStats.EMPTY, counter.snapshot());
+		assertEquals(1.0, CacheStats.EMPTY.getHitRate(), 0.0001);
+	}
+
+	@Test
+	public void testDisabled() {
+		StatsCounter counter = StatsCounter.disabled();
+		counter.recordHits(1);
+		counter.recordEviction();
+		assertEquals(CacheStats.EMPTY, counter.snapshot());
+
+		LRUConcurrentCache<String, String> cache = new LRUConcurrentCache<>(10);
+		cache.setStatsCounter(counter);
+		cache.get("missing");
+		assertEquals(CacheStats.EMPTY, cache.getStats());
+	}
+
+	@Test
+	public void testToMap() {
+		Map<String, Number> map = new CacheStats(1, 3, 0, 0, 0, 0, 0).toMap("dns/ip-cache");
+		assertEquals(1L, map.get("dns/ip-cache/" + CacheStats.HITS));
+		assertEquals(3L, map.get("dns/ip-cache/" + CacheStats.MISSES));
+		assertEquals(0.25, map.get("dns/ip-cache/" + CacheStats.HIT_RATE).doubleValue(), 0.0001);
+		assertEquals(9, map.size());
+		for (String name : map.keySet()) {
+			assertTrue(name, name.startsWith("dns/ip-cache/"));
+		}
+	}
+
+	@Test
+	public void testSizedCache() {
+		SizedCache<Integer, Integer> cache = new SizedCache<>(2);
+		cache.put(1, 1);
+		cache.put(2, 2);
+		cache.put(3, 3);
+		cache.get(3);
+		cache.get(1);
+		assertEquals(new CacheStats(1, 1, 1, 0, 0, 0, 0), cache.getStats());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testDeserializedSizedCache() throws Exception {
+		SizedCache<Integer, Integer> cache = new SizedCache<>(2);
+		cache.put(1, 1);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(cache);
+		}
+		SizedCache<Integer, Integer> copy;
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			copy = (SizedCache<Integer, Integer>) in.readObject();
+		}
+
+		assertEquals(Integer.valueOf(1), copy.get(1));
+		assertNull(copy.get(2));
+		assertEquals(new CacheStats(1, 1, 0, 0, 0, 0, 0), copy.getStats());
+	}
+
+	@Test
+	public void testSimpleCache() throws InterruptedException {
+		SimpleCache<Integer, Integer> cache = new SimpleCache<>(2, 20);
+		cache.put(1, 1);
+		cache.put(1, 1);
+		cache.put(2, 2);
+		cache.put(3, 3);
+		assertEquals(Integer.valueOf(3), cache.get(3));
+		assertNull(cache.get(1));
+		Thread.sleep(50);
+		assertNull(cache.get(3));
+		cache.removeOld();
+		assertEquals(0, cache.size());
+		assertEquals(new CacheStats(1, 2, 1, 2, 0, 0, 0), cache.getStats());
+	}
+
+	@Test
+	public void testConcurrentCaches() {
+		ConcurrentLRUCache<Integer, Integer> lru = new ConcurrentLRUCache<>(10);
+		ConcurrentClockCache<Integer, Integer> clock = new ConcurrentClockCache<>(10);
+		for (int i = 0; i < 20; i++) {
+			lru.put(i, i);
+			clock.put(i, i);
+		}
+		for (int i = 0; i < 20; i++) {
+			lru.get(i);
+			clock.get(i);
+		}
+		assertEquals(new CacheStats(10, 10, 10, 0, 0, 0, 0), lru.getStats());
+		CacheStats stats = clock.getStats();
+		assertEquals(20, stats.getRequestCount());
+		assertEquals(10, stats.getEvictionCount());
+		assertEquals(clock.getHits(), stats.getHitCount());
+	}
+
+	@Test
+	public void testExpiringCache() {
+		AtomicLong time = new AtomicLong(0);
+		ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(2, 10_000, time::get);
+		cache.put(1, 1);
+		cache.put(2, 2, 100_000);
+		cache.put(3, 3, 100_000);
+		assertTrue(cache.containsKey(3));
+		assertNull(cache.get(1));
+		time.set(20_000);
+		assertEquals(Integer.valueOf(2), cache.get(2));
+		time.set(200_000);
+		assertEquals(0, cache.size());
+		assertEquals(new CacheStats(1, 1, 1, 2, 0, 0, 0), cache.getStats());
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentClockCacheTest {
+
+	@Test
+	public void testPutIfAbsentReturnsCanonicalInstance() {
+		ConcurrentClockCache<String, String> cache = new ConcurrentClockCache<>(10);
+		String first = new String("value");
+		String second = new String("value");
+
+		assertSame(first, cache.putIfAbsent("key", first));
+		assertSame(first, cache.putIfAbsent("key", second));
+		assertSame(first, cache.get("key"));
+		assertNull(cache.get("missing"));
+
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testEviction() {
+		ConcurrentClockCache<Integer, Integer> cache = new ConcurrentClockCache<>(100);
+		for (int i = 0; i < 1000; i++) {
+			cache.put(i, i);
+		}
+
+		assertTrue(cache.size() <= cache.limit());
+		assertEquals(900, cache.getEvictions());
+	}
+
+	@Test
+	public void testReferencedEntriesSurvive() {
+		ConcurrentClockCache<Integer, Integer> cache = new ConcurrentClockCache<>(10);
+		for (int i = 0; i < 10; i++) {
+			cache.put(i, i);
+		}
+		for (int i = 10; i < 100; i++) {
+			assertNotNull(cache.get(0));
+			cache.put(i, i);
+		}
+
+		assertEquals(Integer.valueOf(0), cache.get(0));
+		assertTrue(cache.size() <= cache.limit());
+	}
+
+	@Test
+	public void testRemoveAndClear() {
+		ConcurrentClockCache<Integer, Integer> cache = new ConcurrentClockCache<>(10);
+		for (int i = 0; i < 1000; i++) {
+			cache.put(i, i);
+			assertEquals(Integer.valueOf(i), cache.remove(i));
+		}
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getEvictions());
+
+		cache.put(1, 1);
+		cache.clear();
+		assertFalse(cache.containsKey(1));
+	}
+}
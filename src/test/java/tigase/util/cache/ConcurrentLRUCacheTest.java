@@ -0,0 +1,140 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentLRUCacheTest {
+
+	@Test
+	public void testSameEvictionOrderAsLRUConcurrentCache() {
+		ConcurrentLRUCache<Integer, Integer> cache = new ConcurrentLRUCache<>(50);
+		LRUConcurrentCache<Integer, Integer> reference = new LRUConcurrentCache<>(50);
+		Random random = new Random(21);
+		for (int i = 0; i < 100000; i++) {
+			Integer key = random.nextInt(200);
+			switch (random.nextInt(10)) {
+				case 0:
+					assertEquals(reference.remove(key), cache.remove(key));
+					break;
+				case 1:
+				case 2:
+				case 3:
+					reference.put(key, i);
+					cache.put(key, i);
+					break;
+				default:
+					assertEquals(reference.get(key), cache.get(key));
+					break;
+			}
+			assertEquals(reference.size(), cache.size());
+		}
+		for (int key = 0; key < 200; key++) {
+			assertEquals(reference.containsKey(key), cache.containsKey(key));
+		}
+	}
+
+	@Test
+	public void testRecentlyReadEntriesSurvive() {
+		ConcurrentLRUCache<Integer, Integer> cache = new ConcurrentLRUCache<>(10);
+		for (int i = 0; i < 100; i++) {
+			cache.put(i, i);
+			assertEquals(Integer.valueOf(0), cache.get(0));
+		}
+		assertEquals(10, cache.size());
+		assertTrue(cache.containsKey(0));
+		assertFalse(cache.containsKey(89));
+	}
+
+	@Test
+	public void testRemoveAndClear() {
+		ConcurrentLRUCache<Integer, Integer> cache = new ConcurrentLRUCache<>(10);
+		for (int i = 0; i < 1000; i++) {
+			cache.put(i, i);
+			assertEquals(Integer.valueOf(i), cache.remove(i));
+		}
+		assertEquals(0, cache.size());
+
+		for (int i = 0; i < 10; i++) {
+			cache.put(i, i);
+			cache.get(i);
+		}
+		cache.clear();
+		assertFalse(cache.containsKey(1));
+		assertEquals(0, cache.size());
+		for (int i = 0; i < 20; i++) {
+			cache.put(i, i);
+		}
+		assertEquals(10, cache.size());
+		assertTrue(cache.containsKey(19));
+	}
+
+	@Test
+	public void testConcurrentAccess() throws InterruptedException {
+		ConcurrentLRUCache<Integer, Integer> cache = new ConcurrentLRUCache<>(100);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			final int seed = t;
+			Thread thread = new Thread(() -> {
+				Random random = new Random(seed);
+				try {
+					for (int i = 0; i < 100000; i++) {
+						Integer key = random.nextInt(500);
+						int op = random.nextInt(10);
+						if (op == 0) {
+							cache.remove(key);
+						} else if (op < 3) {
+							cache.put(key, key);
+						} else {
+							Integer value = cache.get(key);
+							if (value != null && !value.equals(key)) {
+								throw new AssertionError("Invalid value " + value + " for " + key);
+							}
+						}
+					}
+				} catch (Throwable ex) {
+					failure.set(ex);
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertNull(failure.get());
+		assertTrue(cache.size() <= cache.limit());
+
+		// LRU list is still consistent with the map
+		for (int i = 1000; i < 1200; i++) {
+			cache.put(i, i);
+		}
+		assertEquals(100, cache.size());
+		for (int i = 1100; i < 1200; i++) {
+			assertTrue(cache.containsKey(i));
+		}
+	}
+}
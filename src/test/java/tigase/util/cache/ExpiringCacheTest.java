@@ -0,0 +1,153 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.cache;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class ExpiringCacheTest {
+
+	private final AtomicLong clock = new AtomicLong(1_000_000);
+
+	@Test
+	public void testPerEntryTtl() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(10, 60_000, clock::get);
+		cache.put("default", "1");
+		cache.put("short", "2", 5_000);
+		cache.put("long", "3", 3_600_000);
+		assertNull(cache.put("none", "4", 0));
+		assertNull(cache.get("none"));
+
+		clock.addAndGet(4_999);
+		assertEquals("2", cache.get("short"));
+		clock.addAndGet(1);
+		assertNull(cache.get("short"));
+		assertEquals("1", cache.get("default"));
+
+		clock.addAndGet(55_000);
+		assertNull(cache.get("default"));
+		assertFalse(cache.containsKey("default"));
+		assertEquals("3", cache.get("long"));
+
+		clock.addAndGet(3_600_000);
+		assertNull(cache.get("long"));
+		assertTrue(cache.isEmpty());
+	}
+
+	@Test
+	public void testExpiredEntriesAreRemovedWithoutAccess() {
+		ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(1000, 60_000, clock::get);
+		for (int i = 0; i < 500; i++) {
+			cache.put(i, i, 10_000);
+		}
+		for (int i = 500; i < 1000; i++) {
+			cache.put(i, i, 7_200_000);
+		}
+		assertEquals(1000, cache.size());
+
+		// wheel resolution is about a second
+		clock.addAndGet(12_000);
+		assertEquals(500, cache.size());
+		clock.addAndGet(7_200_000);
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testReplaceAndRemove() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(10, 60_000, clock::get);
+		cache.put("key", "old", 1_000);
+		assertEquals("old", cache.put("key", "new", 100_000));
+		clock.addAndGet(50_000);
+		// the first entry must not remove the replacement when its bucket expires
+		assertEquals("new", cache.get("key"));
+		assertEquals("new", cache.remove("key"));
+		assertNull(cache.remove("key"));
+		assertEquals(0, cache.size());
+
+		cache.put("key", "value", 1_000);
+		clock.addAndGet(2_000);
+		assertNull(cache.put("key", "value"));
+	}
+
+	@Test
+	public void testSizeLimit() {
+		ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(3, 60_000, clock::get);
+		cache.put(1, 1);
+		cache.put(2, 2);
+		cache.put(3, 3);
+		cache.get(1);
+		cache.put(4, 4);
+
+		assertEquals(3, cache.size());
+		assertNull(cache.get(2));
+		assertEquals(Integer.valueOf(1), cache.get(1));
+
+		Map<Integer, Integer> expected = new HashMap<>();
+		expected.put(1, 1);
+		expected.put(3, 3);
+		expected.put(4, 4);
+		assertEquals(expected, cache);
+
+		// evicted entry must be unlinked from the wheel as well
+		clock.addAndGet(120_000);
+		assertEquals(0, cache.size());
+		cache.clear();
+		cache.put(5, 5);
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testRandomTtls() {
+		ExpiringCache<Integer, Long> cache = new ExpiringCache<>(100_000, 60_000, clock::get);
+		Map<Integer, Long> expirations = new HashMap<>();
+		// latest expiration time of every key ever added
+		Map<Integer, Long> recent = new HashMap<>();
+		Random random = new Random(7);
+		for (int round = 0; round < 200; round++) {
+			for (int i = 0; i < 50; i++) {
+				int key = random.nextInt(5000);
+				long ttl = 1 + (long) Math.pow(2, random.nextInt(33) * random.nextDouble());
+				long expiresAt = clock.get() + ttl;
+				cache.put(key, expiresAt, ttl);
+				expirations.put(key, expiresAt);
+				recent.put(key, expiresAt);
+			}
+			clock.addAndGet((long) Math.pow(2, 27 * random.nextDouble()));
+
+			long now = clock.get();
+			expirations.values().removeIf(expiresAt -> expiresAt <= now);
+			int size = cache.size();
+			assertEquals(expirations.size(), cache.entrySet().size());
+			// only entries expired within the current tick of the wheel may be still held
+			long tickStart = (now >>> 10) << 10;
+			long upperBound = expirations.size() +
+					recent.values().stream().filter(e -> e <= now && e >= tickStart).count();
+			assertTrue(size + " > " + upperBound, size <= upperBound);
+			assertTrue(size >= expirations.size());
+			for (Map.Entry<Integer, Long> e : expirations.entrySet()) {
+				assertEquals(e.getValue(), cache.get(e.getKey()));
+			}
+		}
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.cache;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class LoadingCacheTest {
+
+	private final AtomicLong clock = new AtomicLong(1_000_000);
+
+	@Test
+	public void testLoadAndCache() throws ExecutionException {
+		AtomicInteger loads = new AtomicInteger();
+		LoadingCache<String, String> cache = new LoadingCache<>(10, 60_000, key -> {
+			loads.incrementAndGet();
+			return key.equals("none") ? null : key.toUpperCase();
+		});
+
+		assertEquals("A", cache.get("a"));
+		assertEquals("A", cache.get("a"));
+		assertNull(cache.get("none"));
+		assertNull(cache.get("none"));
+		assertEquals(3, loads.get());
+
+		cache.invalidate("a");
+		assertNull(cache.getIfPresent("a"));
+		assertEquals("A", cache.get("a"));
+		assertEquals(4, loads.get());
+
+		CacheStats stats = cache.getStats();
+		assertEquals(4, stats.getLoadSuccessCount());
+		assertEquals(1, stats.getHitCount());
+	}
+
+	@Test
+	public void testLoaderTtl() throws ExecutionException {
+		ExpiringCache<String, String> storage = new ExpiringCache<>(10, 60_000, clock::get);
+		LoadingCache<String, String> cache = new LoadingCache<>(storage, new CacheLoader<String, String>() {
+			@Override
+			public String load(String key) {
+				return key + clock.get();
+			}
+
+			@Override
+			public long getTtl(String key, String value) {
+				return key.equals("short") ? 5_000 : -1;
+			}
+		}, 0, null);
+
+		String shortValue = cache.get("short");
+		String defaultValue = cache.get("default");
+		clock.addAndGet(10_000);
+		assertFalse(shortValue.equals(cache.get("short")));
+		assertEquals(defaultValue, cache.get("default"));
+	}
+
+	@Test
+	public void testSingleFlight() throws Exception {
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		LoadingCache<String, String> cache = new LoadingCache<>(10, 60_000, key -> {
+			loads.incrementAndGet();
+			started.countDown();
+			release.await();
+			return key + "-value";
+		});
+
+		int threads = 8;
+		List<Thread> workers = new ArrayList<>();
+		List<String> results = new ArrayList<>();
+		CountDownLatch waiting = new CountDownLatch(threads);
+		for (int i = 0; i < threads; i++) {
+			Thread thread = new Thread(() -> {
+				waiting.countDown();
+				try {
+					String value = cache.get("host");
+					synchronized (results) {
+						results.add(value);
+					}
+				} catch (ExecutionException ex) {
+					throw new RuntimeException(ex);
+				}
+			});
+			workers.add(thread);
+			thread.start();
+		}
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		assertTrue(waiting.await(10, TimeUnit.SECONDS));
+		// let the other threads reach the pending load
+		Thread.sleep(100);
+		release.countDown();
+		for (Thread thread : workers) {
+			thread.join(10_000);
+		}
+
+		assertEquals(1, loads.get());
+		assertEquals(threads, results.size());
+		for (String value : results) {
+			assertEquals("host-value", value);
+		}
+	}
+
+	@Test
+	public void testFailureIsPassedToWaiters() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger loads = new AtomicInteger();
+		LoadingCache<String, String> cache = new LoadingCache<>(10, 60_000, key -> {
+			if (loads.incrementAndGet() == 1) {
+				started.countDown();
+				release.await();
+				throw new IOException("lookup failed");
+			}
+			return "recovered";
+		});
+
+		AtomicReference<Throwable> waiterFailure = new AtomicReference<>();
+		Thread loader = new Thread(() -> {
+			try {
+				cache.get("host");
+			} catch (ExecutionException ex) {
+				// expected
+			}
+		});
+		loader.start();
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		Thread waiter = new Thread(() -> {
+			try {
+				cache.get("host");
+			} catch (ExecutionException ex) {
+				waiterFailure.set(ex.getCause());
+			}
+		});
+		waiter.start();
+		Thread.sleep(100);
+		release.countDown();
+		loader.join(10_000);
+		waiter.join(10_000);
+
+		assertTrue(waiterFailure.get() instanceof IOException);
+		assertEquals(1, loads.get());
+		assertEquals(1, cache.getStats().getLoadFailureCount());
+
+		// failures are not cached
+		assertEquals("recovered", cache.get("host"));
+	}
+
+	@Test
+	public void testRefreshAhead() throws ExecutionException {
+		AtomicInteger version = new AtomicInteger();
+		List<Runnable> tasks = new ArrayList<>();
+		ExpiringCache<String, String> storage = new ExpiringCache<>(10, 60_000, clock::get);
+		LoadingCache<String, String> cache = new LoadingCache<>(storage, key -> key + version.incrementAndGet(),
+																10_000, tasks::add);
+
+		assertEquals("a1", cache.get("a"));
+		clock.addAndGet(40_000);
+		assertEquals("a1", cache.get("a"));
+		assertTrue(tasks.isEmpty());
+
+		// within refresh window current value is returned and reload is scheduled once
+		clock.addAndGet(15_000);
+		assertEquals("a1", cache.get("a"));
+		assertEquals("a1", cache.get("a"));
+		assertEquals(1, tasks.size());
+
+		tasks.remove(0).run();
+		assertEquals("a2", cache.get("a"));
+		clock.addAndGet(55_000);
+		assertEquals("a2", cache.get("a"));
+		assertEquals(1, tasks.size());
+	}
+
+	@Test
+	public void testInvalidateDuringLoad() throws Exception {
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		LoadingCache<String, String> cache = new LoadingCache<>(10, 60_000, key -> {
+			int load = loads.incrementAndGet();
+			if (load == 1) {
+				started.countDown();
+				release.await();
+			}
+			return key + "-value" + load;
+		});
+
+		AtomicReference<String> result = new AtomicReference<>();
+		Thread thread = new Thread(() -> {
+			try {
+				result.set(cache.get("host"));
+			} catch (ExecutionException ex) {
+				throw new RuntimeException(ex);
+			}
+		});
+		thread.start();
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		cache.invalidate("host");
+		release.countDown();
+		thread.join(10_000);
+
+		// caller of the invalidated load still gets its value, but it is not cached
+		assertEquals("host-value1", result.get());
+		assertNull(cache.getIfPresent("host"));
+		assertEquals("host-value2", cache.get("host"));
+		assertEquals(2, loads.get());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRefreshRequiresExecutor() {
+		new LoadingCache<String, String>(new ExpiringCache<>(10, 1000), key -> key, 100, null);
+	}
+}
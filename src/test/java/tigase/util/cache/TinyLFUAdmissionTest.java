@@ -0,0 +1,187 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TinyLFUAdmissionTest {
+
+	@Test
+	public void testSketchCountsAndSaturates() {
+		FrequencySketch sketch = new FrequencySketch(100);
+		assertEquals(0, sketch.frequency("key"));
+		for (int i = 0; i < 5; i++) {
+			sketch.increment("key");
+		}
+		assertEquals(5, sketch.frequency("key"));
+		for (int i = 0; i < 20; i++) {
+			sketch.increment("key");
+		}
+		assertEquals(15, sketch.frequency("key"));
+		assertEquals(0, sketch.frequency("other"));
+	}
+
+	@Test
+	public void testSketchAging() {
+		FrequencySketch sketch = new FrequencySketch(10);
+		for (int i = 0; i < 8; i++) {
+			sketch.increment("hot");
+		}
+		// sample size is 10 times the maximum size, so the counters are halved after 100 increments
+		for (int i = 0; i < 92; i++) {
+			sketch.increment(i);
+		}
+		assertEquals(4, sketch.frequency("hot"));
+
+		sketch.reset();
+		assertEquals(2, sketch.frequency("hot"));
+	}
+
+	@Test
+	public void testAdmit() {
+		TinyLFUAdmission<String> admission = new TinyLFUAdmission<>(100);
+		admission.record("popular");
+		admission.record("popular");
+		admission.record("rare");
+
+		assertTrue(admission.admit("popular", "rare"));
+		assertFalse(admission.admit("rare", "popular"));
+		assertFalse(admission.admit("rare", "rare"));
+	}
+
+	@Test
+	public void testSizedCacheRejectsOneHitWonder() {
+		SizedCache<String, String> cache = new SizedCache<>(2, new TinyLFUAdmission<>(2));
+		cache.put("a", "a");
+		cache.put("b", "b");
+		for (int i = 0; i < 3; i++) {
+			cache.get("a");
+			cache.get("b");
+		}
+		cache.put("c", "c");
+
+		assertEquals(2, cache.size());
+		assertTrue(cache.containsKey("a"));
+		assertTrue(cache.containsKey("b"));
+		assertFalse(cache.containsKey("c"));
+
+		// frequently requested key is admitted in place of the least recently used one, misses are not recorded
+		// until the missing entry is put
+		for (int i = 0; i < 10 && cache.get("c") == null; i++) {
+			cache.put("c", "c");
+		}
+		assertEquals(2, cache.size());
+		assertTrue(cache.containsKey("c"));
+		assertFalse(cache.containsKey("a"));
+	}
+
+	@Test
+	public void testMissIsRecordedOnce() {
+		TinyLFUAdmission<String> sized = new TinyLFUAdmission<>(100);
+		SizedCache<String, String> cache = new SizedCache<>(10, sized);
+		assertNull(cache.get("a"));
+		cache.put("a", "a");
+		assertEquals(1, sized.getSketch().frequency("a"));
+		cache.get("a");
+		assertEquals(2, sized.getSketch().frequency("a"));
+
+		TinyLFUAdmission<String> lru = new TinyLFUAdmission<>(100);
+		LRUConcurrentCache<String, String> concurrent = new LRUConcurrentCache<>(10, lru);
+		assertNull(concurrent.get("a"));
+		concurrent.put("a", "a");
+		assertEquals(1, lru.getSketch().frequency("a"));
+		concurrent.get("a");
+		assertEquals(2, lru.getSketch().frequency("a"));
+	}
+
+	@Test
+	public void testSizedCacheWithoutAdmission() {
+		SizedCache<String, String> cache = new SizedCache<>(2);
+		cache.put("a", "a");
+		cache.put("b", "b");
+		cache.get("a");
+		cache.put("c", "c");
+
+		assertTrue(cache.containsKey("a"));
+		assertFalse(cache.containsKey("b"));
+		assertTrue(cache.containsKey("c"));
+	}
+
+	@Test
+	public void testLRUConcurrentCacheAdmission() {
+		// sketch sized above the cache, so that aging does not kick in during the test
+		LRUConcurrentCache<Integer, Integer> cache = new LRUConcurrentCache<>(10, new TinyLFUAdmission<>(100));
+		for (int i = 0; i < 10; i++) {
+			cache.put(i, i);
+			cache.get(i);
+			cache.get(i);
+		}
+		for (int i = 100; i < 200; i++) {
+			cache.put(i, i);
+		}
+		assertEquals(10, cache.size());
+		for (int i = 0; i < 10; i++) {
+			assertEquals(Integer.valueOf(i), cache.get(i));
+		}
+	}
+
+	@Test
+	public void testConcurrentLRUCacheAdmission() {
+		ConcurrentLRUCache<Integer, Integer> cache = new ConcurrentLRUCache<>(10, new TinyLFUAdmission<>(100));
+		for (int i = 0; i < 10; i++) {
+			cache.put(i, i);
+			cache.get(i);
+			cache.get(i);
+		}
+		for (int i = 100; i < 200; i++) {
+			cache.put(i, i);
+		}
+		assertEquals(10, cache.size());
+		for (int i = 0; i < 10; i++) {
+			assertEquals(Integer.valueOf(i), cache.get(i));
+		}
+	}
+
+	@Test
+	public void testConcurrentClockCacheAdmission() {
+		ConcurrentClockCache<Integer, Integer> cache = new ConcurrentClockCache<>(10, new TinyLFUAdmission<>(100));
+		for (int i = 0; i < 10; i++) {
+			cache.put(i, i);
+		}
+		for (int round = 0; round < 3; round++) {
+			for (int i = 0; i < 10; i++) {
+				cache.get(i);
+			}
+			// forces sweep which records referenced entries
+			cache.put(1000 + round, 0);
+		}
+		for (int i = 100; i < 200; i++) {
+			cache.put(i, i);
+		}
+		assertTrue(cache.size() <= cache.limit());
+		int retained = 0;
+		for (int i = 0; i < 10; i++) {
+			if (cache.get(i) != null) {
+				retained++;
+			}
+		}
+		assertTrue("retained " + retained, retained >= 9);
+	}
+}
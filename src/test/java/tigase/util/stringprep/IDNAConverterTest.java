@@ -0,0 +1,114 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.stringprep;
+
+import gnu.inet.encoding.IDNA;
+import gnu.inet.encoding.IDNAException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class IDNAConverterTest {
+
+	private static final String[] DOMAINS = {"example.com", "Example.COM", "bücher.example", "BÜCHER.example",
+											 "xn--bcher-kva.example", "XN--bcher-kva.example", "пример.рф",
+											 "例子。测试", "ｅｘａｍｐｌｅ．ｃｏｍ", "a｡b", "xn--zz.example", "xn--.example",
+											 "-example.com", "example-.com", "ex_ample.com", "example.com.", "",
+											 "a..b", "xn--abc-ü.com", "-ü.com", "ü\u0000.com",
+											 "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa.com",
+											 "üüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüüü.com"};
+
+	@Test
+	public void testParityWithIDNA() {
+		IDNAConverter converter = new IDNAConverter(100);
+		for (int round = 0; round < 2; round++) {
+			for (String domain : DOMAINS) {
+				assertEquals(domain, toASCII(domain, IDNA::toASCII), toASCII(domain, converter::toASCII));
+				assertEquals(domain, IDNA.toUnicode(domain), converter.toUnicode(domain));
+			}
+		}
+		assertTrue(converter.getASCIICache().getHits() > 0);
+		assertTrue(converter.getUnicodeCache().getHits() > 0);
+	}
+
+	@Test
+	public void testASCIIShortCircuit() throws IDNAException {
+		IDNAConverter converter = new IDNAConverter(100);
+		String domain = "Example.com";
+		assertSame(domain, converter.toASCII(domain));
+		assertSame(domain, converter.toUnicode(domain));
+		assertEquals(0, converter.getASCIICache().size());
+		assertEquals(0, converter.getUnicodeCache().size());
+
+		assertEquals("xn--bcher-kva.example.com", converter.toASCII("bücher.example.com"));
+		assertEquals(1, converter.getASCIICache().size());
+		assertEquals("bücher.example.com", converter.toUnicode("xn--bcher-kva.example.com"));
+		assertEquals(1, converter.getUnicodeCache().size());
+	}
+
+	@Test
+	public void testCachedFailureRethrown() {
+		IDNAConverter converter = new IDNAConverter(100);
+		for (int i = 0; i < 2; i++) {
+			try {
+				converter.toASCII("-ü.com");
+				fail("Exception expected");
+			} catch (IDNAException ex) {
+				assertEquals(IDNAException.CONTAINS_HYPHEN, ex.getMessage());
+			}
+		}
+		assertEquals(1, converter.getASCIICache().getHits());
+	}
+
+	@Test
+	public void testBatch() {
+		IDNAConverter converter = new IDNAConverter(100);
+		Map<String, IDNAException> errors = new HashMap<>();
+		Map<String, String> results = converter.toASCII(
+				Arrays.asList("bücher.example", "example.com", "ex_ample.com", "bücher.example", "straße.example"),
+				errors);
+
+		assertEquals(Arrays.asList("bücher.example", "example.com", "straße.example"),
+					 Arrays.asList(results.keySet().toArray()));
+		assertEquals("xn--bcher-kva.example", results.get("bücher.example"));
+		assertEquals("strasse.example", results.get("straße.example"));
+		assertEquals(1, errors.size());
+		assertEquals(IDNAException.CONTAINS_NON_LDH, errors.get("ex_ample.com").getMessage());
+
+		Map<String, String> unicode = converter.toUnicode(results.values());
+		assertEquals("bücher.example", unicode.get("xn--bcher-kva.example"));
+		assertEquals("example.com", unicode.get("example.com"));
+	}
+
+	private static String toASCII(String domain, Converter converter) {
+		try {
+			return converter.toASCII(domain);
+		} catch (IDNAException ex) {
+			return "error: " + ex.getMessage();
+		}
+	}
+
+	private interface Converter {
+
+		String toASCII(String domain) throws IDNAException;
+	}
+}
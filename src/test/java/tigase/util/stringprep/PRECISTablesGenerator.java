@@ -0,0 +1,253 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.stringprep;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Generates the <code>precis.dat</code> resource loaded by {@link PRECISProperties}: PRECIS derived property values
+ * (RFC 8264, section 8) of all Unicode code points, Virama code points and width mappings, calculated from the Unicode
+ * character data of the JVM running the generator. The Java specification version is stored in the resource, so that
+ * {@link PRECISTablesTest} knows whether it can be compared byte by byte with a regenerated one.
+ * <br>
+ * Run with: <code>java tigase.util.stringprep.PRECISTablesGenerator src/main/resources/tigase/util/stringprep</code>
+ */
+public class PRECISTablesGenerator {
+
+	public static void main(String[] args) throws IOException {
+		Path dir = Paths.get(args.length > 0 ? args[0] : "src/main/resources/tigase/util/stringprep");
+		Files.createDirectories(dir);
+		Files.write(dir.resolve(PRECISProperties.RESOURCE), generate());
+	}
+
+	static byte[] generate() throws IOException {
+		byte[] properties = new byte[Character.MAX_CODE_POINT + 1];
+		for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp++) {
+			properties[cp] = derive(cp);
+		}
+
+		// <wide> and <narrow> decompositions, all of them are in the Halfwidth and Fullwidth Forms block except
+		// U+3000 which is handled separately
+		char[] widthMapping = new char[0x10000 - 0xFF00];
+		for (int cp = 0xFF00; cp <= 0xFFFF; cp++) {
+			String mapped = Normalizer.normalize(String.valueOf((char) cp), Normalizer.Form.NFKC);
+			if (mapped.length() == 1 && mapped.charAt(0) != cp) {
+				widthMapping[cp - 0xFF00] = mapped.charAt(0);
+			}
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(PRECISProperties.MAGIC);
+		out.writeInt(PRECISProperties.VERSION);
+		writeChars(out, System.getProperty("java.specification.version").toCharArray());
+		writePaged(out, properties);
+		writeInts(out, findViramas());
+		writeChars(out, widthMapping);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	static byte derive(int cp) {
+		switch (cp) {
+			// Exceptions, RFC 5892 section 2.6
+			case 0x00DF:
+			case 0x03C2:
+			case 0x06FD:
+			case 0x06FE:
+			case 0x0F0B:
+			case 0x3007:
+				return PRECISProperties.PVALID;
+			case 0x00B7:
+			case 0x0375:
+			case 0x05F3:
+			case 0x05F4:
+			case 0x30FB:
+				return PRECISProperties.CONTEXTO;
+			case 0x0640:
+			case 0x07FA:
+			case 0x302E:
+			case 0x302F:
+			case 0x3031:
+			case 0x3032:
+			case 0x3033:
+			case 0x3034:
+			case 0x3035:
+			case 0x303B:
+				return PRECISProperties.DISALLOWED;
+			default:
+				break;
+		}
+		if ((cp >= 0x0660 && cp <= 0x0669) || (cp >= 0x06F0 && cp <= 0x06F9)) {
+			return PRECISProperties.CONTEXTO;
+		}
+
+		int type = Character.getType(cp);
+		if (type == Character.UNASSIGNED && !isNoncharacter(cp)) {
+			return PRECISProperties.UNASSIGNED;
+		}
+		if (cp >= 0x21 && cp <= 0x7E) {
+			return PRECISProperties.PVALID;
+		}
+		if (cp == 0x200C || cp == 0x200D) {
+			return PRECISProperties.CONTEXTJ;
+		}
+		if (isOldHangulJamo(cp) || isDefaultIgnorable(cp) || isNoncharacter(cp) || type == Character.CONTROL) {
+			return PRECISProperties.DISALLOWED;
+		}
+		if (hasCompat(cp)) {
+			return PRECISProperties.FREE_PVAL;
+		}
+		switch (type) {
+			case Character.LOWERCASE_LETTER:
+			case Character.UPPERCASE_LETTER:
+			case Character.OTHER_LETTER:
+			case Character.DECIMAL_DIGIT_NUMBER:
+			case Character.MODIFIER_LETTER:
+			case Character.NON_SPACING_MARK:
+			case Character.COMBINING_SPACING_MARK:
+				return PRECISProperties.PVALID;
+			case Character.TITLECASE_LETTER:
+			case Character.LETTER_NUMBER:
+			case Character.OTHER_NUMBER:
+			case Character.ENCLOSING_MARK:
+			case Character.SPACE_SEPARATOR:
+			case Character.MATH_SYMBOL:
+			case Character.CURRENCY_SYMBOL:
+			case Character.MODIFIER_SYMBOL:
+			case Character.OTHER_SYMBOL:
+			case Character.CONNECTOR_PUNCTUATION:
+			case Character.DASH_PUNCTUATION:
+			case Character.START_PUNCTUATION:
+			case Character.END_PUNCTUATION:
+			case Character.INITIAL_QUOTE_PUNCTUATION:
+			case Character.FINAL_QUOTE_PUNCTUATION:
+			case Character.OTHER_PUNCTUATION:
+				return PRECISProperties.FREE_PVAL;
+			default:
+				return PRECISProperties.DISALLOWED;
+		}
+	}
+
+	/**
+	 * JDK does not expose canonical combining classes, so they are detected by canonical reordering: a mark with
+	 * combining class 9 is moved after a mark of class 8 and before a mark of class 10.
+	 */
+	private static int[] findViramas() {
+		String ccc8 = "\u3099";
+		String ccc10 = "\u05B0";
+		int[] result = new int[64];
+		int count = 0;
+		for (int cp = 0x300; cp <= Character.MAX_CODE_POINT; cp++) {
+			int type = Character.getType(cp);
+			if (type != Character.NON_SPACING_MARK && type != Character.COMBINING_SPACING_MARK) {
+				continue;
+			}
+			String mark = new String(Character.toChars(cp));
+			if (!Normalizer.normalize(mark, Normalizer.Form.NFD).equals(mark)) {
+				continue;
+			}
+			if (Normalizer.normalize(mark + ccc8, Normalizer.Form.NFD).startsWith(ccc8) &&
+					Normalizer.normalize(ccc10 + mark, Normalizer.Form.NFD).startsWith(mark) && !mark.equals(ccc10)) {
+				if (count == result.length) {
+					result = Arrays.copyOf(result, count * 2);
+				}
+				result[count++] = cp;
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	private static boolean hasCompat(int cp) {
+		// skip normalization check for large blocks of ideographs and Hangul syllables which do not decompose
+		if (cp < 0xA0 || (cp >= 0x3400 && cp <= 0x4DBF) || (cp >= 0x4E00 && cp <= 0x9FFF) ||
+				(cp >= 0xAC00 && cp <= 0xD7A3) || (cp >= 0x20000 && cp <= 0x2EBEF) || (cp >= 0x30000 && cp <= 0x3134F)) {
+			return false;
+		}
+		return !Normalizer.isNormalized(new String(Character.toChars(cp)), Normalizer.Form.NFKC);
+	}
+
+	private static boolean isDefaultIgnorable(int cp) {
+		return cp == 0x00AD || cp == 0x034F || cp == 0x061C || cp == 0x115F || cp == 0x1160 || cp == 0x17B4 ||
+				cp == 0x17B5 || (cp >= 0x180B && cp <= 0x180F) || (cp >= 0x200B && cp <= 0x200F) ||
+				(cp >= 0x202A && cp <= 0x202E) || (cp >= 0x2060 && cp <= 0x206F) || cp == 0x3164 ||
+				(cp >= 0xFE00 && cp <= 0xFE0F) || cp == 0xFEFF || cp == 0xFFA0 || (cp >= 0xFFF0 && cp <= 0xFFF8) ||
+				(cp >= 0x1BCA0 && cp <= 0x1BCA3) || (cp >= 0x1D173 && cp <= 0x1D17A) ||
+				(cp >= 0xE0000 && cp <= 0xE0FFF);
+	}
+
+	private static boolean isNoncharacter(int cp) {
+		return (cp >= 0xFDD0 && cp <= 0xFDEF) || (cp & 0xFFFE) == 0xFFFE;
+	}
+
+	private static boolean isOldHangulJamo(int cp) {
+		return (cp >= 0x1100 && cp <= 0x11FF) || (cp >= 0xA960 && cp <= 0xA97C) || (cp >= 0xD7B0 && cp <= 0xD7C6) ||
+				(cp >= 0xD7CB && cp <= 0xD7FB);
+	}
+
+	private static void writeChars(DataOutputStream out, char[] chars) throws IOException {
+		out.writeInt(chars.length);
+		for (char c : chars) {
+			out.writeChar(c);
+		}
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		out.writeInt(values.length);
+		for (int value : values) {
+			out.writeInt(value);
+		}
+	}
+
+	/**
+	 * Splits the table into pages, shares identical pages and writes the page index followed by the page data.
+	 */
+	private static void writePaged(DataOutputStream out, byte[] table) throws IOException {
+		int pageSize = 1 << PRECISProperties.PAGE_SHIFT;
+		int pages = table.length >> PRECISProperties.PAGE_SHIFT;
+		Map<String, Integer> offsets = new HashMap<>();
+		StringBuilder unique = new StringBuilder();
+
+		out.writeInt(pages);
+		for (int page = 0; page < pages; page++) {
+			String content = new String(table, page << PRECISProperties.PAGE_SHIFT, pageSize,
+										StandardCharsets.ISO_8859_1);
+			Integer offset = offsets.get(content);
+			if (offset == null) {
+				offset = unique.length();
+				offsets.put(content, offset);
+				unique.append(content);
+			}
+			out.writeInt(offset);
+		}
+		out.writeInt(unique.length());
+		for (int i = 0; i < unique.length(); i++) {
+			out.writeByte(unique.charAt(i));
+		}
+	}
+}
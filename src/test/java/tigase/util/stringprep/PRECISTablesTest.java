@@ -0,0 +1,69 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.stringprep;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+public class PRECISTablesTest {
+
+	@Test
+	public void testResourceUpToDate() throws IOException {
+		if (System.getProperty("java.specification.version").equals(PRECISProperties.unicodeSource)) {
+			assertArrayEquals("Regenerate resource with PRECISTablesGenerator", PRECISTablesGenerator.generate(),
+							  read(PRECISProperties.RESOURCE));
+			return;
+		}
+		// other JVM may have newer or older Unicode data, so only code points assigned in both are compared
+		for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp++) {
+			byte expected = PRECISTablesGenerator.derive(cp);
+			byte actual = PRECISProperties.get(cp);
+			if (expected != PRECISProperties.UNASSIGNED && actual != PRECISProperties.UNASSIGNED) {
+				assertEquals("U+" + Integer.toHexString(cp), expected, actual);
+			}
+		}
+	}
+
+	@Test
+	public void testLookups() {
+		assertEquals(PRECISProperties.PVALID, PRECISProperties.get('a'));
+		assertEquals(PRECISProperties.PVALID, PRECISProperties.get(0x00DF));
+		assertEquals(PRECISProperties.CONTEXTJ, PRECISProperties.get(0x200D));
+		assertEquals(PRECISProperties.CONTEXTO, PRECISProperties.get(0x00B7));
+		assertEquals(PRECISProperties.FREE_PVAL, PRECISProperties.get(' '));
+		assertEquals(PRECISProperties.FREE_PVAL, PRECISProperties.get(0xFF21));
+		assertEquals(PRECISProperties.DISALLOWED, PRECISProperties.get(0x0007));
+		assertEquals(PRECISProperties.UNASSIGNED, PRECISProperties.get(0x0378));
+		assertTrue(PRECISProperties.isVirama(0x094D));
+		assertFalse(PRECISProperties.isVirama(0x0301));
+		assertEquals('A', PRECISProperties.mapWidth(0xFF21));
+		assertEquals(0x3002, PRECISProperties.mapWidth(0xFF61));
+		assertEquals('a', PRECISProperties.mapWidth('a'));
+	}
+
+	private static byte[] read(String resource) throws IOException {
+		try (InputStream in = PRECISProperties.class.getResourceAsStream(resource)) {
+			assertNotNull("Missing resource " + resource, in);
+			return in.readAllBytes();
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.stringprep;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class XMPPStringPrepCachedTest {
+
+	@Test
+	public void testResultsAreCached() throws TigaseStringprepException {
+		CountingStringPrep counting = new CountingStringPrep();
+		XMPPStringPrepCached cached = new XMPPStringPrepCached(counting, 100);
+
+		assertEquals("example.com", cached.nameprep("Example.COM"));
+		assertEquals("example.com", cached.nameprep("Example.COM"));
+		assertEquals("user", cached.nodeprep("User"));
+		assertEquals("user", cached.nodeprep("User"));
+		assertEquals("Res", cached.resourceprep("Res"));
+		assertEquals("Res", cached.resourceprep("Res"));
+
+		assertEquals(3, counting.calls.get());
+		assertEquals(1, cached.getNameprepCache().getHits());
+		assertEquals(1, cached.getNodeprepCache().getHits());
+		assertEquals(1, cached.getResourceprepCache().getHits());
+	}
+
+	@Test
+	public void testFailuresAreCached() {
+		CountingStringPrep counting = new CountingStringPrep();
+		XMPPStringPrepCached cached = new XMPPStringPrepCached(counting, 100);
+
+		for (int i = 0; i < 3; i++) {
+			try {
+				cached.nodeprep("bad user");
+				fail("Exception expected");
+			} catch (TigaseStringprepException ex) {
+				assertEquals("Illegal characters in string, localpart = bad user", ex.getMessage());
+			}
+		}
+		assertEquals(1, counting.calls.get());
+	}
+
+	@Test
+	public void testFactory() throws TigaseStringprepException {
+		XMPPStringPrepIfc stringprep = XMPPStringPrepFactory.getXMPPStringPrep("cached-libidn");
+
+		assertTrue(stringprep instanceof XMPPStringPrepCached);
+		assertEquals("example.com", stringprep.nameprep("EXAMPLE.com"));
+		assertEquals("user", stringprep.nodeprep("USER"));
+	}
+
+	private static class CountingStringPrep
+			extends XMPPStringPrepSimple {
+
+		private final AtomicInteger calls = new AtomicInteger();
+
+		@Override
+		public String nameprep(String domain) throws TigaseStringprepException {
+			calls.incrementAndGet();
+			return super.nameprep(domain);
+		}
+
+		@Override
+		public String nodeprep(String localpart) throws TigaseStringprepException {
+			calls.incrementAndGet();
+			return super.nodeprep(localpart).toLowerCase();
+		}
+
+		@Override
+		public String resourceprep(String resource) throws TigaseStringprepException {
+			calls.incrementAndGet();
+			return super.resourceprep(resource);
+		}
+	}
+}
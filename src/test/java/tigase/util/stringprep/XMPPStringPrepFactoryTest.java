@@ -0,0 +1,125 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.stringprep;
+
+import org.junit.Test;
+import tigase.xmpp.jid.BareJID;
+import tigase.xmpp.jid.JID;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class XMPPStringPrepFactoryTest {
+
+	@Test
+	public void testProfile() throws TigaseStringprepException {
+		XMPPStringPrepIfc stringprep = XMPPStringPrepFactory.getXMPPStringPrep(
+				"nodeprep=cached-libidn, nameprep=empty, resourceprep=libidn");
+		assertTrue(stringprep instanceof XMPPStringPrepProfile);
+
+		XMPPStringPrepProfile profile = (XMPPStringPrepProfile) stringprep;
+		assertTrue(profile.getNodeprepProcessor() instanceof XMPPStringPrepCached);
+		assertTrue(profile.getNameprepProcessor() instanceof XMPPStringPrepEmpty);
+		assertTrue(profile.getResourceprepProcessor() instanceof XMPPStringPrepLibIDN);
+
+		assertEquals("user", profile.nodeprep("USER"));
+		assertEquals("Example.COM", profile.nameprep("Example.COM"));
+
+		profile = (XMPPStringPrepProfile) XMPPStringPrepFactory.getXMPPStringPrep("nameprep=empty,default=libidn");
+		assertTrue(profile.getNameprepProcessor() instanceof XMPPStringPrepEmpty);
+		assertSame(profile.getNodeprepProcessor(), profile.getResourceprepProcessor());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testIncompleteProfile() {
+		XMPPStringPrepFactory.getXMPPStringPrep("nodeprep=libidn,nameprep=simple");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testIncorrectProfile() {
+		XMPPStringPrepFactory.getXMPPStringPrep("localpart=libidn,default=simple");
+	}
+
+	@Test
+	public void testRegistry() {
+		XMPPStringPrepFactory.registerXMPPStringPrep("test-empty", XMPPStringPrepEmpty::new);
+		assertTrue(XMPPStringPrepFactory.getRegisteredXMPPStringPrepNames().contains("test-empty"));
+		assertTrue(XMPPStringPrepFactory.getXMPPStringPrep("test-empty") instanceof XMPPStringPrepEmpty);
+		assertTrue(XMPPStringPrepFactory.getXMPPStringPrep("cached-test-empty") instanceof XMPPStringPrepCached);
+		assertTrue(XMPPStringPrepFactory.getXMPPStringPrep(XMPPStringPrepSimple.class.getName()) instanceof
+						   XMPPStringPrepSimple);
+	}
+
+	@Test
+	public void testMetered() throws TigaseStringprepException {
+		XMPPStringPrepIfc previous = BareJID.getStringprepProcessor();
+		try {
+			BareJID.useStringprepProcessor("metered-libidn");
+			XMPPStringPrepMetered metered = (XMPPStringPrepMetered) BareJID.getStringprepProcessor();
+
+			JID.jidInstance("user@example.com/res");
+			JID.jidInstance("other@example.com/res");
+			try {
+				JID.jidInstance("invalid user@example.com");
+				fail("JID should be rejected");
+			} catch (TigaseStringprepException e) {
+				// expected
+			}
+
+			assertEquals(3, metered.getNodeprepMetrics().getCalls());
+			assertEquals(1, metered.getNodeprepMetrics().getErrors());
+			assertEquals(2, metered.getNameprepMetrics().getCalls());
+			assertEquals(2, metered.getResourceprepMetrics().getCalls());
+			assertEquals(0, metered.getResourceprepMetrics().getErrors());
+
+			long[] histogram = metered.getNodeprepMetrics().getHistogram();
+			long sum = 0;
+			for (long value : histogram) {
+				sum += value;
+			}
+			assertEquals(3, sum);
+			assertTrue(metered.getNodeprepMetrics().getPercentileNanos(50) > 0);
+			assertTrue(metered.getNodeprepMetrics().getTotalTime(TimeUnit.NANOSECONDS) > 0);
+
+			metered.resetMetrics();
+			assertEquals(0, metered.getNodeprepMetrics().getCalls());
+			assertEquals(0, metered.getNodeprepMetrics().getPercentileNanos(99));
+		} finally {
+			BareJID.useStringprepProcessor(previous);
+		}
+	}
+
+	@Test
+	public void testMetricsHistogram() {
+		XMPPStringPrepMetrics metrics = new XMPPStringPrepMetrics("test");
+		metrics.record(0, false);
+		metrics.record(100, false);
+		metrics.record(1000, true);
+		metrics.record(Long.MAX_VALUE, false);
+
+		long[] histogram = metrics.getHistogram();
+		assertEquals(1, histogram[0]);
+		assertEquals(1, histogram[7]);
+		assertEquals(1, histogram[10]);
+		assertEquals(1, histogram[XMPPStringPrepMetrics.BUCKETS - 1]);
+		assertEquals(128, metrics.getPercentileNanos(50));
+		assertEquals(1024, metrics.getPercentileNanos(75));
+		assertEquals(1, metrics.getErrors());
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.stringprep;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class XMPPStringPrepPRECISTest {
+
+	private static final String[] PARITY_ALPHABETS = {"abcdefghijklmnopqrstuvwxyz0123456789.-_",
+													  "ABCDEFGHIJKLMNOPQRSTUVWXYZabcxyz0123456789",
+													  "àáâãäåæçèéêëìíîïðñòóôõöøùúûüýþÀÉÖÜ",
+													  "абвгдежзийклмнопрстуфхцчшщъыьэюяАБВГД",
+													  "東京大阪用户例子测试資源中文日本語",
+													  "ابتثجحخدذرزسشصضطظعغفقكلمنهوي"};
+
+	private final XMPPStringPrepIfc libidn = XMPPStringPrepFactory.getLibIDNXMPPStringPrep();
+	private final XMPPStringPrepIfc precis = XMPPStringPrepFactory.getXMPPStringPrep("precis");
+
+	@Test
+	public void testRFC7622Examples() throws TigaseStringprepException {
+		assertEquals("juliet", precis.nodeprep("juliet"));
+		assertEquals("example.com", precis.nameprep("example.com"));
+		assertEquals("foo bar", precis.resourceprep("foo bar"));
+		assertEquals("foo@bar", precis.resourceprep("foo@bar"));
+		assertEquals("foo\\20bar", precis.nodeprep("foo\\20bar"));
+		assertEquals("fussball", precis.nodeprep("fussball"));
+		assertEquals("fußball", precis.nodeprep("fußball"));
+		assertEquals("π", precis.nodeprep("π"));
+		assertEquals("σ", precis.nodeprep("Σ"));
+		assertEquals("♚", precis.resourceprep("♚"));
+		assertEquals("a.example.com", precis.nameprep("a.example.com"));
+
+		assertInvalidLocalpart("\"juliet\"");
+		assertInvalidLocalpart("foo bar");
+		assertInvalidLocalpart("henryⅣ");
+		assertInvalidLocalpart("♚");
+		assertInvalidLocalpart("");
+		try {
+			precis.nameprep("");
+			fail("Empty domain should be rejected");
+		} catch (TigaseStringprepException e) {
+			// expected
+		}
+		try {
+			precis.resourceprep("");
+			fail("Empty resource should be rejected");
+		} catch (TigaseStringprepException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testMappings() throws TigaseStringprepException {
+		assertEquals("user", precis.nodeprep("ＵＳＥＲ"));
+		assertEquals("zürich", precis.nodeprep("Zürich"));
+		assertEquals("example.com", precis.nameprep("ｅｘａｍｐｌｅ。ＣＯＭ"));
+		assertEquals("example.com", precis.nameprep("Example.COM."));
+		assertEquals("Bür o", precis.resourceprep("Bür　o"));
+		assertEquals("[::1]", precis.nameprep("[::1]"));
+		assertEquals("a्‍b", precis.resourceprep("a्‍b"));
+
+		assertInvalidDomain("a..b");
+		assertInvalidDomain("a_b.com");
+		assertInvalidDomain("☃.com");
+		assertInvalidDomain("אa.com");
+		assertInvalidLocalpart("a‍b");
+		assertInvalidLocalpart("aא");
+	}
+
+	@Test
+	public void testSameInstanceReturned() throws TigaseStringprepException {
+		String localpart = "user.name-1";
+		String domain = "example.com";
+		String resource = "Resource 1";
+		String unicode = "zürich";
+		assertSame(localpart, precis.nodeprep(localpart));
+		assertSame(domain, precis.nameprep(domain));
+		assertSame(resource, precis.resourceprep(resource));
+		assertSame(unicode, precis.nodeprep(unicode));
+	}
+
+	@Test
+	public void testParityWithLibIDN() throws TigaseStringprepException {
+		Random random = new Random(7622);
+		for (int i = 0; i < 20000; i++) {
+			String alphabet = PARITY_ALPHABETS[random.nextInt(PARITY_ALPHABETS.length)];
+			StringBuilder sb = new StringBuilder();
+			int length = 1 + random.nextInt(12);
+			for (int j = 0; j < length; j++) {
+				sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+			String input = sb.toString();
+
+			assertEquals(input, libidn.nodeprep(input), precis.nodeprep(input));
+			assertEquals(input, libidn.resourceprep(input), precis.resourceprep(input));
+			if (input.indexOf('_') < 0 && !input.startsWith(".") && !input.contains("..")) {
+				assertEquals(input, libidn.nameprep(input).replaceAll("\\.$", ""), precis.nameprep(input));
+			}
+		}
+	}
+
+	@Test
+	public void testIdempotence() {
+		Random random = new Random(8264);
+		for (int i = 0; i < 20000; i++) {
+			StringBuilder sb = new StringBuilder();
+			int length = 1 + random.nextInt(8);
+			for (int j = 0; j < length; j++) {
+				sb.append((char) (random.nextBoolean() ? 0x20 + random.nextInt(0x60) : random.nextInt(0x3000)));
+			}
+			String input = sb.toString();
+			assertIdempotent(input, precis::nodeprep);
+			assertIdempotent(input, precis::nameprep);
+			assertIdempotent(input, precis::resourceprep);
+		}
+	}
+
+	private void assertIdempotent(String input, Prep prep) {
+		String result;
+		try {
+			result = prep.prep(input);
+		} catch (TigaseStringprepException e) {
+			return;
+		}
+		try {
+			assertEquals(input, result, prep.prep(result));
+		} catch (TigaseStringprepException e) {
+			fail("Enforced value rejected: " + input + " -> " + result + ": " + e.getMessage());
+		}
+	}
+
+	private void assertInvalidDomain(String domain) {
+		try {
+			precis.nameprep(domain);
+			fail("Domain should be rejected: " + domain);
+		} catch (TigaseStringprepException e) {
+			// expected
+		}
+	}
+
+	private void assertInvalidLocalpart(String localpart) {
+		try {
+			precis.nodeprep(localpart);
+			fail("Localpart should be rejected: " + localpart);
+		} catch (TigaseStringprepException e) {
+			// expected
+		}
+	}
+
+	private interface Prep {
+
+		String prep(String input) throws TigaseStringprepException;
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.util.stringprep;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class XMPPStringPrepSimpleTest {
+
+	private static final Pattern LEGACY_PATTERN = Pattern.compile("[ @&()\\[\\]\t\n\r\f\\a\\e]");
+	private static final String ALPHABET = "aZ09.-_ @&()[]\t\n\r\f\u0007\u001B\u0000\u007FéÉßΣİ𐐀𐐨";
+
+	private final XMPPStringPrepSimple simple = new XMPPStringPrepSimple();
+
+	@Test
+	public void testSameInstanceReturned() throws TigaseStringprepException {
+		String localpart = "User.Name";
+		String domain = "zürich.example.com";
+		String resource = "Resource 1";
+		assertSame(localpart, simple.nodeprep(localpart));
+		assertSame(domain, simple.nameprep(domain));
+		assertSame(resource, simple.resourceprep(resource));
+	}
+
+	@Test
+	public void testNormalization() throws TigaseStringprepException {
+		assertEquals("example.com", simple.nameprep(" Example.COM\t"));
+		assertEquals("zürich", simple.nameprep("ZÜRICH"));
+		assertEquals("User", simple.nodeprep("\nUser "));
+		assertEquals("Resource 1", simple.resourceprep(" Resource 1 "));
+		assertEquals("", simple.resourceprep("   "));
+	}
+
+	@Test
+	public void testParityWithRegexImplementation() {
+		Random random = new Random(2010);
+		for (int i = 0; i < 50000; i++) {
+			StringBuilder sb = new StringBuilder();
+			int length = random.nextInt(8);
+			for (int j = 0; j < length; j++) {
+				sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+			}
+			String input = sb.toString();
+
+			String legacyDomain = input.trim().toLowerCase();
+			assertEquals(input, LEGACY_PATTERN.matcher(legacyDomain).find() ? null : legacyDomain,
+						 prep(input, simple::nameprep));
+			String legacyLocalpart = input.trim();
+			assertEquals(input, LEGACY_PATTERN.matcher(legacyLocalpart).find() ? null : legacyLocalpart,
+						 prep(input, simple::nodeprep));
+			assertEquals(input, input.trim(), prep(input, simple::resourceprep));
+		}
+	}
+
+	private static String prep(String input, Prep prep) {
+		try {
+			return prep.prep(input);
+		} catch (TigaseStringprepException e) {
+			return null;
+		}
+	}
+
+	private interface Prep {
+
+		String prep(String input) throws TigaseStringprepException;
+	}
+}
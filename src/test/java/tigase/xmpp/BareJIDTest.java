@@ -18,11 +18,18 @@
 package tigase.xmpp;
 
 import org.junit.Test;
+import tigase.util.cache.ConcurrentClockCache;
+import tigase.util.cache.StatsCounter;
 import tigase.util.stringprep.TigaseStringprepException;
+import tigase.util.stringprep.XMPPStringPrepFactory;
+import tigase.util.stringprep.XMPPStringPrepIfc;
 import tigase.xmpp.jid.BareJID;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNull;
+import tigase.xmpp.jid.JID;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
 
 public class BareJIDTest {
 
@@ -99,4 +106,96 @@ public class BareJIDTest {
 		BareJID jid = BareJID.bareJIDInstanceNS(null, "");
 		assertNull("null should be returned for empty domain", jid);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testInterningPool() throws TigaseStringprepException {
+		BareJID.useInterningPool(100);
+		try {
+			BareJID jid = BareJID.bareJIDInstance("a@b/c");
+			assertSame(jid, BareJID.bareJIDInstance("a@b/c"));
+			assertNotSame(jid, BareJID.bareJIDInstance("a", "b"));
+			assertEquals(1, BareJID.getInterningPool().getHits());
+
+			JID fullJid = JID.jidInstance("a@b/c");
+			assertSame(fullJid, JID.jidInstance("a@b/c"));
+			assertEquals(1, JID.getInterningPool().getHits());
+		} finally {
+			BareJID.useInterningPool(0);
+		}
+		assertNull(BareJID.getInterningPool());
+		assertNull(JID.getInterningPool());
+	}
+
+	@Test
+	public void testInterningPoolReplacedWithProcessor() throws TigaseStringprepException {
+		XMPPStringPrepIfc processor = BareJID.getStringprepProcessor();
+		BareJID.useInterningPool(100);
+		try {
+			BareJID jid = BareJID.bareJIDInstance("a@b");
+			ConcurrentClockCache<String, BareJID> pool = BareJID.getInterningPool();
+			ConcurrentClockCache<String, JID> jidPool = JID.getInterningPool();
+
+			BareJID.useStringprepProcessor(XMPPStringPrepFactory.getEmptyXMPPStringPrep());
+			assertNotSame(pool, BareJID.getInterningPool());
+			assertNotSame(jidPool, JID.getInterningPool());
+			assertEquals(pool.limit(), BareJID.getInterningPool().limit());
+			assertEquals(0, BareJID.getInterningPool().size());
+			assertNotSame(jid, BareJID.bareJIDInstance("a@b"));
+		} finally {
+			BareJID.useStringprepProcessor(processor);
+			BareJID.useInterningPool(0);
+		}
+	}
+
+	@Test
+	public void testInterningPoolStatsWithCacheStatsDisabled() throws TigaseStringprepException {
+		String old = System.setProperty(StatsCounter.STATS_PROP_KEY, "false");
+		try {
+			BareJID.useInterningPool(100);
+			BareJID.bareJIDInstance("a@b");
+			BareJID.bareJIDInstance("a@b");
+			assertEquals(1, BareJID.getInterningPool().getHits());
+			assertEquals(1, BareJID.getInterningPool().getMisses());
+		} finally {
+			BareJID.useInterningPool(0);
+			if (old == null) {
+				System.clearProperty(StatsCounter.STATS_PROP_KEY);
+			} else {
+				System.setProperty(StatsCounter.STATS_PROP_KEY, old);
+			}
+		}
+	}
+
+	@Test
+	public void testHashCodeMatchesLowerCaseHashCode() {
+		for (char c = 0; c < Character.MAX_VALUE; c++) {
+			String localpart = "Ab" + c + "\u03A3x";
+			String domain = "d" + c;
+			assertLowerCaseHashCode(BareJID.bareJIDInstanceNS(localpart.substring(0, 3), domain));
+			assertLowerCaseHashCode(BareJID.bareJIDInstanceNS(localpart, domain));
+			assertLowerCaseHashCode(BareJID.bareJIDInstanceNS(null, domain));
+		}
+
+		Locale locale = Locale.getDefault();
+		try {
+			Locale.setDefault(new Locale("tr", "TR"));
+			assertLowerCaseHashCode(BareJID.bareJIDInstanceNS("TITLE", "example.com"));
+		} finally {
+			Locale.setDefault(locale);
+		}
+	}
+
+	@Test
+	public void testEqualsIgnoresCase() throws TigaseStringprepException {
+		BareJID jid = BareJID.bareJIDInstanceNS("User", "Example.com");
+		assertEquals(BareJID.bareJIDInstanceNS("uSER", "example.COM"), jid);
+		assertFalse(jid.equals(BareJID.bareJIDInstanceNS("User2", "example.com")));
+		assertFalse(jid.equals(BareJID.bareJIDInstanceNS(null, "example.com")));
+		assertFalse(BareJID.bareJIDInstanceNS(null, "example.com").equals(jid));
+		assertEquals(0, jid.compareTo(BareJID.bareJIDInstanceNS("user", "example.com")));
+	}
+
+	private static void assertLowerCaseHashCode(BareJID jid) {
+		assertEquals(jid.toString(), jid.toString().toLowerCase().hashCode(), jid.hashCode());
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.xmpp;
+
+import org.junit.Test;
+import tigase.util.stringprep.TigaseStringprepException;
+import tigase.xmpp.jid.BareJID;
+import tigase.xmpp.jid.CompactJID;
+import tigase.xmpp.jid.JID;
+
+import static org.junit.Assert.*;
+
+public class CompactJIDTest {
+
+	private static final String[] JIDS = {"a@b", "A@B", "b", "user@example.com/resource", "USER@Example.com/resource",
+										  "user@example.com/Resource", "example.com/resource", "żółw@łąka.pl/zażółć",
+										  "ŻÓŁW@łąka.pl/zażółć", "ÿ@example.com", "用户@例子.测试/资源", "a@b/"};
+
+	@Test
+	public void testBareJIDConversion() throws TigaseStringprepException {
+		for (String str : JIDS) {
+			BareJID bareJid = BareJID.bareJIDInstance(str);
+			CompactJID compact = CompactJID.compactJIDInstance(bareJid);
+
+			assertFalse(compact.isFullJID());
+			assertEquals(bareJid.hashCode(), compact.hashCode());
+			assertEquals(bareJid.toString(), compact.toString());
+			assertEquals(bareJid.getLocalpart(), compact.getLocalpart());
+			assertEquals(bareJid.getDomain(), compact.getDomain());
+			assertNull(compact.getResource());
+			assertEquals(bareJid, compact.toBareJID());
+			assertTrue(compact.represents(bareJid));
+			assertFalse(compact.represents(JID.jidInstance(bareJid)));
+		}
+	}
+
+	@Test
+	public void testJIDConversion() throws TigaseStringprepException {
+		for (String str : JIDS) {
+			JID jid = JID.jidInstance(str);
+			CompactJID compact = CompactJID.compactJIDInstance(jid);
+
+			assertTrue(compact.isFullJID());
+			assertEquals(jid.hashCode(), compact.hashCode());
+			assertEquals(jid.toString(), compact.toString());
+			assertEquals(jid.getResource(), compact.getResource());
+			assertEquals(jid, compact.toJID());
+			assertTrue(compact.represents(jid));
+			assertFalse(compact.represents(jid.getBareJID()));
+
+			CompactJID bare = compact.copyWithoutResource();
+			assertEquals(CompactJID.compactJIDInstance(jid.getBareJID()), bare);
+			assertEquals(jid.getBareJID().hashCode(), bare.hashCode());
+		}
+	}
+
+	@Test
+	public void testEqualsMatchesJID() throws TigaseStringprepException {
+		for (String s1 : JIDS) {
+			for (String s2 : JIDS) {
+				JID j1 = JID.jidInstance(s1);
+				JID j2 = JID.jidInstance(s2);
+				assertEquals(s1 + " vs " + s2, j1.equals(j2),
+							 CompactJID.compactJIDInstance(j1).equals(CompactJID.compactJIDInstance(j2)));
+
+				BareJID b1 = j1.getBareJID();
+				BareJID b2 = j2.getBareJID();
+				assertEquals(s1 + " vs " + s2, b1.equals(b2),
+							 CompactJID.compactJIDInstance(b1).equals(CompactJID.compactJIDInstance(b2)));
+			}
+		}
+	}
+
+	@Test
+	public void testNotStringpreppedParts() {
+		JID jid = JID.jidInstanceNS("", "example.com", "");
+		CompactJID compact = CompactJID.compactJIDInstance(jid);
+		assertEquals("", compact.getLocalpart());
+		assertEquals("", compact.getResource());
+		assertEquals(jid, compact.toJID());
+		assertFalse(CompactJID.compactJIDInstance(JID.jidInstanceNS(null, "example.com", null)).equals(compact));
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.xmpp;
+
+import org.junit.Test;
+import tigase.util.stringprep.TigaseStringprepException;
+import tigase.xmpp.jid.BareJID;
+import tigase.xmpp.jid.DomainRegistry;
+import tigase.xmpp.jid.JID;
+
+import static org.junit.Assert.*;
+
+public class DomainRegistryTest {
+
+	@Test
+	public void testRegister() {
+		DomainRegistry registry = DomainRegistry.getInstance();
+		DomainRegistry.Domain domain = registry.register("Registry-Test.Example.com");
+
+		assertEquals("registry-test.example.com", domain.getName());
+		assertSame(domain, registry.register("registry-test.example.com"));
+		assertSame(domain, registry.getDomain("REGISTRY-TEST.example.com"));
+		assertSame(domain, registry.getDomain(domain.getId()));
+		assertTrue(registry.size() > 0);
+		assertNotSame(domain, registry.register("registry-test2.example.com"));
+		assertTrue(domain.getId() != registry.register("registry-test2.example.com").getId());
+	}
+
+	@Test
+	public void testJIDDomains() throws TigaseStringprepException {
+		BareJID jid1 = BareJID.bareJIDInstance("a@Registry-JID.example.com");
+		BareJID jid2 = BareJID.bareJIDInstance("b@registry-jid.example.com");
+		JID jid3 = JID.jidInstance("c@REGISTRY-JID.example.com/res");
+
+		assertSame(jid1.getCanonicalDomain(), jid2.getCanonicalDomain());
+		assertEquals(jid1.getDomainId(), jid2.getDomainId());
+		assertEquals(jid1.getDomainId(), jid3.getDomainId());
+		assertSame(jid1.getCanonicalDomain(), DomainRegistry.getInstance().getDomain(jid1.getDomainId()));
+	}
+
+	@Test
+	public void testRemove() throws TigaseStringprepException {
+		DomainRegistry registry = DomainRegistry.getInstance();
+		BareJID jid = BareJID.bareJIDInstance("a@registry-removed.example.com");
+		DomainRegistry.Domain domain = jid.getCanonicalDomain();
+
+		assertTrue(registry.remove("registry-removed.example.com"));
+		assertFalse(registry.remove("registry-removed.example.com"));
+		assertNull(registry.getDomain("registry-removed.example.com"));
+		assertNull(registry.getDomain(domain.getId()));
+
+		BareJID other = BareJID.bareJIDInstance("a@registry-removed.example.com");
+		assertNotSame(domain, other.getCanonicalDomain());
+		assertFalse(domain.getId() == other.getDomainId() &&
+							domain.getGeneration() == other.getCanonicalDomain().getGeneration());
+		assertEquals("registry-removed.example.com", jid.getDomain());
+		assertEquals(jid, other);
+		assertEquals(jid.hashCode(), other.hashCode());
+	}
+
+	@Test
+	public void testIdsAreReused() {
+		DomainRegistry registry = DomainRegistry.getInstance();
+		DomainRegistry.Domain first = registry.register("registry-reuse1.example.com");
+		int id = first.getId();
+		assertTrue(registry.remove("registry-reuse1.example.com"));
+		assertNull(registry.getDomain(id));
+
+		DomainRegistry.Domain second = registry.register("registry-reuse2.example.com");
+		// lowest free ID is reused, it may be a lower one released by GC in the meantime
+		assertTrue(second.getId() <= id);
+		if (second.getId() == id) {
+			assertTrue(second.getGeneration() > first.getGeneration());
+		}
+		assertSame(second, registry.getDomain(second.getId()));
+
+		DomainRegistry.Domain again = registry.register("registry-reuse1.example.com");
+		assertTrue(again.getId() != second.getId());
+		assertNotSame(first, again);
+	}
+
+	@Test
+	public void testPinnedDomains() throws TigaseStringprepException {
+		DomainRegistry registry = DomainRegistry.getInstance();
+		BareJID.bareJIDInstance("a@registry-remote.example.com");
+		assertFalse(registry.isPinned("registry-remote.example.com"));
+
+		DomainRegistry.Domain domain = registry.register("Registry-Pinned.example.com");
+		assertTrue(registry.isPinned("registry-pinned.example.com"));
+		int id = domain.getId();
+		domain = null;
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+		}
+		DomainRegistry.Domain again = registry.getDomain("registry-pinned.example.com");
+		assertNotNull(again);
+		assertEquals(id, again.getId());
+		assertSame(again, BareJID.bareJIDInstance("b@registry-pinned.example.com").getCanonicalDomain());
+	}
+}
@@ -21,6 +21,13 @@ import org.junit.Test;
 import tigase.util.stringprep.TigaseStringprepException;
 import tigase.xmpp.jid.BareJID;
 import tigase.xmpp.jid.JID;
+import tigase.xmpp.jid.JIDParseResult;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.*;
 
@@ -119,4 +126,97 @@ public class JIDTest {
 		JID jid = JID.jidInstanceNS(null, "", null);
 		assertNull("null should be returned for empty domain", jid);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testParseAll() throws TigaseStringprepException {
+		List<String> jids = Arrays.asList("a@b/c", "A@B/c", "a@b/c", null, "a b@c", "d@e", "a b@c");
+		JIDParseResult<JID> result = JID.parseAll(jids);
+
+		assertEquals(7, result.size());
+		assertEquals(4, result.getUniqueCount());
+		assertEquals(JID.jidInstance("a@b/c"), result.get(0));
+		assertEquals(JID.jidInstance("a@b/c"), result.get(1));
+		assertSame(result.get(0), result.get(2));
+		assertNull(result.get(3));
+		assertNull(result.getError(3));
+		assertNull(result.get(4));
+		assertNotNull(result.getError(4));
+		assertEquals(2, result.getErrorCount());
+		assertEquals(1, result.getErrors().size());
+		assertTrue(result.getErrors().containsKey("a b@c"));
+		assertEquals(JID.jidInstance("d@e"), result.getResults().get(5));
+
+		JIDParseResult<BareJID> bareResult = BareJID.parseAll(jids);
+		assertEquals(BareJID.bareJIDInstance("a@b"), bareResult.get(1));
+		assertEquals(2, bareResult.getErrorCount());
+	}
+
+	@Test
+	public void testParseAllParallel() throws TigaseStringprepException {
+		List<String> jids = new ArrayList<>();
+		for (int i = 0; i < 20000; i++) {
+			jids.add((i % 100 == 0 ? "invalid user" : "user") + (i % 5000) + "@example.com/res");
+		}
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			JIDParseResult<JID> result = JID.parseAll(jids, pool);
+			assertEquals(5000, result.getUniqueCount());
+			for (int i = 0; i < jids.size(); i++) {
+				if (i % 100 == 0) {
+					assertNotNull(result.getError(i));
+				} else {
+					assertEquals(JID.jidInstance(jids.get(i)), result.get(i));
+				}
+			}
+			assertEquals(200, result.getErrorCount());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testAppendTo() throws Exception {
+		String[] jids = {"a@b/c", "b", "b/c", "a@b", "a@b/"};
+		for (String str : jids) {
+			JID jid = JID.jidInstance(str);
+			StringBuilder sb = new StringBuilder("to=");
+			assertSame(sb, jid.appendTo(sb));
+			assertEquals("to=" + BareJID.toString(jid.getBareJID(), jid.getResource()), sb.toString());
+
+			StringWriter writer = new StringWriter();
+			jid.getBareJID().appendTo((Appendable) writer);
+			assertEquals(BareJID.jidToBareJID(str), writer.toString());
+
+			assertSame(jid.toString(), jid.toString());
+			sb.setLength(0);
+			assertEquals(jid.toString(), jid.appendTo(sb).toString());
+		}
+	}
+
+	@Test
+	public void testResourceCache() throws TigaseStringprepException {
+		BareJID bareJid = BareJID.bareJIDInstance("user@example.com");
+		JID jid = JID.jidInstance(bareJid, "res");
+
+		assertSame(jid, JID.jidInstance(bareJid, "res"));
+		assertSame(jid, JID.jidInstanceNS(bareJid, "res"));
+		assertSame(jid, JID.jidInstance(bareJid).copyWithResource("res"));
+		assertEquals(JID.jidInstance("user@example.com/res"), jid);
+		assertFalse(jid == JID.jidInstance(bareJid, "other"));
+
+		for (int i = 0; i < 100; i++) {
+			JID.jidInstance(bareJid, "res-" + i);
+		}
+		JID evicted = JID.jidInstance(bareJid, "res");
+		assertEquals(jid, evicted);
+		assertSame(evicted, JID.jidInstance(bareJid, "res"));
+
+		try {
+			JID.useResourceCache(0);
+			BareJID other = BareJID.bareJIDInstance("other@example.com");
+			assertFalse(JID.jidInstance(other, "res") == JID.jidInstance(other, "res"));
+		} finally {
+			JID.useResourceCache(8);
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * Tigase Utils - Utilities module
+ * Copyright (C) 2004 Tigase, Inc. (office@tigase.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.xmpp;
+
+import org.junit.Test;
+import tigase.util.stringprep.TigaseStringprepException;
+import tigase.xmpp.jid.BareJID;
+import tigase.xmpp.jid.JID;
+import tigase.xmpp.jid.ParsedJID;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class ParsedJIDTest {
+
+	private static final String[] JIDS = {"a@b", "b", "a@b/c", "b/c", "a@b@c/d@e/f", "@b", "a@", "/c", "", "a@b/",
+										  "żółw@łąka.pl/zażółć", "用户@例子.测试/资源"};
+
+	@Test
+	public void testParseMatchesParseJID() {
+		ParsedJID parsed = new ParsedJID();
+		for (String jid : JIDS) {
+			String[] expected = BareJID.parseJID(jid);
+			assertParts(jid, expected, parsed.parse(jid));
+			assertParts(jid, expected, parsed.parse(jid.toCharArray(), 0, jid.length()));
+			assertParts(jid, expected, parsed.parse(ByteBuffer.wrap(jid.getBytes(StandardCharsets.UTF_8))));
+
+			String padded = "<<" + jid + ">>";
+			assertParts(jid, expected, parsed.parse(padded, 2, padded.length() - 2));
+			assertParts(jid, expected, parsed.parse(padded.toCharArray(), 2, jid.length()));
+			ByteBuffer buffer = ByteBuffer.wrap(padded.getBytes(StandardCharsets.UTF_8));
+			buffer.position(2).limit(buffer.limit() - 2);
+			assertParts(jid, expected, parsed.parse(buffer));
+			assertEquals(2, buffer.position());
+		}
+	}
+
+	@Test
+	public void testConversion() throws TigaseStringprepException {
+		ParsedJID parsed = new ParsedJID().parse("User@Example.com/Res");
+		assertEquals(JID.jidInstance("User@Example.com/Res"), parsed.toJID());
+		assertEquals(BareJID.bareJIDInstance("user@example.com"), parsed.toBareJID());
+		assertEquals(JID.jidInstanceNS("User@Example.com/Res"), parsed.toJIDNS());
+		assertEquals(BareJID.bareJIDInstanceNS("User@Example.com"), parsed.toBareJIDNS());
+		assertTrue(parsed.bareJIDEquals(BareJID.bareJIDInstance("user@example.com")));
+		assertFalse(parsed.bareJIDEquals(BareJID.bareJIDInstance("example.com")));
+		assertFalse(parsed.bareJIDEquals(BareJID.bareJIDInstance("user@example.org")));
+		assertTrue(parsed.domainEquals("EXAMPLE.com"));
+
+		parsed.parse("example.com");
+		assertTrue(parsed.bareJIDEquals(BareJID.bareJIDInstance("example.com")));
+		assertFalse(parsed.bareJIDEquals(BareJID.bareJIDInstance("user@example.com")));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidUTF8() {
+		new ParsedJID().parse(ByteBuffer.wrap(new byte[]{'a', '@', (byte) 0xC3}));
+	}
+
+	private static void assertParts(String jid, String[] expected, ParsedJID parsed) {
+		assertEquals(jid, expected[0], toString(parsed.getLocalpart()));
+		assertEquals(jid, expected[1], toString(parsed.getDomain()));
+		assertEquals(jid, expected[2], toString(parsed.getResource()));
+		assertEquals(jid, parsed.toString());
+	}
+
+	private static String toString(CharSequence part) {
+		return (part == null) ? null : part.toString();
+	}
+}